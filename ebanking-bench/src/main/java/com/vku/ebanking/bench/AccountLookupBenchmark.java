@@ -0,0 +1,75 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.AccountStorage;
+import com.vku.ebanking.server.AccountStore;
+import com.vku.ebanking.shared.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tra cứu tài khoản: duyệt tuần tự danh sách (cách cũ) so với chỉ mục của AccountStore (HashMap trong heap,
+ * hoặc bảng băm mảng int của kho off-heap); slotOf chỉ tìm slot, không tạo đối tượng Account
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountLookupBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int accountCount;
+
+    @Param({"HEAP", "OFFHEAP"})
+    public AccountStorage storage;
+
+    private List<Account> accounts;
+    private AccountStore store;
+    private String[] numbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accounts = BenchSupport.generateAccounts(accountCount);
+        store = AccountStore.create(accounts, storage);
+        numbers = BenchSupport.accountNumbers(accountCount);
+    }
+
+    private String randomAccount() {
+        return numbers[ThreadLocalRandom.current().nextInt(numbers.length)];
+    }
+
+    @Benchmark
+    public Account linearScan() {
+        String accountNumber = randomAccount();
+        for (Account account : accounts) {
+            if (account.getAccountNumber().equals(accountNumber)) {
+                return account;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Account hashIndex() {
+        return store.find(randomAccount());
+    }
+
+    @Benchmark
+    public int slotLookup() {
+        return store.slotOf(randomAccount());
+    }
+}
@@ -0,0 +1,162 @@
+package com.vku.ebanking.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.vku.ebanking.server.AccountStorage;
+import com.vku.ebanking.server.AccountStore;
+import com.vku.ebanking.shared.Account;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh bộ nhớ và thời gian dừng GC của hai kiểu kho tài khoản (HEAP: List&lt;Account&gt; + HashMap,
+ * OFFHEAP: {@link com.vku.ebanking.server.OffHeapAccountStore}) với cùng số tài khoản:
+ * <ul>
+ *     <li>số byte mỗi tài khoản trong heap (sau GC) và ngoài heap (direct buffer);</li>
+ *     <li>các lần dừng GC khi chạy tải tra cứu + cập nhật số dư có sinh rác như khi nhận lời gọi RMI;</li>
+ *     <li>thời gian một lần full GC (System.gc()) khi kho đang đầy.</li>
+ * </ul>
+ * Mỗi kiểu chạy trong một JVM riêng với cùng tham số heap.
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.AccountMemoryCheck [HEAP|OFFHEAP|BOTH] [số tài khoản] [giây tải]
+ * </pre>
+ */
+public class AccountMemoryCheck {
+    private static final int LOOKUP_POOL = 65_536;
+
+    public static void main(String[] args) throws Exception {
+        String which = args.length > 0 ? args[0].toUpperCase() : "BOTH";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        if (!which.equals("BOTH")) {
+            measure(AccountStorage.valueOf(which), count, seconds);
+            return;
+        }
+        for (AccountStorage storage : AccountStorage.values()) {
+            runChild(storage, count, seconds);
+        }
+    }
+
+    private static void runChild(AccountStorage storage, int count, int seconds) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Dstdout.encoding=UTF-8",
+                "-Xms3g", "-Xmx3g", "-XX:+UseG1GC",
+                AccountMemoryCheck.class.getName(), storage.name(), String.valueOf(count), String.valueOf(seconds))
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                System.out.println("[" + storage + "] " + line);
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Lượt đo " + storage + " thất bại");
+        }
+    }
+
+    private static void measure(AccountStorage storage, int count, int seconds) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeapAfterGc(memory);
+        long directBefore = directBytes();
+
+        AccountStore store = AccountStore.create(BenchSupport.generateAccounts(count), storage);
+        long heapAfter = usedHeapAfterGc(memory);
+        long directAfter = directBytes();
+        double heapPerAccount = (double) (heapAfter - heapBefore) / count;
+        double directPerAccount = (double) (directAfter - directBefore) / count;
+        System.out.printf("%d tài khoản: heap %.1f B/tài khoản, ngoài heap %.1f B/tài khoản, tổng %.0f MB%n",
+                count, heapPerAccount, directPerAccount,
+                (heapAfter - heapBefore + directAfter - directBefore) / 1048576.0);
+
+        String[] lookups = new String[LOOKUP_POOL];
+        for (int i = 0; i < LOOKUP_POOL; i++) {
+            lookups[i] = BenchSupport.accountNumber(ThreadLocalRandom.current().nextInt(count));
+        }
+        ConcurrentLinkedQueue<Long> pauses = new ConcurrentLinkedQueue<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                            (CompositeData) notification.getUserData());
+                    // G1 báo cả các chu kỳ đánh dấu song song; chỉ tính các lần dừng
+                    if (!info.getGcName().contains("Concurrent")) {
+                        pauses.add(info.getGcInfo().getDuration());
+                    }
+                }
+            }, null, null);
+        }
+
+        // Giữ các phản hồi gần nhất để rác thực sự được cấp phát (không bị escape analysis loại bỏ)
+        Object[] inFlight = new Object[4096];
+        long ops = 0;
+        long sink = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                int slot = store.slotOf(lookups[random.nextInt(LOOKUP_POOL)]);
+                store.setBalance(slot, store.balance(slot) + 1);
+                // Rác ngắn hạn của một lời gọi: bộ đệm tuần tự hóa và đối tượng Account trả về
+                byte[] request = new byte[256];
+                Account reply = store.get(slot);
+                inFlight[(int) (ops & (inFlight.length - 1))] = request;
+                inFlight[(int) ((ops + 1) & (inFlight.length - 1))] = reply;
+                sink += request.length + reply.getBalance();
+                ops++;
+            }
+        }
+
+        Thread.sleep(500);
+        List<Long> sorted = new ArrayList<>(pauses);
+        sorted.sort(null);
+        long total = 0;
+        for (long pause : sorted) {
+            total += pause;
+        }
+        System.out.printf("Tải %d s: %,d thao tác, %d lần dừng GC, tổng %d ms, trung bình %.1f ms, lớn nhất %d ms%n",
+                seconds, ops, sorted.size(), total, sorted.isEmpty() ? 0.0 : (double) total / sorted.size(),
+                sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+
+        long started = System.nanoTime();
+        System.gc();
+        System.out.printf("Full GC với kho đầy: %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        if (sink == 42 || store.size() != count) {
+            System.out.println("Kho có " + store.size() + " tài khoản");
+        }
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
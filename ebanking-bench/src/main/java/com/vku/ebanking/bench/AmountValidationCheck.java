@@ -0,0 +1,111 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.SessionToken;
+import com.vku.ebanking.shared.TransferInstruction;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Kiểm tra số tiền không dương (0, âm, Long.MIN_VALUE) bị từ chối ở mọi chế độ khóa và mọi lối vào:
+ * nạp/rút/chuyển khoản theo phiên, theo số tài khoản (có và không có mã yêu cầu) và batch.
+ * Mọi lời gọi phải trả về false (batch: lệnh báo lỗi) và số dư hai tài khoản không đổi,
+ * kể cả sau khi khởi động lại từ journal.
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.AmountValidationCheck
+ * </pre>
+ *
+ * Thoát với mã 1 nếu có vi phạm.
+ */
+public class AmountValidationCheck {
+    private static final long INITIAL_BALANCE = 10_000;
+    private static final long[] AMOUNTS = {0, -1, -INITIAL_BALANCE, Long.MIN_VALUE};
+
+    public static void main(String[] args) throws Exception {
+        int failures = 0;
+        for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+            failures += check(mode);
+        }
+        System.out.println(failures == 0 ? "✅ Số tiền không dương bị từ chối ở mọi chế độ" : "✗ " + failures + " vi phạm");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static int check(ConcurrencyMode mode) throws Exception {
+        Path dir = BenchSupport.createTempDir("amount");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setConcurrencyMode(mode);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        String[] numbers = BenchSupport.accountNumbers(2);
+        List<Account> accounts = List.of(
+                new Account(numbers[0], "Amount A", INITIAL_BALANCE, BenchSupport.PIN_HASH),
+                new Account(numbers[1], "Amount B", INITIAL_BALANCE, BenchSupport.PIN_HASH));
+
+        int failures = 0;
+        try {
+            BankServiceImpl service = BenchSupport.startService(config, accounts);
+            SessionToken session = service.authenticate(numbers[0], BenchSupport.PIN).getToken();
+            for (long amount : AMOUNTS) {
+                failures += expectFalse(mode, "deposit(phiên) " + amount,
+                        service.deposit(session, UUID.randomUUID().toString(), amount));
+                failures += expectFalse(mode, "withdraw(phiên) " + amount,
+                        service.withdraw(session, UUID.randomUUID().toString(), amount));
+                failures += expectFalse(mode, "transfer(phiên) " + amount,
+                        service.transfer(session, UUID.randomUUID().toString(), numbers[1], amount));
+                failures += expectFalse(mode, "deposit " + amount, service.deposit(numbers[0], amount));
+                failures += expectFalse(mode, "withdraw " + amount, service.withdraw(numbers[0], amount));
+                failures += expectFalse(mode, "transfer " + amount, service.transfer(numbers[0], numbers[1], amount));
+                failures += expectFalse(mode, "transfer ngược " + amount,
+                        service.transfer(numbers[1], numbers[0], amount));
+                failures += expectFalse(mode, "deposit(mã) " + amount,
+                        service.deposit(UUID.randomUUID().toString(), numbers[0], amount));
+                failures += expectFalse(mode, "withdraw(mã) " + amount,
+                        service.withdraw(UUID.randomUUID().toString(), numbers[0], amount));
+                failures += expectFalse(mode, "transfer(mã) " + amount,
+                        service.transfer(UUID.randomUUID().toString(), numbers[0], numbers[1], amount));
+                failures += expectFalse(mode, "batch " + amount, service.submitBatch(
+                        List.of(new TransferInstruction(numbers[0], numbers[1], amount)), BatchMode.BEST_EFFORT)
+                        .get(0).isSuccess());
+            }
+            failures += compare(mode, "sau khi chạy", service, numbers);
+            BenchSupport.stopService(service);
+
+            BankServiceImpl restarted = new BankServiceImpl(config);
+            failures += compare(mode, "sau khi khởi động lại", restarted, numbers);
+            BenchSupport.stopService(restarted);
+        } finally {
+            BenchSupport.deleteRecursively(dir);
+        }
+        System.out.printf("%s: %d vi phạm%n", mode, failures);
+        return failures;
+    }
+
+    private static int expectFalse(ConcurrencyMode mode, String call, boolean accepted) {
+        if (accepted) {
+            System.err.printf("✗ %s: %s được chấp nhận%n", mode, call);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int compare(ConcurrencyMode mode, String stage, BankServiceImpl service, String[] numbers)
+            throws Exception {
+        int failures = 0;
+        for (String number : numbers) {
+            long actual = service.login(number).getBalance();
+            if (actual != INITIAL_BALANCE) {
+                System.err.printf("✗ %s %s: tài khoản %s có %d, mong đợi %d%n",
+                        mode, stage, number, actual, INITIAL_BALANCE);
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
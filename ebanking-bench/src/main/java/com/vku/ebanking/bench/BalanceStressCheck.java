@@ -0,0 +1,295 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.AccountSnapshot;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.JournalEntry;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.TransactionJournal;
+import com.vku.ebanking.server.XMLAccountHandler;
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Kiểm tra chịu tải cho số dư: nhiều luồng nạp/rút/chuyển khoản/batch trên vài tài khoản nóng
+ * trong khi checkpoint chạy liên tục. Mỗi thao tác thành công được ghi lại theo tài khoản, sau đó đối chiếu:
+ * <ul>
+ *     <li>luồng đọc chạy song song không bao giờ thấy số dư âm;</li>
+ *     <li>số dư cuối từng tài khoản bằng số dư ban đầu cộng mọi thao tác đã báo thành công;</li>
+ *     <li>mọi snapshot checkpoint ghi ra trong pha chỉ chuyển khoản, cộng các bản ghi journal sau seq gốc
+ *     của nó, ra đúng số dư cuối (snapshot chụp mờ nên riêng file snapshot có thể lệch nửa chuyển khoản);</li>
+ *     <li>khởi động lại từ snapshot + journal ra đúng các số dư đó.</li>
+ * </ul>
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.BalanceStressCheck [CAS|STRIPED|GLOBAL] [luồng] [thao tác/luồng]
+ * </pre>
+ *
+ * Thoát với mã 1 nếu có vi phạm.
+ */
+public class BalanceStressCheck {
+    private static final int ACCOUNTS = 4;
+    private static final long INITIAL_BALANCE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        ConcurrencyMode mode = args.length > 0 ? ConcurrencyMode.valueOf(args[0]) : ConcurrencyMode.CAS;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+        int opsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        Path dir = BenchSupport.createTempDir("stress");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setConcurrencyMode(mode);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        config.setCheckpointChanges(500);
+        // Giữ mọi snapshot và journal sau chúng để đối chiếu từng snapshot sau khi chạy
+        config.setSnapshotsToKeep(100_000);
+
+        String[] numbers = BenchSupport.accountNumbers(ACCOUNTS);
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (String number : numbers) {
+            accounts.add(new Account(number, "Stress " + number, INITIAL_BALANCE, BenchSupport.PIN_HASH));
+        }
+
+        int failures = 0;
+        try {
+            BankServiceImpl service = BenchSupport.startService(config, accounts);
+            AtomicLongArray expected = new AtomicLongArray(ACCOUNTS);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                expected.set(i, INITIAL_BALANCE);
+            }
+
+            long started = System.nanoTime();
+            failures += run(service, numbers, expected, threads, opsPerThread, false, null);
+            failures += compare("sau khi chạy", service, numbers, expected);
+
+            // Pha chỉ chuyển khoản, thu các snapshot ghi ra trong lúc chạy
+            SnapshotWatcher watcher = new SnapshotWatcher(config);
+            failures += run(service, numbers, expected, threads, opsPerThread, true, watcher);
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+            failures += compare("sau pha chuyển khoản", service, numbers, expected);
+            BenchSupport.stopService(service);
+            failures += watcher.verify(Path.of(config.getJournalDir()), numbers, expected);
+
+            BankServiceImpl restarted = new BankServiceImpl(config);
+            failures += compare("sau khi khởi động lại", restarted, numbers, expected);
+            BenchSupport.stopService(restarted);
+
+            System.out.printf("%s: %d luồng x %d thao tác x 2 pha trong %d ms, %d snapshot đã đối chiếu, %d vi phạm%n",
+                    mode, threads, opsPerThread, elapsedMs, watcher.checked, failures);
+        } finally {
+            BenchSupport.deleteRecursively(dir);
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Chạy các luồng thao tác cùng một luồng đọc số dư; {@code watcher} (nếu có) chạy song song tới khi xong.
+     * Trả về số vi phạm
+     */
+    private static int run(BankServiceImpl service, String[] numbers, AtomicLongArray expected, int threads,
+                           int opsPerThread, boolean transfersOnly, SnapshotWatcher watcher) throws Exception {
+        AtomicLong negativeReads = new AtomicLong();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(threads);
+
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (done.getCount() > 0) {
+                for (String number : numbers) {
+                    try {
+                        if (service.login(number).getBalance() < 0) {
+                            negativeReads.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            }
+        });
+        Thread snapshots = watcher == null ? null : Thread.ofPlatform().start(() -> {
+            try {
+                while (done.getCount() > 0) {
+                    watcher.poll();
+                    Thread.sleep(5);
+                }
+                watcher.poll();
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            }
+        });
+
+        for (int t = 0; t < threads; t++) {
+            Thread.ofPlatform().start(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int a = random.nextInt(ACCOUNTS);
+                        int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        long amount = 1 + random.nextInt(2_000);
+                        switch (transfersOnly ? 2 + random.nextInt(2) : random.nextInt(4)) {
+                            case 0 -> {
+                                if (service.deposit(numbers[a], amount)) {
+                                    expected.addAndGet(a, amount);
+                                }
+                            }
+                            case 1 -> {
+                                if (service.withdraw(numbers[a], amount)) {
+                                    expected.addAndGet(a, -amount);
+                                }
+                            }
+                            case 2 -> {
+                                if (service.transfer(numbers[a], numbers[b], amount)) {
+                                    expected.addAndGet(a, -amount);
+                                    expected.addAndGet(b, amount);
+                                }
+                            }
+                            default -> batch(service, numbers, expected, random);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        reader.join();
+        if (snapshots != null) {
+            snapshots.join();
+        }
+
+        int failures = 0;
+        if (error.get() != null) {
+            error.get().printStackTrace();
+            failures++;
+        }
+        if (negativeReads.get() > 0) {
+            System.err.println("✗ Đọc thấy số dư âm " + negativeReads.get() + " lần");
+            failures++;
+        }
+        return failures;
+    }
+
+    /**
+     * Batch BEST_EFFORT hai lệnh ngược chiều; chỉ lệnh báo OK mới được tính
+     */
+    private static void batch(BankServiceImpl service, String[] numbers, AtomicLongArray expected,
+                              ThreadLocalRandom random) throws Exception {
+        int a = random.nextInt(ACCOUNTS);
+        int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        long first = 1 + random.nextInt(5_000);
+        long second = 1 + random.nextInt(5_000);
+        List<TransferResult> results = service.submitBatch(List.of(
+                new TransferInstruction(numbers[a], numbers[b], first),
+                new TransferInstruction(numbers[b], numbers[a], second)), BatchMode.BEST_EFFORT);
+        if (results.get(0).isSuccess()) {
+            expected.addAndGet(a, -first);
+            expected.addAndGet(b, first);
+        }
+        if (results.get(1).isSuccess()) {
+            expected.addAndGet(b, -second);
+            expected.addAndGet(a, second);
+        }
+    }
+
+    private static int compare(String stage, BankServiceImpl service, String[] numbers, AtomicLongArray expected)
+            throws Exception {
+        int failures = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            long actual = service.login(numbers[i]).getBalance();
+            if (actual != expected.get(i)) {
+                System.err.printf("✗ %s: tài khoản %s có %d, mong đợi %d%n", stage, numbers[i], actual, expected.get(i));
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Nạp mỗi snapshot mới xuất hiện trong thư mục snapshot; sau khi dừng server, phát lại journal
+     * lên từng snapshot và đối chiếu với số dư cuối
+     */
+    private static final class SnapshotWatcher {
+        private final Path snapshotDir;
+        private final XMLAccountHandler handler;
+        private final List<AccountSnapshot> snapshots = new ArrayList<>();
+        private String lastSeen;
+        private int checked;
+
+        SnapshotWatcher(ServerConfig config) throws IOException {
+            this.snapshotDir = Path.of(config.getSnapshotDir());
+            this.handler = BenchSupport.snapshotHandler(config);
+            this.lastSeen = newest();
+        }
+
+        void poll() throws IOException {
+            String newest = newest();
+            if (newest == null || newest.equals(lastSeen)) {
+                return;
+            }
+            lastSeen = newest;
+            snapshots.add(handler.loadLatestSnapshot());
+        }
+
+        /**
+         * Trả về số snapshot không khôi phục đúng số dư cuối
+         */
+        int verify(Path journalDir, String[] numbers, AtomicLongArray expected) throws IOException {
+            int failures = 0;
+            try (TransactionJournal journal = new TransactionJournal(journalDir, FsyncPolicy.NEVER, 0)) {
+                for (AccountSnapshot snapshot : snapshots) {
+                    if (snapshot.getSeq() + 1 < journal.getFirstSeq()) {
+                        continue;
+                    }
+                    Map<String, Long> balances = new HashMap<>();
+                    for (Account account : snapshot.getAccounts()) {
+                        balances.put(account.getAccountNumber(), account.getBalance());
+                    }
+                    journal.replay(snapshot.getSeq(), record -> {
+                        for (JournalEntry entry : record.getEntries()) {
+                            balances.computeIfPresent(entry.getAccountNumber(), (number, balance) ->
+                                    entry.applyTo(balance));
+                        }
+                    });
+                    checked++;
+                    for (int i = 0; i < numbers.length; i++) {
+                        long actual = balances.get(numbers[i]);
+                        if (actual != expected.get(i)) {
+                            System.err.printf("✗ Snapshot seq %d + journal: tài khoản %s có %d, mong đợi %d%n",
+                                    snapshot.getSeq(), numbers[i], actual, expected.get(i));
+                            failures++;
+                            break;
+                        }
+                    }
+                }
+            }
+            return failures;
+        }
+
+        private String newest() throws IOException {
+            try (Stream<Path> files = Files.list(snapshotDir)) {
+                return files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.startsWith("accounts-") && !name.endsWith(".tmp"))
+                        .max(String::compareTo)
+                        .orElse(null);
+            }
+        }
+    }
+}
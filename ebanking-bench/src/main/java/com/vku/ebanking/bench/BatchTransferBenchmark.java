@@ -0,0 +1,95 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian thực hiện {@code batchSize} chuyển khoản: gọi transfer từng lệnh so với một lần submitBatch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchTransferBenchmark {
+    private static final int ACCOUNT_COUNT = 10_000;
+
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    @Param({"ALWAYS", "NEVER"})
+    public FsyncPolicy fsync;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private List<TransferInstruction> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("batch");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setFsyncPolicy(fsync);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(ACCOUNT_COUNT));
+
+        String[] numbers = BenchSupport.accountNumbers(ACCOUNT_COUNT);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            int from = random.nextInt(ACCOUNT_COUNT);
+            int to = (from + 1 + random.nextInt(ACCOUNT_COUNT - 1)) % ACCOUNT_COUNT;
+            batch.add(new TransferInstruction(numbers[from], numbers[to], 1 + random.nextInt(1000)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchSupport.stopService(service);
+        BenchSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int singleTransfers() throws Exception {
+        int ok = 0;
+        for (TransferInstruction instruction : batch) {
+            if (service.transfer(instruction.getFromAccount(), instruction.getToAccount(),
+                    instruction.getAmount())) {
+                ok++;
+            }
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public List<TransferResult> batchAtomic() throws Exception {
+        return service.submitBatch(batch, BatchMode.ATOMIC);
+    }
+
+    @Benchmark
+    public List<TransferResult> batchBestEffort() throws Exception {
+        return service.submitBatch(batch, BatchMode.BEST_EFFORT);
+    }
+}
@@ -0,0 +1,36 @@
+package com.vku.ebanking.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Chạy một benchmark lần lượt với 1, 2, 4, ... tới N luồng, không cần giao diện.
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.BenchRunner [regex] [N]
+ * </pre>
+ *
+ * Mặc định chạy TransactionBenchmark tới số nhân CPU. Muốn chạy một cấu hình JMH cụ thể thì dùng thẳng
+ * {@code java -jar benchmarks.jar <regex> -t <luồng> -p accountCount=...}.
+ */
+public class BenchRunner {
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : TransactionBenchmark.class.getSimpleName();
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .result("bench-" + threads + "t.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.AccountXmlFormat;
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.PinHasher;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.SnapshotFormat;
+import com.vku.ebanking.server.XMLAccountHandler;
+import com.vku.ebanking.shared.Account;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.NoSuchObjectException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Hàm dùng chung cho các benchmark: sinh tài khoản, thư mục tạm, dựng BankServiceImpl không giao diện
+ */
+final class BenchSupport {
+    static final long INITIAL_BALANCE = 1_000_000_000_000L;
+    static final String PIN = "0000";
+    // Băm một lần (1 vòng) cho mọi tài khoản sinh ra, để server không phải băm PIN khi khởi động
+    static final String PIN_HASH = new PinHasher(1).hash(PIN);
+
+    private BenchSupport() {}
+
+    static String accountNumber(int i) {
+        return String.format("%010d", i);
+    }
+
+    static String[] accountNumbers(int count) {
+        String[] numbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = accountNumber(i);
+        }
+        return numbers;
+    }
+
+    static List<Account> generateAccounts(int count) {
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(accountNumber(i), "Khách hàng " + i, INITIAL_BALANCE, PIN_HASH));
+        }
+        return accounts;
+    }
+
+    static Path createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory("ebanking-bench-" + prefix);
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Cấu hình server trỏ vào thư mục tạm; các tham số khác vẫn lấy từ -Debanking.*
+     */
+    static ServerConfig config(Path dir) {
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        config.setJournalDir(dir.resolve("journal").toString());
+        config.setSnapshotDir(dir.resolve("snapshots").toString());
+        config.setHistoryDir(dir.resolve("history").toString());
+        config.setSnapshotFormat(SnapshotFormat.BINARY);
+        return config;
+    }
+
+    /**
+     * Ghi snapshot gốc (seq 0) rồi khởi động server không giao diện
+     */
+    static BankServiceImpl startService(ServerConfig config, List<Account> accounts) throws Exception {
+        writeSnapshot(config, accounts, 0);
+        return new BankServiceImpl(config);
+    }
+
+    /**
+     * Ghi snapshot theo định dạng trong cấu hình vào thư mục snapshot của server
+     */
+    static void writeSnapshot(ServerConfig config, List<Account> accounts, long seq) {
+        if (!snapshotHandler(config).saveSnapshot(accounts, seq)) {
+            throw new IllegalStateException("Không ghi được snapshot gốc");
+        }
+    }
+
+    /**
+     * Đọc/ghi snapshot trong thư mục snapshot của server theo cấu hình
+     */
+    static XMLAccountHandler snapshotHandler(ServerConfig config) {
+        return new XMLAccountHandler(AccountXmlFormat.named(config.getXmlParser()),
+                new File(config.getSnapshotDir()), config.getSnapshotFormat());
+    }
+
+    static void stopService(BankServiceImpl service) {
+        if (service == null) {
+            return;
+        }
+        service.shutdown();
+        try {
+            UnicastRemoteObject.unexportObject(service, true);
+        } catch (NoSuchObjectException e) {
+            // Đã unexport
+        }
+    }
+
+    static long totalBalance(BankServiceImpl service) {
+        long total = 0;
+        for (Account account : service.getAllAccounts()) {
+            total += account.getBalance();
+        }
+        return total;
+    }
+}
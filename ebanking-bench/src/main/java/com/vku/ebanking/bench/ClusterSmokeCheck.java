@@ -0,0 +1,201 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.ClusterRouter;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.HeadlessServer;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.SnapshotFormat;
+import com.vku.ebanking.shared.Account;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chạy thử cluster hai node trên một máy: mỗi node là một JVM {@link HeadlessServer} riêng
+ * (cổng registry riêng), router chạy trong tiến trình này. Nhiều luồng chuyển khoản ngẫu nhiên,
+ * phần lớn là liên node; giữa chừng node 1 bị kill -9 rồi khởi động lại. Sau khi router gửi xong
+ * mọi quyết định 2PC còn treo, tổng tiền của cả cluster phải bằng tổng ban đầu.
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.ClusterSmokeCheck [luồng] [thao tác/luồng]
+ * </pre>
+ *
+ * Thoát với mã 1 nếu có vi phạm.
+ */
+public class ClusterSmokeCheck {
+    private static final int ACCOUNTS = 40;
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        Path dir = BenchSupport.createTempDir("cluster");
+        int basePort = 20_000 + ThreadLocalRandom.current().nextInt(20_000);
+        String half = BenchSupport.accountNumber(ACCOUNTS / 2);
+        String nodes = "localhost:" + basePort + "=" + BenchSupport.accountNumber(0) + ".."
+                + BenchSupport.accountNumber(ACCOUNTS / 2 - 1)
+                + ",localhost:" + (basePort + 1) + "=" + half + ".." + BenchSupport.accountNumber(ACCOUNTS - 1);
+
+        ServerConfig config = BenchSupport.config(dir);
+        config.setClusterNodes(nodes);
+        config.setClusterDir(dir.resolve("cluster").toString());
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        String[] numbers = BenchSupport.accountNumbers(ACCOUNTS);
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (String number : numbers) {
+            accounts.add(new Account(number, "Cluster " + number, INITIAL_BALANCE, BenchSupport.PIN_HASH));
+        }
+        for (int i = 0; i < 2; i++) {
+            ServerConfig nodeConfig = BenchSupport.config(dir);
+            nodeConfig.setSnapshotDir(dir.resolve("snapshots").resolve("node-" + i).toString());
+            BenchSupport.writeSnapshot(nodeConfig, accounts, 0);
+        }
+
+        Process[] processes = new Process[2];
+        ClusterRouter router = null;
+        int failures = 0;
+        try {
+            for (int i = 0; i < 2; i++) {
+                processes[i] = startNode(dir, nodes, i);
+            }
+            router = new ClusterRouter(config);
+            ClusterRouter service = router;
+            AtomicLong committed = new AtomicLong();
+            AtomicLong rejected = new AtomicLong();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            CountDownLatch done = new CountDownLatch(threads);
+
+            long started = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                Thread.ofPlatform().start(() -> {
+                    try {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int i = 0; i < opsPerThread; i++) {
+                            int a = random.nextInt(ACCOUNTS);
+                            int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                            try {
+                                if (service.transfer(numbers[a], numbers[b], 1 + random.nextInt(5_000))) {
+                                    committed.incrementAndGet();
+                                } else {
+                                    rejected.incrementAndGet();
+                                }
+                            } catch (RemoteException e) {
+                                // Node đang bị kill: lời gọi lỗi, giao dịch sẽ được hủy hoặc hoàn tất sau
+                                rejected.incrementAndGet();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            // Kill node 1 khi đang chạy rồi khởi động lại trên cùng thư mục
+            while (committed.get() < (long) threads * opsPerThread / 4 && done.getCount() > 0) {
+                Thread.sleep(10);
+            }
+            processes[1].destroyForcibly().waitFor();
+            System.out.println("💥 Đã kill node 1 sau " + committed.get() + " giao dịch");
+            Thread.sleep(500);
+            processes[1] = startNode(dir, nodes, 1);
+            done.await();
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (router.getCoordinator().getPendingCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            if (router.getCoordinator().getPendingCount() > 0) {
+                System.err.println("✗ Còn " + router.getCoordinator().getPendingCount() + " quyết định chưa gửi được");
+                failures++;
+            }
+            if (error.get() != null) {
+                error.get().printStackTrace();
+                failures++;
+            }
+
+            long total = 0;
+            for (String number : numbers) {
+                total += router.login(number).getBalance();
+            }
+            if (total != INITIAL_BALANCE * ACCOUNTS) {
+                System.err.println("✗ Tổng tiền " + total + ", mong đợi " + INITIAL_BALANCE * ACCOUNTS);
+                failures++;
+            }
+            System.out.printf("%d luồng x %d chuyển khoản trong %d ms: %d commit, %d từ chối/lỗi, %d vi phạm%n",
+                    threads, opsPerThread, elapsedMs, committed.get(), rejected.get(), failures);
+        } finally {
+            if (router != null) {
+                router.shutdown();
+                UnicastRemoteObject.unexportObject(router, true);
+            }
+            for (Process process : processes) {
+                if (process != null) {
+                    process.destroy();
+                    process.waitFor(10, TimeUnit.SECONDS);
+                }
+            }
+            BenchSupport.deleteRecursively(dir);
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Chạy HeadlessServer làm node i trong JVM mới, chờ tới khi node báo sẵn sàng
+     */
+    private static Process startNode(Path dir, String nodes, int index) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Dstdout.encoding=UTF-8",
+                "-Debanking.cluster.nodes=" + nodes,
+                "-Debanking.cluster.node=" + index,
+                "-Debanking.journal.dir=" + dir.resolve("journal"),
+                "-Debanking.snapshot.dir=" + dir.resolve("snapshots"),
+                "-Debanking.history.dir=" + dir.resolve("history"),
+                "-Debanking.snapshot.format=" + SnapshotFormat.BINARY,
+                "-Debanking.journal.fsync=" + FsyncPolicy.NEVER,
+                HeadlessServer.class.getName())
+                .directory(dir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.PIPE)
+                .start();
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = output.readLine()) != null) {
+            System.out.println("[node " + index + "] " + line);
+            if (line.startsWith("✓ Server")) {
+                break;
+            }
+        }
+        if (line == null) {
+            throw new IllegalStateException("Node " + index + " không khởi động được");
+        }
+        // Tiếp tục đọc để node không bị chặn khi bộ đệm stdout đầy
+        Thread.ofVirtual().start(() -> {
+            try {
+                output.transferTo(Writer.nullWriter());
+            } catch (IOException e) {
+                // Tiến trình node đã dừng
+            }
+        });
+        return process;
+    }
+}
@@ -0,0 +1,118 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ExecutionMode;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.VirtualThreadBankService;
+import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.SessionToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code clients} client mô phỏng cùng lúc, mỗi client một luồng (như luồng kết nối RMI),
+ * đăng nhập sẵn rồi thực hiện {@code opsPerClient} lần chuyển khoản theo phiên. Đo thời gian tới khi mọi client xong,
+ * so sánh gọi thẳng BankServiceImpl với chế độ luồng ảo có giới hạn đồng thời.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+@State(Scope.Benchmark)
+public class ConcurrentClientsBenchmark {
+    @Param({"10000"})
+    public int clients;
+
+    @Param({"10"})
+    public int opsPerClient;
+
+    @Param({"DIRECT", "VIRTUAL"})
+    public ExecutionMode executionMode;
+
+    @Param({"256"})
+    public int maxConcurrent;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String clientThreads;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private BankService endpoint;
+    private String[] numbers;
+    private SessionToken[] sessions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("clients");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setExecutionMode(executionMode);
+        config.setMaxConcurrentRequests(maxConcurrent);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(clients));
+        endpoint = VirtualThreadBankService.forConfig(service, config);
+        numbers = BenchSupport.accountNumbers(clients);
+        sessions = new SessionToken[clients];
+        for (int c = 0; c < clients; c++) {
+            sessions[c] = service.authenticate(numbers[c], BenchSupport.PIN).getToken();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (endpoint instanceof VirtualThreadBankService virtualService) {
+            virtualService.shutdown();
+            UnicastRemoteObject.unexportObject(virtualService, true);
+        }
+        BenchSupport.stopService(service);
+        BenchSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int allClients() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        AtomicInteger succeeded = new AtomicInteger();
+        Thread.Builder builder = "VIRTUAL".equals(clientThreads) ? Thread.ofVirtual() : Thread.ofPlatform();
+
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            builder.start(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < opsPerClient; i++) {
+                        int to = (client + 1 + random.nextInt(clients - 1)) % clients;
+                        if (endpoint.transfer(sessions[client], null, numbers[to], 1)) {
+                            succeeded.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        return succeeded.get();
+    }
+}
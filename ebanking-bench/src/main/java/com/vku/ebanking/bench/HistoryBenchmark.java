@@ -0,0 +1,124 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.HistoryStore;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.TransactionEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Truy vấn lịch sử theo trang trên kho có nhiều dòng: trang đầu (20 giao dịch mới nhất), trang sâu
+ * (bắt đầu từ cursor ở giữa lịch sử tài khoản) và chi phí ghi thêm một dòng. Thời gian một trang chỉ
+ * phụ thuộc kích thước trang, không phụ thuộc tổng số dòng. Kết thúc lượt đo, lịch sử của một tài khoản
+ * được đọc hết qua các trang và phải đủ số dòng, đúng thứ tự seq giảm dần.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int PAGE = 20;
+    private static final int DEEP_CURSORS = 4096;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private Path dir;
+    private HistoryStore history;
+    private String[] numbers;
+    private long[] deepCursors;
+    private String[] deepAccounts;
+    private final AtomicLong seq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("history");
+        history = new HistoryStore(dir, 256L * 1024 * 1024, 30_000);
+        numbers = BenchSupport.accountNumbers(ACCOUNTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            append(i % ACCOUNTS);
+        }
+        history.flush();
+        System.out.printf("%nĐã ghi %d dòng lịch sử trong %d ms%n", rows,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        deepCursors = new long[DEEP_CURSORS];
+        deepAccounts = new String[DEEP_CURSORS];
+        for (int i = 0; i < DEEP_CURSORS; i++) {
+            deepAccounts[i] = numbers[random.nextInt(ACCOUNTS)];
+            HistoryPage page = history.page(deepAccounts[i], 0, rows / ACCOUNTS / 2);
+            deepCursors[i] = page.getNextCursor();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            String account = numbers[0];
+            long count = 0;
+            long lastSeq = Long.MAX_VALUE;
+            long cursor = 0;
+            do {
+                HistoryPage page = history.page(account, cursor, HistoryStore.MAX_PAGE);
+                for (TransactionEvent event : page.getEvents()) {
+                    if (event.getSequence() >= lastSeq) {
+                        throw new IllegalStateException("Lịch sử sai thứ tự tại seq " + event.getSequence());
+                    }
+                    lastSeq = event.getSequence();
+                    count++;
+                }
+                cursor = page.getNextCursor();
+            } while (cursor >= 0);
+            long expected = rows / ACCOUNTS + (rows % ACCOUNTS > 0 ? 1 : 0);
+            if (count < expected) {
+                throw new IllegalStateException("Thiếu lịch sử: " + count + " < " + expected);
+            }
+            System.out.println(history);
+        } finally {
+            history.close();
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    private void append(int account) throws Exception {
+        history.append(numbers[account], new TransactionEvent(TransactionEvent.Type.DEPOSIT, 1, null,
+                BenchSupport.INITIAL_BALANCE, seq.incrementAndGet()));
+    }
+
+    @Benchmark
+    public HistoryPage firstPage() throws Exception {
+        return history.page(numbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)], 0, PAGE);
+    }
+
+    @Benchmark
+    public HistoryPage deepPage() throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(DEEP_CURSORS);
+        return history.page(deepAccounts[i], deepCursors[i], PAGE);
+    }
+
+    @Benchmark
+    public void append() throws Exception {
+        append(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+}
@@ -0,0 +1,89 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mọi luồng cùng nạp/rút trên một tài khoản "nóng": khóa dải (GLOBAL, STRIPED) so với CAS.
+ * Journal không fsync để phần đo là tranh chấp trên số dư, không phải đĩa.
+ * Kết thúc lượt đo, số dư được đối chiếu với tổng nạp/rút.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+    private static final String HOT = BenchSupport.accountNumber(0);
+
+    @Param({"GLOBAL", "STRIPED", "CAS"})
+    public ConcurrencyMode concurrency;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("hot");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setConcurrencyMode(concurrency);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            long expected = BenchSupport.INITIAL_BALANCE + deposited.sum() - withdrawn.sum();
+            long actual = service.login(HOT).getBalance();
+            if (actual != expected) {
+                throw new IllegalStateException("Số dư tài khoản nóng sai lệch: " + actual + " != " + expected);
+            }
+        } finally {
+            BenchSupport.stopService(service);
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    @Benchmark
+    public boolean depositWithdraw() throws Exception {
+        long amount = 1 + ThreadLocalRandom.current().nextInt(1000);
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            boolean ok = service.deposit(HOT, amount);
+            if (ok) {
+                deposited.add(amount);
+            }
+            return ok;
+        }
+        boolean ok = service.withdraw(HOT, amount);
+        if (ok) {
+            withdrawn.add(amount);
+        }
+        return ok;
+    }
+}
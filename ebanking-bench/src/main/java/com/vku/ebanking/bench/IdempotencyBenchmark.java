@@ -0,0 +1,164 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.IdempotencyCache;
+import com.vku.ebanking.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chi phí của mã yêu cầu trên mỗi lời gọi: deposit không mã, deposit với mã mới (lần đầu, phải ghi vào
+ * bộ nhớ chống lặp) và deposit gửi lại mã cũ (trả kết quả đã lưu, không ghi journal); thêm hai phép đo
+ * riêng bộ nhớ chống lặp với thao tác rỗng. Kết thúc lượt đo, tổng số dư phải khớp số deposit thực sự chạy.
+ * Mã chưa hết hạn không bị đẩy ra, nên phép đo mã mới dùng ttl ngắn ({@link #TTL_MS}) để đo ở trạng thái
+ * ổn định (mã cũ hết hạn và được dọn) thay vì bị từ chối khi bộ nhớ đầy; phép đo gửi lại dùng
+ * {@link Retried} với ttl mặc định để các mã cũ không hết hạn giữa chừng.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotencyBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int RETRIED_IDS = 4096;
+    private static final long TTL_MS = 50;
+
+    @Param({"100000", "1000000"})
+    public int capacity;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private IdempotencyCache cache;
+    private String[] numbers;
+    private final AtomicLong nextId = new AtomicLong();
+    private final String idPrefix = UUID.randomUUID() + "-";
+    private final LongAdder executed = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("dedup");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        config.setDedupCapacity(capacity);
+        config.setDedupTtlMs(TTL_MS);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(ACCOUNTS));
+        cache = new IdempotencyCache(capacity, config.getDedupTtlMs());
+        numbers = BenchSupport.accountNumbers(ACCOUNTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            long expected = BenchSupport.INITIAL_BALANCE * ACCOUNTS + executed.sum();
+            long actual = BenchSupport.totalBalance(service);
+            if (actual != expected) {
+                throw new IllegalStateException("Tổng số dư sai lệch: " + actual + " != " + expected);
+            }
+            System.out.println(service.getIdempotencyCache());
+        } finally {
+            BenchSupport.stopService(service);
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    private String randomAccount() {
+        return numbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+    }
+
+    private String freshId() {
+        return idPrefix + nextId.incrementAndGet();
+    }
+
+    @Benchmark
+    public boolean depositPlain() throws Exception {
+        executed.increment();
+        return service.deposit(randomAccount(), 1);
+    }
+
+    @Benchmark
+    public boolean depositNewId() throws Exception {
+        executed.increment();
+        return service.deposit(freshId(), randomAccount(), 1);
+    }
+
+    @Benchmark
+    public boolean depositRetriedId(Retried retried) throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(RETRIED_IDS);
+        return retried.service.deposit(retried.ids[i], retried.numbers[i % ACCOUNTS], 1);
+    }
+
+    @Benchmark
+    public Boolean cacheMiss() throws Exception {
+        return cache.execute(freshId(), "bench", "", () -> Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Boolean cacheHit(Retried retried) throws Exception {
+        return retried.cache.execute(retried.ids[ThreadLocalRandom.current().nextInt(RETRIED_IDS)], "bench", "",
+                () -> Boolean.TRUE);
+    }
+
+    /**
+     * Máy chủ và bộ nhớ chống lặp với ttl mặc định, đã chạy sẵn {@link #RETRIED_IDS} mã; mọi lần gửi lại
+     * phải trả kết quả cũ nên tổng số dư cuối lượt đo chỉ tăng đúng số mã đó
+     */
+    @State(Scope.Benchmark)
+    public static class Retried {
+        private Path dir;
+        private BankServiceImpl service;
+        private IdempotencyCache cache;
+        private String[] numbers;
+        private String[] ids;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dir = BenchSupport.createTempDir("dedup-retried");
+            ServerConfig config = BenchSupport.config(dir);
+            config.setFsyncPolicy(FsyncPolicy.NEVER);
+            service = BenchSupport.startService(config, BenchSupport.generateAccounts(ACCOUNTS));
+            cache = new IdempotencyCache(config.getDedupCapacity(), config.getDedupTtlMs());
+            numbers = BenchSupport.accountNumbers(ACCOUNTS);
+            ids = new String[RETRIED_IDS];
+            for (int i = 0; i < RETRIED_IDS; i++) {
+                ids[i] = UUID.randomUUID().toString();
+                service.deposit(ids[i], numbers[i % ACCOUNTS], 1);
+                cache.execute(ids[i], "bench", "", () -> Boolean.TRUE);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            try {
+                long expected = BenchSupport.INITIAL_BALANCE * ACCOUNTS + RETRIED_IDS;
+                long actual = BenchSupport.totalBalance(service);
+                if (actual != expected) {
+                    throw new IllegalStateException("Mã gửi lại bị chạy lại: " + actual + " != " + expected);
+                }
+            } finally {
+                BenchSupport.stopService(service);
+                BenchSupport.deleteRecursively(dir);
+            }
+        }
+    }
+}
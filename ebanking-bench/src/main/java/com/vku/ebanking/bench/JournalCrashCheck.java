@@ -0,0 +1,260 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.TransactionJournal;
+import com.vku.ebanking.shared.Account;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Kiểm tra phục hồi sau crash: một JVM con chuyển khoản liên tục trên nhiều luồng rồi tự gọi
+ * {@code Runtime.halt()} giữa lúc đang ghi journal (không shutdown hook, không checkpoint cuối).
+ * Sau mỗi lần con chết, đuôi journal bị làm hỏng thêm, lần lượt ba kiểu:
+ * <ul>
+ *     <li>bản ghi ghi dở: header khai độ dài lớn hơn phần byte thực có;</li>
+ *     <li>bản ghi cuối sai CRC: lật một byte trong payload;</li>
+ *     <li>segment mới chỉ có vài byte header (crash ngay sau khi tạo file lúc chuyển segment).</li>
+ * </ul>
+ * Rồi đối chiếu: mở journal cắt đúng phần đuôi hỏng (seq cuối và kích thước file như mong đợi),
+ * còn bản ghi sau snapshot cần phát lại, và server khởi động lại từ snapshot + journal giữ nguyên tổng tiền
+ * (mỗi chuyển khoản nằm trọn trong một bản ghi nên mất cả bản ghi cuối vẫn không mất tiền).
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.JournalCrashCheck [số vòng]
+ * </pre>
+ *
+ * Thoát với mã 1 nếu có vi phạm.
+ */
+public class JournalCrashCheck {
+    private static final int ACCOUNTS = 16;
+    private static final long INITIAL_BALANCE = 1_000_000;
+    private static final int HALT_EXIT = 99;
+    private static final String READY = "READY";
+    private static final String[] DAMAGE = {"ghi dở", "sai CRC", "segment mất header"};
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        Path dir = BenchSupport.createTempDir("crash");
+        ServerConfig config = config(dir);
+        Path journalDir = Path.of(config.getJournalDir());
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (String number : BenchSupport.accountNumbers(ACCOUNTS)) {
+            accounts.add(new Account(number, "Crash " + number, INITIAL_BALANCE, BenchSupport.PIN_HASH));
+        }
+        BenchSupport.writeSnapshot(config, accounts, 0);
+
+        int failures = 0;
+        try {
+            for (int round = 1; round <= rounds; round++) {
+                int damage = (round - 1) % DAMAGE.length;
+                Process appender = startAppender(dir, 200 + ThreadLocalRandom.current().nextInt(800));
+                int exit = appender.waitFor();
+                if (exit != HALT_EXIT) {
+                    System.err.println("✗ Vòng " + round + ": tiến trình ghi thoát với mã " + exit);
+                    failures++;
+                    continue;
+                }
+
+                // Lần mở đầu tiên cắt phần ghi dở do chính lần halt để lại (nếu có)
+                long validSeq;
+                try (TransactionJournal journal = open(journalDir)) {
+                    validSeq = journal.getLastSeq();
+                }
+                Path segment = lastSegment(journalDir);
+                long validSize = Files.size(segment);
+                long lastRecord = lastRecordOffset(segment);
+                if (damage == 1 && lastRecord < 0) {
+                    System.err.println("✗ Vòng " + round + ": segment cuối không có bản ghi nào");
+                    failures++;
+                    continue;
+                }
+                long expectedSeq = validSeq;
+                long expectedSize = validSize;
+                if (damage == 0) {
+                    appendTornRecord(segment);
+                } else if (damage == 1) {
+                    flipLastByte(segment);
+                    expectedSeq = validSeq - 1;
+                    expectedSize = lastRecord;
+                } else {
+                    segment = createTornSegment(journalDir, validSeq + 1);
+                    expectedSize = 8;
+                }
+                int pending;
+                long snapshotSeq = BenchSupport.snapshotHandler(config).loadLatestSnapshot().getSeq();
+                try (TransactionJournal journal = open(journalDir)) {
+                    if (journal.getLastSeq() != expectedSeq || Files.size(segment) != expectedSize) {
+                        System.err.printf("✗ Vòng %d: sau khi cắt đuôi seq %d (mong đợi %d), %d byte (mong đợi %d)%n",
+                                round, journal.getLastSeq(), expectedSeq, Files.size(segment), expectedSize);
+                        failures++;
+                    }
+                    pending = journal.replay(snapshotSeq, record -> { });
+                }
+                if (pending == 0) {
+                    System.err.println("✗ Vòng " + round + ": không còn bản ghi nào sau snapshot để phát lại");
+                    failures++;
+                }
+
+                BankServiceImpl restarted = new BankServiceImpl(config);
+                long total = BenchSupport.totalBalance(restarted);
+                long seq = restarted.getJournalSeq();
+                BenchSupport.stopService(restarted);
+                if (total != INITIAL_BALANCE * ACCOUNTS || seq != expectedSeq) {
+                    System.err.printf("✗ Vòng %d: tổng tiền %d (mong đợi %d), seq %d (mong đợi %d)%n",
+                            round, total, INITIAL_BALANCE * ACCOUNTS, seq, expectedSeq);
+                    failures++;
+                }
+                System.out.printf("Vòng %d (%s): halt ở seq %d, phát lại %d bản ghi, tổng tiền %d%n",
+                        round, DAMAGE[damage], validSeq, pending, total);
+            }
+        } finally {
+            BenchSupport.deleteRecursively(dir);
+        }
+        System.out.println(failures == 0 ? "✅ Phục hồi đúng sau " + rounds + " lần halt" : "✗ " + failures + " vi phạm");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Không checkpoint trong lúc chạy để lần khởi động sau phải phát lại journal;
+     * fsync tắt vì halt không làm mất page cache của hệ điều hành
+     */
+    private static ServerConfig config(Path dir) {
+        ServerConfig config = BenchSupport.config(dir);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        config.setCheckpointChanges(Long.MAX_VALUE);
+        config.setCheckpointIntervalMs(3_600_000);
+        return config;
+    }
+
+    private static TransactionJournal open(Path journalDir) throws IOException {
+        return new TransactionJournal(journalDir, FsyncPolicy.NEVER, 0);
+    }
+
+    private static Path lastSegment(Path journalDir) throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log"))
+                    .max(Path::compareTo)
+                    .orElseThrow(() -> new IOException("Không có segment journal trong " + journalDir));
+        }
+    }
+
+    /**
+     * Vị trí bắt đầu của bản ghi cuối cùng trong segment (header 8 byte, mỗi bản ghi [độ dài][CRC][payload]);
+     * -1 nếu segment chưa có bản ghi
+     */
+    private static long lastRecordOffset(Path segment) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+        long last = -1;
+        int position = 8;
+        while (position + 8 <= bytes.limit()) {
+            int length = bytes.getInt(position);
+            last = position;
+            position += 8 + length;
+        }
+        return last;
+    }
+
+    /**
+     * Header của một bản ghi 64 byte nhưng chỉ có 10 byte payload, như khi crash giữa lần ghi
+     */
+    private static void appendTornRecord(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer record = ByteBuffer.allocate(18);
+            record.putInt(64).putInt(0x1234_5678).put(new byte[10]).flip();
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Segment kế tiếp chỉ có 3 byte đầu của header, như khi crash giữa openSegment
+     */
+    private static Path createTornSegment(Path journalDir, long firstSeq) throws IOException {
+        Path segment = journalDir.resolve(String.format("journal-%020d.log", firstSeq));
+        Files.write(segment, new byte[] {0x45, 0x42, 0x4A});
+        return segment;
+    }
+
+    private static void flipLastByte(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size() - 1;
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) ~one.get(0));
+            one.rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private static Process startAppender(Path dir, long haltAfterMs) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java,
+                "-cp", System.getProperty("java.class.path"),
+                "-Dstdout.encoding=UTF-8",
+                "-Debanking.metrics.jmx=false",
+                Appender.class.getName(), dir.toString(), Long.toString(haltAfterMs))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.PIPE)
+                .start();
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = output.readLine()) != null && !line.equals(READY)) {
+            System.out.println("[appender] " + line);
+        }
+        if (line == null) {
+            throw new IllegalStateException("Tiến trình ghi không khởi động được");
+        }
+        Thread.ofVirtual().start(() -> {
+            try {
+                output.transferTo(Writer.nullWriter());
+            } catch (IOException e) {
+                // Tiến trình ghi đã dừng
+            }
+        });
+        return process;
+    }
+
+    /**
+     * JVM con: chuyển khoản ngẫu nhiên trên mọi nhân rồi halt sau {@code args[1]} ms
+     */
+    public static final class Appender {
+        public static void main(String[] args) throws Exception {
+            ServerConfig config = config(Path.of(args[0]));
+            long haltAfterMs = Long.parseLong(args[1]);
+            BankServiceImpl service = new BankServiceImpl(config);
+            String[] numbers = BenchSupport.accountNumbers(ACCOUNTS);
+            for (int t = 0; t < Runtime.getRuntime().availableProcessors(); t++) {
+                Thread.ofPlatform().daemon().start(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        while (true) {
+                            int a = random.nextInt(ACCOUNTS);
+                            int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                            service.transfer(numbers[a], numbers[b], 1 + random.nextInt(10_000));
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+            System.out.println(READY);
+            Thread.sleep(haltAfterMs);
+            Runtime.getRuntime().halt(HALT_EXIT);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.PinHasher;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.Session;
+import com.vku.ebanking.shared.SessionExpiredException;
+import com.vku.ebanking.shared.SessionToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng đăng nhập theo số vòng PBKDF2 ({@code iterations}, như -Debanking.auth.pbkdf2Iterations):
+ * authenticate (một lần băm PIN + cấp phiên, rồi đăng xuất) với một và bốn luồng, so với lời gọi theo phiên
+ * đã mở (getAccount: chỉ tra phiên trong bộ nhớ, không băm) và tra tài khoản trần theo số (login).
+ * Kết thúc lượt đo: PIN sai bị từ chối, phiên đã đăng xuất không dùng được và các phiên mở sẵn vẫn còn.
+ *
+ * <pre>
+ * java -jar ebanking-bench/target/benchmarks.jar LoginBenchmark -p iterations=600000
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int SESSIONS = 1024;
+
+    @Param({"10000", "100000", "310000"})
+    public int iterations;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private String[] numbers;
+    private SessionToken[] sessions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("login");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setFsyncPolicy(FsyncPolicy.NEVER);
+        config.setPbkdf2Iterations(iterations);
+        // Một giá trị băm với đúng số vòng cần đo cho mọi tài khoản (salt dùng chung chỉ chấp nhận được khi đo)
+        String pinHash = new PinHasher(iterations).hash(BenchSupport.PIN);
+        List<Account> accounts = BenchSupport.generateAccounts(ACCOUNTS);
+        for (Account account : accounts) {
+            account.setPin(pinHash);
+        }
+        service = BenchSupport.startService(config, accounts);
+        numbers = BenchSupport.accountNumbers(ACCOUNTS);
+        sessions = new SessionToken[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = service.authenticate(numbers[i % ACCOUNTS], BenchSupport.PIN).getToken();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            if (service.authenticate(numbers[0], "9999") != null) {
+                throw new IllegalStateException("PIN sai vẫn đăng nhập được");
+            }
+            Session session = service.authenticate(numbers[0], BenchSupport.PIN);
+            if (session.getAccount().getPin() != null) {
+                throw new IllegalStateException("Tài khoản trả về kèm PIN");
+            }
+            service.logout(session.getToken());
+            try {
+                service.getAccount(session.getToken());
+                throw new IllegalStateException("Phiên đã đăng xuất vẫn dùng được");
+            } catch (SessionExpiredException expected) {
+                // đúng
+            }
+            if (service.getSessionCache().size() != SESSIONS) {
+                throw new IllegalStateException("Số phiên mở " + service.getSessionCache().size()
+                        + " != " + SESSIONS);
+            }
+            System.out.println(service.getSessionCache());
+            System.out.println(service.getMetrics().authenticate());
+        } finally {
+            BenchSupport.stopService(service);
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    private String randomAccount() {
+        return numbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+    }
+
+    private Session login() throws Exception {
+        Session session = service.authenticate(randomAccount(), BenchSupport.PIN);
+        service.logout(session.getToken());
+        return session;
+    }
+
+    @Benchmark
+    public Session authenticate() throws Exception {
+        return login();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Session authenticateContended() throws Exception {
+        return login();
+    }
+
+    @Benchmark
+    public Account sessionLookup() throws Exception {
+        return service.getAccount(sessions[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    @Benchmark
+    public Account accountLookup() throws Exception {
+        return service.login(randomAccount());
+    }
+}
@@ -0,0 +1,94 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.AccountLocks;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.LatencyHistogram;
+import com.vku.ebanking.server.OperationStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chi phí đo đạc trên mỗi lời gọi: thao tác rẻ gọi thẳng so với qua {@link OperationStats#time}
+ * (hai lần đọc đồng hồ + ghi histogram), ghi histogram riêng lẻ (một và bốn luồng), và khóa tài khoản
+ * không tranh chấp qua AccountLocks (có đo thời gian chờ) so với ReentrantLock trần.
+ * Hiệu {@code timedCall - plainCall} là phần thêm vào mỗi lời gọi BankService, mục tiêu dưới 1 µs.
+ * Kết thúc lượt đo, histogram phải đếm đúng số lần ghi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    private final OperationStats stats = new OperationStats("bench");
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AccountLocks locks = new AccountLocks(ConcurrencyMode.STRIPED, 64);
+    private final ReentrantLock plainLock = new ReentrantLock();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong timedCalls = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (stats.getCount() != timedCalls.get() || histogram.getCount() != recorded.get()) {
+            throw new IllegalStateException("Histogram đếm sai: " + stats.getCount() + "/" + timedCalls.get()
+                    + ", " + histogram.getCount() + "/" + recorded.get());
+        }
+        System.out.println(stats);
+    }
+
+    private Long work() {
+        return counter.incrementAndGet();
+    }
+
+    @Benchmark
+    public Long plainCall() {
+        return work();
+    }
+
+    @Benchmark
+    public Long timedCall() throws Exception {
+        timedCalls.incrementAndGet();
+        return stats.time(this::work);
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        recorded.incrementAndGet();
+        histogram.record(counter.get() & 0xFFFF);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended() {
+        recorded.incrementAndGet();
+        histogram.record(counter.getAndIncrement() & 0xFFFF);
+    }
+
+    @Benchmark
+    public void plainLockUnlock() {
+        plainLock.lock();
+        plainLock.unlock();
+    }
+
+    @Benchmark
+    public void accountLockUnlock() {
+        locks.lock("0000000001");
+        locks.unlock("0000000001");
+    }
+}
@@ -0,0 +1,58 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.shared.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phần tiền tệ trên đường giao dịch trước và sau khi chuyển sang long:
+ * cộng số dư, định dạng dòng log và parse số dư khi nạp file
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private double doubleBalance = 1_234_567_890;
+    private long longBalance = 1_234_567_890L;
+    private final double doubleAmount = 150_000;
+    private final long longAmount = 150_000L;
+    private final String legacyText = "1.23456789E9";
+    private final String longText = "1234567890";
+    private final StringBuilder line = new StringBuilder(64);
+
+    @Benchmark
+    public String doubleDepositLog() {
+        doubleBalance += doubleAmount;
+        return "0000000001 - " + String.format("Nạp tiền: +%.0f₫", doubleAmount);
+    }
+
+    @Benchmark
+    public String longDepositLog() {
+        longBalance += longAmount;
+        line.setLength(0);
+        line.append("0000000001 - Nạp tiền: +");
+        return Money.appendTo(line, longAmount).append('₫').toString();
+    }
+
+    @Benchmark
+    public double parseDouble() {
+        return Double.parseDouble(legacyText);
+    }
+
+    @Benchmark
+    public long parseLong() {
+        return Money.parse(longText);
+    }
+}
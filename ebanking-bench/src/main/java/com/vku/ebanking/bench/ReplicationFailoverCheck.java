@@ -0,0 +1,192 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.HeadlessServer;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.SnapshotFormat;
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.SessionToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chạy thử nhân bản primary/follower bằng hai JVM {@link HeadlessServer} trên một máy:
+ * client đăng nhập từng tài khoản rồi chuyển khoản liên tục qua registry, primary bị kill -9 giữa chừng, follower phải tự nâng lên
+ * và bind lại "BankService" trên cùng cổng registry. Tổng tiền sau khi chuyển sang follower phải
+ * không đổi; số giao dịch đã báo thành công nhưng chưa kịp nhân bản được in ra (nhân bản bất đồng bộ).
+ *
+ * <pre>
+ * java -cp ebanking-bench/target/benchmarks.jar com.vku.ebanking.bench.ReplicationFailoverCheck [số chuyển khoản]
+ * </pre>
+ *
+ * Thoát với mã 1 nếu có vi phạm.
+ */
+public class ReplicationFailoverCheck {
+    private static final int ACCOUNTS = 20;
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Path dir = BenchSupport.createTempDir("replication");
+        int registryPort = 20_000 + ThreadLocalRandom.current().nextInt(20_000);
+        int replicationPort = registryPort + 1;
+
+        String[] numbers = BenchSupport.accountNumbers(ACCOUNTS);
+        List<Account> accounts = new ArrayList<>(ACCOUNTS);
+        for (String number : numbers) {
+            accounts.add(new Account(number, "Replica " + number, INITIAL_BALANCE, BenchSupport.PIN_HASH));
+        }
+        ServerConfig primaryConfig = BenchSupport.config(dir.resolve("primary"));
+        BenchSupport.writeSnapshot(primaryConfig, accounts, 0);
+
+        Process primary = null;
+        Process follower = null;
+        int failures = 0;
+        try {
+            primary = startServer(dir, "primary", registryPort,
+                    "-Debanking.replication.port=" + replicationPort);
+            BankService service = lookup(registryPort, 10_000);
+            SessionToken[] sessions = authenticate(service, numbers);
+            follower = startServer(dir, "follower", registryPort,
+                    "-Debanking.replication.primary=localhost:" + replicationPort,
+                    "-Debanking.replication.failoverMs=1000");
+
+            long[] expected = new long[ACCOUNTS];
+            Arrays.fill(expected, INITIAL_BALANCE);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long started = System.nanoTime();
+            int done = 0;
+            for (; done < transfers / 2; done++) {
+                int a = random.nextInt(ACCOUNTS);
+                int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                long amount = 1 + random.nextInt(10_000);
+                if (service.transfer(sessions[a], UUID.randomUUID().toString(), numbers[b], amount)) {
+                    expected[a] -= amount;
+                    expected[b] += amount;
+                }
+            }
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            primary.destroyForcibly().waitFor();
+            long killedAt = System.nanoTime();
+            System.out.println("💥 Đã kill primary sau " + done + " chuyển khoản (" + elapsedMs + " ms)");
+            service = lookup(registryPort, 30_000);
+            long failoverMs = (System.nanoTime() - killedAt) / 1_000_000;
+            // Phiên chỉ nằm trong bộ nhớ primary cũ: đăng nhập lại trên primary mới
+            sessions = authenticate(service, numbers);
+
+            long total = 0;
+            int behind = 0;
+            for (int i = 0; i < ACCOUNTS; i++) {
+                long balance = service.getAccount(sessions[i]).getBalance();
+                total += balance;
+                if (balance != expected[i]) {
+                    behind++;
+                }
+            }
+            if (total != INITIAL_BALANCE * ACCOUNTS) {
+                System.err.println("✗ Tổng tiền sau failover " + total + ", mong đợi " + INITIAL_BALANCE * ACCOUNTS);
+                failures++;
+            }
+
+            // Follower đã thành primary phải nhận giao dịch tiếp
+            for (; done < transfers; done++) {
+                int a = random.nextInt(ACCOUNTS);
+                int b = (a + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                service.transfer(sessions[a], UUID.randomUUID().toString(), numbers[b], 1 + random.nextInt(10_000));
+            }
+            total = 0;
+            for (SessionToken session : sessions) {
+                total += service.getAccount(session).getBalance();
+            }
+            if (total != INITIAL_BALANCE * ACCOUNTS) {
+                System.err.println("✗ Tổng tiền trên primary mới " + total);
+                failures++;
+            }
+            System.out.printf("Failover trong %d ms; %d/%d tài khoản khác số dư client ghi nhận "
+                    + "(giao dịch chưa kịp nhân bản); %d vi phạm%n", failoverMs, behind, ACCOUNTS, failures);
+        } finally {
+            for (Process process : new Process[] {primary, follower}) {
+                if (process != null) {
+                    process.destroy();
+                    process.waitFor(10, TimeUnit.SECONDS);
+                }
+            }
+            BenchSupport.deleteRecursively(dir);
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Tra "BankService" cho tới khi có server trả lời hoặc hết thời gian
+     */
+    private static BankService lookup(int registryPort, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            try {
+                BankService service = (BankService) LocateRegistry.getRegistry("localhost", registryPort)
+                        .lookup("BankService");
+                service.authenticate(BenchSupport.accountNumber(0), BenchSupport.PIN);
+                return service;
+            } catch (RemoteException | NotBoundException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static SessionToken[] authenticate(BankService service, String[] numbers) throws RemoteException {
+        SessionToken[] sessions = new SessionToken[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            sessions[i] = service.authenticate(numbers[i], BenchSupport.PIN).getToken();
+        }
+        return sessions;
+    }
+
+    private static Process startServer(Path dir, String name, int registryPort, String... extra) throws Exception {
+        Path home = dir.resolve(name);
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dstdout.encoding=UTF-8",
+                "-Debanking.registry.port=" + registryPort,
+                "-Debanking.journal.dir=" + home.resolve("journal"),
+                "-Debanking.snapshot.dir=" + home.resolve("snapshots"),
+                "-Debanking.history.dir=" + home.resolve("history"),
+                "-Debanking.snapshot.format=" + SnapshotFormat.BINARY,
+                "-Debanking.journal.fsync=" + FsyncPolicy.NEVER));
+        command.addAll(List.of(extra));
+        command.add(HeadlessServer.class.getName());
+        home.toFile().mkdirs();
+        Process process = new ProcessBuilder(command).directory(home.toFile()).redirectErrorStream(true).start();
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        Thread.ofVirtual().start(() -> {
+            try {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    System.out.println("[" + name + "] " + line);
+                }
+            } catch (IOException e) {
+                // Tiến trình đã dừng
+            }
+        });
+        return process;
+    }
+}
@@ -0,0 +1,94 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Khả năng mở rộng của chế độ SHARDED theo số shard (mỗi shard một nhân).
+ * Chạy với số luồng client bằng số shard lớn nhất, ví dụ
+ * {@code BenchRunner ShardScalingBenchmark 16}, rồi so sánh thông lượng trên đường chéo luồng = shard.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardScalingBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    public int shards;
+
+    @Param({"100000"})
+    public int accountCount;
+
+    @Param({"NEVER"})
+    public FsyncPolicy fsync;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private String[] numbers;
+    private final LongAdder deposited = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("shards");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setConcurrencyMode(ConcurrencyMode.SHARDED);
+        config.setShards(shards);
+        config.setFsyncPolicy(fsync);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(accountCount));
+        numbers = BenchSupport.accountNumbers(accountCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            long expected = BenchSupport.INITIAL_BALANCE * accountCount + deposited.sum();
+            long actual = BenchSupport.totalBalance(service);
+            if (actual != expected) {
+                throw new IllegalStateException("Tổng số dư sai lệch: " + actual + " != " + expected);
+            }
+        } finally {
+            BenchSupport.stopService(service);
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    @Benchmark
+    public boolean deposit() throws Exception {
+        long amount = 1 + ThreadLocalRandom.current().nextInt(100_000);
+        boolean ok = service.deposit(numbers[ThreadLocalRandom.current().nextInt(numbers.length)], amount);
+        if (ok) {
+            deposited.add(amount);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public boolean transfer() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numbers.length);
+        int to = (from + 1 + random.nextInt(numbers.length - 1)) % numbers.length;
+        return service.transfer(numbers[from], numbers[to], 1 + random.nextInt(100_000));
+    }
+}
@@ -0,0 +1,72 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.AccountSnapshot;
+import com.vku.ebanking.server.AccountXmlFormat;
+import com.vku.ebanking.server.BinarySnapshotFormat;
+import com.vku.ebanking.shared.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian nạp trạng thái khi khởi động: snapshot XML (StAX) so với snapshot nhị phân map vào bộ nhớ
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SnapshotLoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int accountCount;
+
+    private Path dir;
+    private File xmlFile;
+    private File binaryFile;
+    private final AccountXmlFormat xmlFormat = AccountXmlFormat.named("stax");
+    private final BinarySnapshotFormat binaryFormat = new BinarySnapshotFormat();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("snapshot");
+        List<Account> accounts = BenchSupport.generateAccounts(accountCount);
+        xmlFile = dir.resolve("accounts.xml").toFile();
+        binaryFile = dir.resolve("accounts.bin").toFile();
+        xmlFormat.write(accounts, xmlFile);
+        binaryFormat.write(accounts, 0, binaryFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<Account> loadXml() throws Exception {
+        List<Account> accounts = new ArrayList<>(accountCount);
+        xmlFormat.read(xmlFile, accounts::add);
+        return accounts;
+    }
+
+    @Benchmark
+    public AccountSnapshot loadBinary() throws Exception {
+        return binaryFormat.read(binaryFile);
+    }
+}
@@ -0,0 +1,70 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.server.SnapshotFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian khởi động server không giao diện (nạp snapshot, mở journal, sẵn sàng nhận giao dịch)
+ * theo số tài khoản và định dạng snapshot. Mỗi lần đo là một lần khởi động lạnh trong cùng JVM.
+ * Thời gian khởi động có giao diện được ServerController ghi vào log để so sánh.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int accountCount;
+
+    @Param({"XML", "BINARY"})
+    public SnapshotFormat snapshotFormat;
+
+    private Path dir;
+    private ServerConfig config;
+    private BankServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("startup");
+        config = BenchSupport.config(dir);
+        config.setSnapshotFormat(snapshotFormat);
+        // seq 1 và journal rỗng: khởi động không cần checkpoint lại, chỉ đo đường nạp
+        BenchSupport.writeSnapshot(config, BenchSupport.generateAccounts(accountCount), 1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopService() {
+        BenchSupport.stopService(service);
+        service = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public BankServiceImpl startHeadless() throws Exception {
+        service = new BankServiceImpl(config);
+        return service;
+    }
+}
@@ -0,0 +1,118 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.BankServiceImpl;
+import com.vku.ebanking.server.ConcurrencyMode;
+import com.vku.ebanking.server.FsyncPolicy;
+import com.vku.ebanking.server.ServerConfig;
+import com.vku.ebanking.shared.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thông lượng login/deposit/withdraw/transfer gọi thẳng vào BankServiceImpl (không qua RMI, không giao diện).
+ * Số luồng chọn bằng -t hoặc chạy cả dãy 1..N qua {@link BenchRunner}.
+ * Kết thúc mỗi lượt đo, tổng số dư được đối chiếu với tổng nạp/rút để phát hiện mất tiền khi chạy song song.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int accountCount;
+
+    @Param({"STRIPED", "GLOBAL", "CAS", "SHARDED"})
+    public ConcurrencyMode concurrency;
+
+    @Param({"NEVER", "ALWAYS"})
+    public FsyncPolicy fsync;
+
+    private Path dir;
+    private BankServiceImpl service;
+    private String[] numbers;
+    private final LongAdder deposited = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("tx");
+        ServerConfig config = BenchSupport.config(dir);
+        config.setConcurrencyMode(concurrency);
+        config.setFsyncPolicy(fsync);
+        service = BenchSupport.startService(config, BenchSupport.generateAccounts(accountCount));
+        numbers = BenchSupport.accountNumbers(accountCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            long expected = BenchSupport.INITIAL_BALANCE * accountCount + deposited.sum() - withdrawn.sum();
+            long actual = BenchSupport.totalBalance(service);
+            if (actual != expected) {
+                throw new IllegalStateException("Tổng số dư sai lệch: " + actual + " != " + expected);
+            }
+        } finally {
+            BenchSupport.stopService(service);
+            BenchSupport.deleteRecursively(dir);
+        }
+    }
+
+    private String randomAccount() {
+        return numbers[ThreadLocalRandom.current().nextInt(numbers.length)];
+    }
+
+    private long randomAmount() {
+        return 1 + ThreadLocalRandom.current().nextInt(100_000);
+    }
+
+    @Benchmark
+    public Account login() throws Exception {
+        return service.login(randomAccount());
+    }
+
+    @Benchmark
+    public boolean deposit() throws Exception {
+        long amount = randomAmount();
+        boolean ok = service.deposit(randomAccount(), amount);
+        if (ok) {
+            deposited.add(amount);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public boolean withdraw() throws Exception {
+        long amount = randomAmount();
+        boolean ok = service.withdraw(randomAccount(), amount);
+        if (ok) {
+            withdrawn.add(amount);
+        }
+        return ok;
+    }
+
+    @Benchmark
+    public boolean transfer() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(numbers.length);
+        int to = (from + 1 + random.nextInt(numbers.length - 1)) % numbers.length;
+        return service.transfer(numbers[from], numbers[to], randomAmount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.vku.ebanking.bench;
+
+import com.vku.ebanking.server.AccountXmlFormat;
+import com.vku.ebanking.server.SnapshotFormat;
+import com.vku.ebanking.server.XMLAccountHandler;
+import com.vku.ebanking.shared.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian XMLAccountHandler.loadAccounts/saveAccounts theo kích thước file, so sánh StAX với DOM
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class XmlPersistenceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int accountCount;
+
+    @Param({"stax", "dom"})
+    public String parser;
+
+    private Path dir;
+    private XMLAccountHandler handler;
+    private List<Account> accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchSupport.createTempDir("xml");
+        handler = new XMLAccountHandler(AccountXmlFormat.named(parser), dir.resolve("snapshots").toFile(),
+                SnapshotFormat.XML, dir.resolve("accounts.xml").toFile());
+        accounts = BenchSupport.generateAccounts(accountCount);
+        if (!handler.saveAccounts(accounts)) {
+            throw new IllegalStateException("Không ghi được file XML ban đầu");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<Account> loadAccounts() {
+        return handler.loadAccounts();
+    }
+
+    @Benchmark
+    public boolean saveAccounts() {
+        return handler.saveAccounts(accounts);
+    }
+}
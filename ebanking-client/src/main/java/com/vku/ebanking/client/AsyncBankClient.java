@@ -0,0 +1,224 @@
+package com.vku.ebanking.client;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.Session;
+import com.vku.ebanking.shared.SessionToken;
+
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Mặt tiền bất đồng bộ của BankService cho giao diện: mỗi lời gọi RMI chạy trên một virtual thread
+ * và trả về CompletableFuture ngay, nên luồng JavaFX không bao giờ chờ mạng và nhiều yêu cầu có thể
+ * cùng đang chờ phản hồi.
+ *
+ * Mỗi lời gọi có hạn chờ chung {@code timeoutMs} (tính cả các lần thử lại); quá hạn thì future lỗi
+ * {@link TimeoutException}. Hủy future (hoặc quá hạn) sẽ ngắt virtual thread đang chờ mạng.
+ * Nạp/rút/chuyển khoản mang một mã yêu cầu dùng chung cho mọi lần thử lại, nên thử lại sau khi mất
+ * phản hồi không làm thao tác chạy hai lần. Quá hạn thì kết quả chưa rõ: người gọi giữ mã
+ * ({@link #newRequestId()}) và gửi lại cùng mã cho tới khi có câu trả lời dứt khoát.
+ * Kết quả hoàn tất trên luồng nền: giao diện tự chuyển về luồng JavaFX bằng Platform.runLater.
+ */
+public class AsyncBankClient implements AutoCloseable {
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final BankService bankService;
+    private final ExecutorService executor;
+    private final long timeoutMs;
+    private volatile RetryListener retryListener = (attempt, cause) -> { };
+
+    /**
+     * Lời gọi RMI chạy trên luồng nền
+     */
+    @FunctionalInterface
+    public interface RemoteCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Được báo trước mỗi lần thử lại (attempt = số lần đã thất bại)
+     */
+    @FunctionalInterface
+    public interface RetryListener {
+        void retrying(int attempt, RemoteException cause);
+    }
+
+    @FunctionalInterface
+    private interface IdempotentCall<T> {
+        T execute(String requestId) throws RemoteException;
+    }
+
+    public AsyncBankClient(BankService bankService, long timeoutMs) {
+        this(bankService, timeoutMs, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    private AsyncBankClient(BankService bankService, long timeoutMs, ExecutorService executor) {
+        this.bankService = bankService;
+        this.timeoutMs = timeoutMs;
+        this.executor = executor;
+    }
+
+    /**
+     * Tra BankService trong registry trên luồng nền
+     */
+    public static CompletableFuture<AsyncBankClient> connect(String host, int port, long timeoutMs) {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CompletableFuture<AsyncBankClient> connected = run(executor, timeoutMs, () -> {
+            Registry registry = LocateRegistry.getRegistry(host, port);
+            return new AsyncBankClient((BankService) registry.lookup("BankService"), timeoutMs, executor);
+        });
+        connected.whenComplete((client, error) -> {
+            if (error != null) {
+                executor.shutdownNow();
+            }
+        });
+        return connected;
+    }
+
+    public void setRetryListener(RetryListener retryListener) {
+        this.retryListener = retryListener;
+    }
+
+    public BankService getBankService() {
+        return bankService;
+    }
+
+    /**
+     * PIN được kiểm tra trên server; future mang null nếu sai số tài khoản hoặc PIN
+     */
+    public CompletableFuture<Session> authenticate(String accountNumber, String pin) {
+        return submit(() -> bankService.authenticate(accountNumber, pin));
+    }
+
+    public CompletableFuture<Void> logout(SessionToken session) {
+        return submit(() -> {
+            bankService.logout(session);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Account> getAccount(SessionToken session) {
+        return submit(() -> bankService.getAccount(session));
+    }
+
+    /**
+     * Mã yêu cầu mới cho một giao dịch của người dùng; dùng lại đúng mã này khi gửi lại giao dịch đó
+     */
+    public static String newRequestId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public CompletableFuture<Boolean> deposit(SessionToken session, long amount) {
+        return deposit(session, newRequestId(), amount);
+    }
+
+    public CompletableFuture<Boolean> deposit(SessionToken session, String requestId, long amount) {
+        return submitIdempotent(requestId, id -> bankService.deposit(session, id, amount));
+    }
+
+    public CompletableFuture<Boolean> withdraw(SessionToken session, long amount) {
+        return withdraw(session, newRequestId(), amount);
+    }
+
+    public CompletableFuture<Boolean> withdraw(SessionToken session, String requestId, long amount) {
+        return submitIdempotent(requestId, id -> bankService.withdraw(session, id, amount));
+    }
+
+    public CompletableFuture<Boolean> transfer(SessionToken session, String toAccount, long amount) {
+        return transfer(session, newRequestId(), toAccount, amount);
+    }
+
+    public CompletableFuture<Boolean> transfer(SessionToken session, String requestId, String toAccount,
+                                               long amount) {
+        return submitIdempotent(requestId, id -> bankService.transfer(session, id, toAccount, amount));
+    }
+
+    public CompletableFuture<HistoryPage> getHistory(SessionToken session, long cursor, int limit) {
+        return submit(() -> bankService.getHistory(session, cursor, limit));
+    }
+
+    public CompletableFuture<Void> registerCallback(SessionToken session, ClientCallback callback) {
+        return submit(() -> {
+            bankService.registerCallback(session, callback);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> unregisterCallback(SessionToken session) {
+        return submit(() -> {
+            bankService.unregisterCallback(session);
+            return null;
+        });
+    }
+
+    /**
+     * Chạy lời gọi bất kỳ trên luồng nền với hạn chờ của client
+     */
+    public <T> CompletableFuture<T> submit(RemoteCall<T> call) {
+        return run(executor, timeoutMs, call);
+    }
+
+    /**
+     * Thử lại lỗi mạng tối đa MAX_ATTEMPTS lần với cùng mã yêu cầu; lỗi do server báo (ServerException)
+     * không được thử lại
+     */
+    private <T> CompletableFuture<T> submitIdempotent(String requestId, IdempotentCall<T> call) {
+        return submit(() -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return call.execute(requestId);
+                } catch (ServerException e) {
+                    throw e;
+                } catch (RemoteException e) {
+                    if (attempt >= MAX_ATTEMPTS || Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                    retryListener.retrying(attempt, e);
+                    Thread.sleep(200L * attempt);
+                }
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> run(ExecutorService executor, long timeoutMs, RemoteCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        if (timeoutMs > 0) {
+            result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        // Quá hạn hoặc bị hủy: ngắt luồng đang chờ để giải phóng kết nối
+        result.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException || error instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Hủy mọi lời gọi đang chờ và dừng executor
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -1,7 +1,6 @@
 package com.vku.ebanking.client;
 
-import com.vku.ebanking.shared.Account;
-import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.Session;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -9,8 +8,9 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 public class LoginController {
     @FXML private TextField accountField;
@@ -19,7 +19,12 @@ public class LoginController {
     @FXML private Label errorLabel;
     @FXML private ProgressIndicator progressIndicator;
 
-    private BankService bankService;
+    /**
+     * Hạn chờ mỗi lời gọi tới server (kể cả các lần thử lại)
+     */
+    private static final long TIMEOUT_MS = Long.getLong("ebanking.client.timeoutMs", 10_000);
+
+    private AsyncBankClient client;
 
     @FXML
     public void initialize() {
@@ -44,34 +49,30 @@ public class LoginController {
         loginButton.setDisable(true);
         errorLabel.setVisible(false);
 
-        new Thread(() -> {
-            try {
-                if (bankService == null) {
-                    Registry registry = LocateRegistry.getRegistry("localhost", 1099);
-                    bankService = (BankService) registry.lookup("BankService");
-                }
-
-                Account account = bankService.login(accountNumber);
-
-                Platform.runLater(() -> {
+        CompletableFuture<AsyncBankClient> connected = client != null
+                ? CompletableFuture.completedFuture(client)
+                : AsyncBankClient.connect("localhost", 1099, TIMEOUT_MS);
+        connected.thenCompose(connectedClient -> {
+                    client = connectedClient;
+                    return connectedClient.authenticate(accountNumber, pin);
+                })
+                .whenComplete((session, error) -> Platform.runLater(() -> {
                     progressIndicator.setVisible(false);
                     loginButton.setDisable(false);
 
-                    if (account != null && account.getPin().equals(pin)) {
-                        openMainScreen(account);
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        showError(cause instanceof TimeoutException
+                                ? "Server không phản hồi, vui lòng thử lại!"
+                                : "Không thể kết nối đến server!\n" + cause.getMessage());
+                        cause.printStackTrace();
+                    } else if (session != null) {
+                        openMainScreen(session);
                     } else {
                         showError("Sai số tài khoản hoặc mã PIN!");
                     }
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    progressIndicator.setVisible(false);
-                    loginButton.setDisable(false);
-                    showError("Không thể kết nối đến server!\n" + e.getMessage());
-                });
-                e.printStackTrace();
-            }
-        }).start();
+                }));
     }
 
     private void showError(String message) {
@@ -79,14 +80,14 @@ public class LoginController {
         errorLabel.setVisible(true);
     }
 
-    private void openMainScreen(Account account) {
+    private void openMainScreen(Session session) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/main.fxml"));
             Scene scene = new Scene(loader.load());
 
             MainController controller = loader.getController();
-            controller.setAccount(account);
-            controller.setBankService(bankService);
+            controller.setAccount(session.getAccount());
+            controller.setClient(client, session.getToken());
 
             Stage stage = (Stage) loginButton.getScene().getWindow();
             stage.setScene(scene);
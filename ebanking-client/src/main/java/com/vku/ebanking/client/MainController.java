@@ -3,6 +3,10 @@ package com.vku.ebanking.client;
 import com.vku.ebanking.shared.Account;
 import com.vku.ebanking.shared.BankService;
 import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.Money;
+import com.vku.ebanking.shared.SessionExpiredException;
+import com.vku.ebanking.shared.SessionToken;
+import com.vku.ebanking.shared.TransactionEvent;
 import javafx.animation.*;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -12,12 +16,25 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
+import java.rmi.ServerException;
 import java.rmi.server.UnicastRemoteObject;
-import java.text.NumberFormat;
-import java.util.Locale;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class MainController {
+    // Giao dịch chưa rõ kết quả được gửi lại cùng mã sau mỗi khoảng này, trong tối đa
+    // BankService.RESUBMIT_WINDOW_MS (server nhớ mã ít nhất chừng đó)
+    private static final long RESUBMIT_DELAY_MS = 2_000;
+
     @FXML private Label accountNameLabel;
     @FXML private Label accountNumberLabel;
     @FXML private Label balanceLabel;
@@ -29,13 +46,17 @@ public class MainController {
     @FXML private Button transferButton;
 
     private Account account;
-    private BankService bankService;
+    private AsyncBankClient client;
+    private SessionToken session;
+    private final Set<CompletableFuture<?>> pending = new HashSet<>();
     private ClientCallbackImpl callback;
-    private NumberFormat currencyFormat;
+    // Số dư chỉ lấy từ server: seq của sự kiện mới nhất đã hiển thị, sự kiện đến trễ có seq nhỏ hơn bị bỏ qua
+    private long lastSequence = -1;
+    private int mutationsInFlight;
+    private boolean loggedOut;
 
     @FXML
     public void initialize() {
-        currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
         notificationArea.setEditable(false);
     }
 
@@ -44,8 +65,12 @@ public class MainController {
         updateUI();
     }
 
-    public void setBankService(BankService bankService) {
-        this.bankService = bankService;
+    public void setClient(AsyncBankClient client, SessionToken session) {
+        this.client = client;
+        this.session = session;
+        client.setRetryListener((attempt, cause) ->
+                showNotification("⚠️ Mất kết nối, đang thử lại (" + attempt + "/"
+                        + (AsyncBankClient.MAX_ATTEMPTS - 1) + ")..."));
         registerCallback();
     }
 
@@ -55,8 +80,8 @@ public class MainController {
         updateBalance(account.getBalance());
     }
 
-    private void updateBalance(double balance) {
-        balanceLabel.setText(currencyFormat.format(balance) + " ₫");
+    private void updateBalance(long balance) {
+        balanceLabel.setText(Money.format(balance) + " ₫");
         animateBalance();
     }
 
@@ -74,99 +99,200 @@ public class MainController {
     private void registerCallback() {
         try {
             callback = new ClientCallbackImpl();
-            bankService.registerCallback(account.getAccountNumber(), callback);
         } catch (RemoteException e) {
             showNotification("❌ Lỗi đăng ký callback");
+            return;
         }
+        onFx(client.registerCallback(session, callback),
+                done -> { },
+                error -> showNotification("❌ Lỗi đăng ký callback"));
     }
 
     @FXML
     private void deposit() {
-        processTransaction(() -> {
-            double amount = Double.parseDouble(amountField.getText());
-            if (amount <= 0) {
-                showNotification("❌ Số tiền không hợp lệ!");
-                return;
-            }
-            if (bankService.deposit(account.getAccountNumber(), amount)) {
-                account.setBalance(account.getBalance() + amount);
-                updateBalance(account.getBalance());
+        long amount = parseAmount();
+        if (amount <= 0) {
+            return;
+        }
+        amountField.clear();
+        onMutation(requestId -> client.deposit(session, requestId, amount), ok -> {
+            if (ok) {
                 showNotification("✅ Nạp tiền thành công: +" +
-                        currencyFormat.format(amount) + "₫");
-                amountField.clear();
+                        Money.format(amount) + "₫");
+            } else {
+                showNotification("❌ Nạp tiền thất bại!");
             }
         });
     }
 
     @FXML
     private void withdraw() {
-        processTransaction(() -> {
-            double amount = Double.parseDouble(amountField.getText());
-            if (amount <= 0) {
-                showNotification("❌ Số tiền không hợp lệ!");
-                return;
-            }
-            if (amount > account.getBalance()) {
-                showNotification("❌ Số dư không đủ!");
-                return;
-            }
-            if (bankService.withdraw(account.getAccountNumber(), amount)) {
-                account.setBalance(account.getBalance() - amount);
-                updateBalance(account.getBalance());
+        long amount = parseAmount();
+        if (amount <= 0) {
+            return;
+        }
+        if (amount > account.getBalance()) {
+            showNotification("❌ Số dư không đủ!");
+            return;
+        }
+        amountField.clear();
+        onMutation(requestId -> client.withdraw(session, requestId, amount), ok -> {
+            if (ok) {
                 showNotification("✅ Rút tiền thành công: -" +
-                        currencyFormat.format(amount) + "₫");
-                amountField.clear();
+                        Money.format(amount) + "₫");
+            } else {
+                showNotification("❌ Rút tiền thất bại!");
             }
         });
     }
 
     @FXML
     private void transfer() {
-        processTransaction(() -> {
-            String recipient = recipientField.getText().trim();
-            double amount = Double.parseDouble(amountField.getText());
-
-            if (recipient.isEmpty()) {
-                showNotification("❌ Vui lòng nhập số tài khoản người nhận!");
-                return;
-            }
-            if (amount <= 0) {
-                showNotification("❌ Số tiền không hợp lệ!");
-                return;
-            }
-            if (amount > account.getBalance()) {
-                showNotification("❌ Số dư không đủ!");
-                return;
-            }
-            if (recipient.equals(account.getAccountNumber())) {
-                showNotification("❌ Không thể chuyển cho chính mình!");
-                return;
-            }
+        String recipient = recipientField.getText().trim();
+        if (recipient.isEmpty()) {
+            showNotification("❌ Vui lòng nhập số tài khoản người nhận!");
+            return;
+        }
+        long amount = parseAmount();
+        if (amount <= 0) {
+            return;
+        }
+        if (amount > account.getBalance()) {
+            showNotification("❌ Số dư không đủ!");
+            return;
+        }
+        if (recipient.equals(account.getAccountNumber())) {
+            showNotification("❌ Không thể chuyển cho chính mình!");
+            return;
+        }
 
-            if (bankService.transfer(account.getAccountNumber(), recipient, amount)) {
-                account.setBalance(account.getBalance() - amount);
-                updateBalance(account.getBalance());
+        amountField.clear();
+        recipientField.clear();
+        onMutation(requestId -> client.transfer(session, requestId, recipient, amount), ok -> {
+            if (ok) {
                 showNotification("✅ Chuyển tiền thành công đến " + recipient +
-                        ": -" + currencyFormat.format(amount) + "₫");
-                amountField.clear();
-                recipientField.clear();
+                        ": -" + Money.format(amount) + "₫");
             } else {
                 showNotification("❌ Chuyển tiền thất bại!");
             }
         });
     }
 
-    private void processTransaction(TransactionTask task) {
+    /**
+     * Đọc số tiền trên luồng JavaFX; trả về 0 (đã báo lỗi) nếu không hợp lệ
+     */
+    private long parseAmount() {
         try {
-            task.execute();
+            long amount = Money.parse(amountField.getText());
+            if (amount > 0) {
+                return amount;
+            }
         } catch (NumberFormatException e) {
-            showNotification("❌ Số tiền không hợp lệ!");
-        } catch (Exception e) {
-            showNotification("❌ Lỗi: " + e.getMessage());
-            e.printStackTrace();
+            // báo lỗi bên dưới
+        }
+        showNotification("❌ Số tiền không hợp lệ!");
+        return 0;
+    }
+
+    /**
+     * Giao dịch làm đổi số dư: kết quả chỉ dùng để báo cho người dùng, không tự cộng trừ số dư.
+     * Số dư mới đến qua callback; khi không còn giao dịch nào đang chờ thì đọc lại số dư từ server
+     * (sự kiện có thể bị bỏ khi hàng đợi callback đầy, và ở chế độ CAS thứ tự seq của các thao tác
+     * đồng thời trên cùng tài khoản không nhất thiết trùng thứ tự số dư).
+     * Một mã yêu cầu cho cả giao dịch: quá hạn hoặc mất kết nối thì gửi lại đúng mã đó tới khi server
+     * trả lời, nên giao dịch không bị thực hiện hai lần
+     */
+    private void onMutation(Function<String, CompletableFuture<Boolean>> call, Consumer<Boolean> onResult) {
+        mutationsInFlight++;
+        submitMutation(call, AsyncBankClient.newRequestId(), System.currentTimeMillis(), onResult);
+    }
+
+    private void submitMutation(Function<String, CompletableFuture<Boolean>> call, String requestId,
+                                long startedAt, Consumer<Boolean> onResult) {
+        onFx(call.apply(requestId), ok -> {
+            finishMutation();
+            onResult.accept(ok);
+        }, error -> {
+            if (isUncertain(error) && System.currentTimeMillis() - startedAt < BankService.RESUBMIT_WINDOW_MS) {
+                showNotification("⏱ Chưa có phản hồi, đang gửi lại giao dịch...");
+                PauseTransition wait = new PauseTransition(Duration.millis(RESUBMIT_DELAY_MS));
+                wait.setOnFinished(e -> {
+                    if (!loggedOut) {
+                        submitMutation(call, requestId, startedAt, onResult);
+                    }
+                });
+                wait.play();
+                return;
+            }
+            finishMutation();
+            showError(error);
+        });
+    }
+
+    /**
+     * Quá hạn hoặc lỗi mạng: server có thể đã thực hiện hoặc chưa. Lỗi do server báo (ServerException) là dứt khoát
+     */
+    private static boolean isUncertain(Throwable error) {
+        return error instanceof TimeoutException
+                || (error instanceof RemoteException && !(error instanceof ServerException));
+    }
+
+    private void finishMutation() {
+        if (--mutationsInFlight == 0) {
+            refreshBalance();
+        }
+    }
+
+    private void refreshBalance() {
+        if (loggedOut) {
+            return;
+        }
+        long seenSequence = lastSequence;
+        onFx(client.getAccount(session), fresh -> {
+            // Có sự kiện mới hơn tới trong lúc chờ thì giữ số dư của sự kiện đó
+            if (lastSequence == seenSequence && fresh.getBalance() != account.getBalance()) {
+                account.setBalance(fresh.getBalance());
+                updateBalance(fresh.getBalance());
+            }
+        });
+    }
+
+    /**
+     * Theo dõi lời gọi đang chờ (để hủy khi đăng xuất) và xử lý kết quả trên luồng JavaFX.
+     * Các giao dịch không chặn nhau: bấm liên tiếp sẽ có nhiều yêu cầu cùng chờ server
+     */
+    private <T> void onFx(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        onFx(future, onSuccess, this::showError);
+    }
+
+    private void showError(Throwable error) {
+        if (error instanceof ServerException && error.getCause() instanceof SessionExpiredException) {
+            showNotification("🔒 Phiên đăng nhập đã hết hạn, vui lòng đăng xuất và đăng nhập lại");
+        } else if (error instanceof TimeoutException) {
+            showNotification("⏱ Server không phản hồi, giao dịch có thể chưa được thực hiện");
+        } else {
+            showNotification("❌ Lỗi: " + error.getMessage());
+            error.printStackTrace();
         }
     }
 
+    private <T> void onFx(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        pending.add(future);
+        future.whenComplete((value, error) -> Platform.runLater(() -> {
+            pending.remove(future);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            if (cause != null) {
+                onError.accept(cause);
+            } else {
+                onSuccess.accept(value);
+            }
+        }));
+    }
+
     private void showNotification(String message) {
         Platform.runLater(() -> {
             notificationArea.appendText(message + "\n");
@@ -176,12 +302,30 @@ public class MainController {
 
     @FXML
     private void logout() {
-        try {
-            if (callback != null) {
-                bankService.unregisterCallback(account.getAccountNumber());
-                UnicastRemoteObject.unexportObject(callback, true);
-            }
+        loggedOut = true;
+        // Các giao dịch chưa có phản hồi bị hủy; server vẫn có thể đã thực hiện chúng
+        for (CompletableFuture<?> future : List.copyOf(pending)) {
+            future.cancel(true);
+        }
+        ClientCallbackImpl registered = callback;
+        CompletableFuture<Void> unregistered = registered == null
+                ? CompletableFuture.completedFuture(null)
+                : client.unregisterCallback(session);
+        // Hủy phiên trên server kể cả khi gỡ callback lỗi
+        unregistered.handle((done, error) -> null)
+                .thenCompose(ignored -> client.logout(session))
+                .whenComplete((done, error) -> {
+                    if (registered != null) {
+                        try {
+                            UnicastRemoteObject.unexportObject(registered, true);
+                        } catch (NoSuchObjectException e) {
+                            // đã gỡ
+                        }
+                    }
+                    client.close();
+                });
 
+        try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/login.fxml"));
             Scene scene = new Scene(loader.load());
             Stage stage = (Stage) balanceLabel.getScene().getWindow();
@@ -192,11 +336,6 @@ public class MainController {
         }
     }
 
-    @FunctionalInterface
-    interface TransactionTask {
-        void execute() throws Exception;
-    }
-
     class ClientCallbackImpl extends UnicastRemoteObject implements ClientCallback {
         protected ClientCallbackImpl() throws RemoteException {
             super();
@@ -206,5 +345,46 @@ public class MainController {
         public void notifyTransaction(String message) throws RemoteException {
             showNotification("🔔 " + message);
         }
+
+        /**
+         * Nhận cả batch sự kiện trong một lần gọi RMI và áp dụng trong một Platform.runLater
+         */
+        @Override
+        public void notifyTransactions(List<TransactionEvent> events) throws RemoteException {
+            if (events.isEmpty()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                StringBuilder text = new StringBuilder();
+                for (TransactionEvent event : events) {
+                    text.append("🔔 ").append(describe(event)).append('\n');
+                }
+                notificationArea.appendText(text.toString());
+                notificationArea.setScrollTop(Double.MAX_VALUE);
+
+                // Số dư sau sự kiện có seq lớn nhất là số dư trên server; batch đến trễ (seq cũ hơn) bị bỏ qua
+                TransactionEvent latest = events.get(0);
+                for (TransactionEvent event : events) {
+                    if (event.getSequence() > latest.getSequence()) {
+                        latest = event;
+                    }
+                }
+                if (latest.getSequence() > lastSequence) {
+                    lastSequence = latest.getSequence();
+                    account.setBalance(latest.getBalanceAfter());
+                    updateBalance(latest.getBalanceAfter());
+                }
+            });
+        }
+
+        private String describe(TransactionEvent event) {
+            String amount = Money.format(event.getAmount()) + "₫";
+            return switch (event.getType()) {
+                case DEPOSIT -> "Nạp tiền: +" + amount;
+                case WITHDRAW -> "Rút tiền: -" + amount;
+                case TRANSFER_OUT -> "Chuyển tiền đến " + event.getCounterparty() + ": -" + amount;
+                case TRANSFER_IN -> "Nhận tiền từ " + event.getCounterparty() + ": +" + amount;
+            };
+        }
     }
 }
\ No newline at end of file
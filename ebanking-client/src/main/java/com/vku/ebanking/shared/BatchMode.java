@@ -0,0 +1,8 @@
+package com.vku.ebanking.shared;
+
+public enum BatchMode {
+    /** Tất cả lệnh cùng thành công hoặc không lệnh nào được thực hiện */
+    ATOMIC,
+    /** Thực hiện các lệnh hợp lệ, bỏ qua lệnh lỗi */
+    BEST_EFFORT
+}
@@ -0,0 +1,33 @@
+package com.vku.ebanking.shared;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Một trang lịch sử giao dịch; nextCursor = -1 khi đã hết
+ */
+public class HistoryPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<TransactionEvent> events;
+    private long nextCursor;
+
+    public HistoryPage() {}
+
+    public HistoryPage(List<TransactionEvent> events, long nextCursor) {
+        this.events = events;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransactionEvent> getEvents() {
+        return events;
+    }
+
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor >= 0;
+    }
+}
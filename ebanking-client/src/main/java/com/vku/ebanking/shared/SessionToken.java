@@ -0,0 +1,55 @@
+package com.vku.ebanking.shared;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Mã phiên do server cấp khi đăng nhập đúng PIN. Client chỉ giữ và gửi lại, không đọc nội dung
+ */
+public final class SessionToken implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String value;
+
+    public SessionToken(String value) {
+        this.value = Objects.requireNonNull(value, "Mã phiên không được null");
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SessionToken token && Objects.equals(value, token.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
+
+    /**
+     * Không in mã đầy đủ ra log
+     */
+    @Override
+    public String toString() {
+        if (value == null) {
+            return "SessionToken[null]";
+        }
+        return "SessionToken[" + value.substring(0, Math.min(6, value.length())) + "…]";
+    }
+
+    /**
+     * Mã nhận qua RMI không đi qua constructor: từ chối mã null ngay khi giải tuần tự
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (value == null) {
+            throw new InvalidObjectException("Mã phiên không được null");
+        }
+    }
+}
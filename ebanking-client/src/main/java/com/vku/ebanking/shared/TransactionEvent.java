@@ -0,0 +1,64 @@
+package com.vku.ebanking.shared;
+
+import java.io.Serializable;
+
+public class TransactionEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER_OUT,
+        TRANSFER_IN
+    }
+
+    private Type type;
+    private long amount;
+    private String counterparty;
+    private long balanceAfter;
+    private long sequence;
+    private long timestamp;
+
+    public TransactionEvent() {}
+
+    public TransactionEvent(Type type, long amount, String counterparty, long balanceAfter, long sequence) {
+        this(type, amount, counterparty, balanceAfter, sequence, System.currentTimeMillis());
+    }
+
+    public TransactionEvent(Type type, long amount, String counterparty, long balanceAfter, long sequence,
+                            long timestamp) {
+        this.type = type;
+        this.amount = amount;
+        this.counterparty = counterparty;
+        this.balanceAfter = balanceAfter;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public String getCounterparty() {
+        return counterparty;
+    }
+
+    public long getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Thời điểm giao dịch (ms từ epoch)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
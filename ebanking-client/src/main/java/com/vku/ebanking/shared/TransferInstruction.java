@@ -0,0 +1,31 @@
+package com.vku.ebanking.shared;
+
+import java.io.Serializable;
+
+public class TransferInstruction implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String fromAccount;
+    private String toAccount;
+    private long amount;
+
+    public TransferInstruction() {}
+
+    public TransferInstruction(String fromAccount, String toAccount, long amount) {
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+        this.amount = amount;
+    }
+
+    public String getFromAccount() {
+        return fromAccount;
+    }
+
+    public String getToAccount() {
+        return toAccount;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,33 @@
+package com.vku.ebanking.shared;
+
+import java.io.Serializable;
+
+public class TransferResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        OK,
+        ACCOUNT_NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        INVALID_AMOUNT,
+        SAME_ACCOUNT,
+        /** Lệnh hợp lệ nhưng bị hủy vì lệnh khác trong batch ATOMIC thất bại */
+        ABORTED
+    }
+
+    private Status status;
+
+    public TransferResult() {}
+
+    public TransferResult(Status status) {
+        this.status = status;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+}
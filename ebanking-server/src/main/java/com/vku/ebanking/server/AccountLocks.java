@@ -0,0 +1,123 @@
+package com.vku.ebanking.server;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bảng khóa theo dải (lock striping) cho tài khoản.
+ * Mỗi số tài khoản được băm vào một trong N khóa; chế độ GLOBAL dùng đúng một khóa.
+ * Khi cần hai tài khoản (chuyển khoản), khóa luôn được lấy theo thứ tự chỉ số
+ * tăng dần để tránh deadlock.
+ */
+public class AccountLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    // Chỉ đo những lần khóa đang bị giữ (tryLock thất bại), lần khóa ngay không tốn thêm gì
+    private final OperationStats waits = new OperationStats("lockWait");
+
+    public AccountLocks(ConcurrencyMode mode, int stripeCount) {
+        int count = mode == ConcurrencyMode.GLOBAL ? 1 : ceilPowerOfTwo(stripeCount);
+        this.stripes = new ReentrantLock[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void lock(String accountNumber) {
+        acquire(stripes[indexOf(accountNumber)]);
+    }
+
+    private void acquire(ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            long started = System.nanoTime();
+            lock.lock();
+            waits.record(System.nanoTime() - started, true);
+        }
+    }
+
+    public void unlock(String accountNumber) {
+        stripes[indexOf(accountNumber)].unlock();
+    }
+
+    /**
+     * Khóa hai tài khoản theo thứ tự cố định; nếu cùng dải thì chỉ khóa một lần
+     */
+    public void lockPair(String first, String second) {
+        int a = indexOf(first);
+        int b = indexOf(second);
+        if (a == b) {
+            acquire(stripes[a]);
+        } else {
+            acquire(stripes[Math.min(a, b)]);
+            acquire(stripes[Math.max(a, b)]);
+        }
+    }
+
+    public void unlockPair(String first, String second) {
+        int a = indexOf(first);
+        int b = indexOf(second);
+        if (a == b) {
+            stripes[a].unlock();
+        } else {
+            stripes[Math.max(a, b)].unlock();
+            stripes[Math.min(a, b)].unlock();
+        }
+    }
+
+    /**
+     * Khóa mọi dải chứa các tài khoản đã cho, theo thứ tự chỉ số tăng dần.
+     * Trả về các chỉ số đã khóa để truyền lại cho {@link #unlockAll(int[])}
+     */
+    public int[] lockAll(Collection<String> accountNumbers) {
+        boolean[] needed = new boolean[stripes.length];
+        int count = 0;
+        for (String accountNumber : accountNumbers) {
+            int index = indexOf(accountNumber);
+            if (!needed[index]) {
+                needed[index] = true;
+                count++;
+            }
+        }
+        int[] held = new int[count];
+        int next = 0;
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i]) {
+                acquire(stripes[i]);
+                held[next++] = i;
+            }
+        }
+        return held;
+    }
+
+    public void unlockAll(int[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            stripes[held[i]].unlock();
+        }
+    }
+
+    /**
+     * Thời gian chờ của các lần khóa phải đợi luồng khác
+     */
+    public OperationStats getWaitStats() {
+        return waits;
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    private int indexOf(String accountNumber) {
+        if (mask == 0 || accountNumber == null) {
+            return 0;
+        }
+        int h = accountNumber.hashCode();
+        // Trộn bit cao xuống để số tài khoản liên tiếp phân bố đều
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int ceilPowerOfTwo(int n) {
+        int value = Math.max(1, n);
+        return value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
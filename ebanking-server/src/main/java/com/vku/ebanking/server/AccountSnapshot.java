@@ -0,0 +1,27 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.util.List;
+
+/**
+ * Trạng thái tài khoản đã lưu cùng seq journal mà nó phản ánh:
+ * khi khởi động chỉ cần phát lại các bản ghi có seq lớn hơn
+ */
+public final class AccountSnapshot {
+    private final List<Account> accounts;
+    private final long seq;
+
+    public AccountSnapshot(List<Account> accounts, long seq) {
+        this.accounts = accounts;
+        this.seq = seq;
+    }
+
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -0,0 +1,14 @@
+package com.vku.ebanking.server;
+
+/**
+ * Cách giữ tài khoản trong bộ nhớ
+ */
+public enum AccountStorage {
+    /** Mỗi tài khoản là một đối tượng Account, chỉ mục HashMap (hành vi cũ) */
+    HEAP,
+    /**
+     * Số dư, số tài khoản, tên và PIN nằm trong direct ByteBuffer, chỉ mục là bảng băm mảng int;
+     * đối tượng Account chỉ được tạo khi trả ra ngoài (RMI, snapshot). Xem {@link OffHeapAccountStore}
+     */
+    OFFHEAP
+}
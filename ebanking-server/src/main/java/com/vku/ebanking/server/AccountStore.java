@@ -0,0 +1,49 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.util.List;
+
+/**
+ * Kho tài khoản trong bộ nhớ, đánh chỉ mục theo số tài khoản.
+ * Slot là vị trí của tài khoản theo thứ tự nạp, cũng là chỉ số của tài khoản trong {@link BalanceCells}.
+ * Số dư được đọc/ghi theo slot; nơi gọi giữ khóa của tài khoản khi ghi (trừ chế độ CAS/SHARDED, khi đó
+ * số dư trong kho chỉ là giá trị ban đầu).
+ */
+public interface AccountStore {
+    /**
+     * Tìm tài khoản theo số tài khoản, trả về null nếu không có.
+     * Kho off-heap trả về bản sao; đổi số dư phải qua {@link #setBalance(int, long)}
+     */
+    Account find(String accountNumber);
+
+    /**
+     * Vị trí của tài khoản theo thứ tự nạp, -1 nếu không có
+     */
+    int slotOf(String accountNumber);
+
+    Account get(int slot);
+
+    String accountNumber(int slot);
+
+    long balance(int slot);
+
+    void setBalance(int slot, long balance);
+
+    int size();
+
+    /**
+     * Danh sách chỉ đọc của toàn bộ tài khoản, theo thứ tự nạp (kho off-heap: bản sao tại thời điểm gọi)
+     */
+    List<Account> asList();
+
+    /**
+     * Chọn cài đặt theo cấu hình
+     */
+    static AccountStore create(List<Account> accounts, AccountStorage storage) {
+        if (storage == AccountStorage.OFFHEAP) {
+            return new OffHeapAccountStore(accounts);
+        }
+        return new HeapAccountStore(accounts);
+    }
+}
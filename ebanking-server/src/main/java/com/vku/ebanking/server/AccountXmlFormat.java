@@ -0,0 +1,32 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Cách đọc/ghi file accounts.xml ({@code <accounts><account>...</account></accounts>})
+ */
+public interface AccountXmlFormat {
+    /**
+     * Đọc file và chuyển từng tài khoản cho consumer theo thứ tự trong file
+     */
+    void read(File file, Consumer<Account> consumer) throws Exception;
+
+    /**
+     * Ghi toàn bộ danh sách tài khoản ra file
+     */
+    void write(List<Account> accounts, File file) throws Exception;
+
+    /**
+     * Chọn cài đặt theo tên: "stax" (mặc định) hoặc "dom"
+     */
+    static AccountXmlFormat named(String name) {
+        if ("dom".equalsIgnoreCase(name)) {
+            return new DomAccountXmlFormat();
+        }
+        return new StaxAccountXmlFormat();
+    }
+}
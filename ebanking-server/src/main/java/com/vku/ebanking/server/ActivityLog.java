@@ -0,0 +1,236 @@
+package com.vku.ebanking.server;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Log hoạt động server qua vòng đệm cố định, không khóa.
+ *
+ * Nhiều luồng ghi (RMI, group commit, callback) giành một ô bằng CAS rồi công bố ô đó;
+ * vòng đầy thì dòng log bị bỏ và đếm lại, luồng ghi không bao giờ phải chờ.
+ * Một luồng tiêu thụ duy nhất cứ mỗi khung hình lấy hết các dòng mới, định dạng thời gian,
+ * ghi nối vào file log xoay vòng và chuyển cả khung cho giao diện trong một lần.
+ */
+public class ActivityLog implements Closeable {
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final String[] messages;
+    // Ô i chứa bản ghi seq khi published[i] == seq + 1
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    private final long frameNanos;
+    private final Consumer<List<String>> sink;
+    private final RollingFile file;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private long reportedDropped;
+
+    /**
+     * @param sink nhận các dòng của một khung hình trên luồng tiêu thụ; null nếu không có giao diện
+     */
+    public ActivityLog(ServerConfig config, Consumer<List<String>> sink) {
+        this.capacity = Integer.highestOneBit(Math.max(16, config.getLogRingCapacity()) - 1) << 1;
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.messages = new String[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getLogFrameMs()));
+        this.sink = sink;
+        String path = config.getLogFile();
+        this.file = path == null || path.isEmpty() ? null
+                : new RollingFile(Path.of(path), config.getLogFileMaxBytes(), config.getLogFilesToKeep());
+
+        this.consumer = new Thread(this::run, "activity-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Ghi một dòng log; trả về false nếu vòng đệm đầy và dòng bị bỏ
+     */
+    public boolean publish(String message) {
+        long time = System.currentTimeMillis();
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        int index = (int) seq & mask;
+        times[index] = time;
+        messages[index] = message;
+        published.lazySet(index, seq + 1);
+        return true;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void run() {
+        List<String> frame = new ArrayList<>();
+        StringBuilder line = new StringBuilder(128);
+        while (running) {
+            LockSupport.parkNanos(frameNanos);
+            flushFrame(frame, line);
+        }
+        flushFrame(frame, line);
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Lấy các dòng đã công bố (tối đa một vòng đệm mỗi khung), ghi ra file và đẩy cho giao diện
+     */
+    private void flushFrame(List<String> frame, StringBuilder line) {
+        long seq = head;
+        long limit = seq + capacity;
+        while (seq < limit && published.get((int) seq & mask) == seq + 1) {
+            int index = (int) seq & mask;
+            line.setLength(0);
+            line.append('[');
+            TIME_FORMAT.formatTo(Instant.ofEpochMilli(times[index]), line);
+            line.append("] ").append(messages[index]);
+            frame.add(line.toString());
+            messages[index] = null;
+            seq++;
+        }
+        head = seq;
+
+        long droppedNow = dropped.sum();
+        if (droppedNow != reportedDropped) {
+            frame.add("⚠️ Vòng đệm log đầy, đã bỏ " + (droppedNow - reportedDropped) + " dòng");
+            reportedDropped = droppedNow;
+        }
+        if (frame.isEmpty()) {
+            return;
+        }
+        if (file != null) {
+            file.write(frame);
+        }
+        if (sink != null) {
+            sink.accept(List.copyOf(frame));
+        }
+        frame.clear();
+    }
+
+    /**
+     * Dừng luồng tiêu thụ sau khi ghi nốt các dòng còn trong vòng đệm
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.NANOSECONDS.toMillis(frameNanos) + 2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * File log xoay vòng: server.log đầy thì đổi thành server.log.1, server.log.1 thành server.log.2, ...
+     */
+    private static final class RollingFile {
+        private final Path path;
+        private final long maxBytes;
+        private final int filesToKeep;
+        private BufferedWriter writer;
+        private long size;
+
+        RollingFile(Path path, long maxBytes, int filesToKeep) {
+            this.path = path;
+            this.maxBytes = maxBytes;
+            this.filesToKeep = Math.max(1, filesToKeep);
+        }
+
+        void write(List<String> lines) {
+            try {
+                if (writer == null) {
+                    open();
+                }
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                    size += line.length() + 1;
+                }
+                writer.flush();
+                if (size >= maxBytes) {
+                    roll();
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi ghi file log: " + e.getMessage());
+                close();
+            }
+        }
+
+        private void open() throws IOException {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            size = Files.size(path);
+        }
+
+        private void roll() throws IOException {
+            writer.close();
+            writer = null;
+            Files.deleteIfExists(rolled(filesToKeep));
+            for (int i = filesToKeep - 1; i >= 1; i--) {
+                if (Files.exists(rolled(i))) {
+                    Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private Path rolled(int index) {
+            return path.resolveSibling(path.getFileName() + "." + index);
+        }
+
+        void close() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Không còn gì để làm
+                }
+                writer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.vku.ebanking.server;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Số dư tài khoản trong một mảng long, đọc ghi nguyên tử qua VarHandle (chế độ CAS, và bản công bố
+ * số dư của mỗi shard ở chế độ SHARDED).
+ * Chỉ số mảng là slot của tài khoản trong {@link AccountStore}.
+ * Nạp và rút tiền là vòng compare-and-set, điều kiện đủ số dư được kiểm tra ngay trong vòng CAS.
+ * Khoản cộng phải ghi journal trước khi hiện ra được giữ chỗ dưới trần Long.MAX_VALUE
+ * ({@link #reserveCredit}), để tràn số bị từ chối trước khi ghi journal chứ không phải sau.
+ */
+public class BalanceCells {
+    private static final VarHandle BALANCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] balances;
+    // Tổng các khoản cộng đã giữ chỗ nhưng chưa cộng vào số dư
+    private final long[] credits;
+
+    public BalanceCells(AccountStore store) {
+        this.balances = new long[store.size()];
+        this.credits = new long[balances.length];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = store.balance(i);
+        }
+        VarHandle.releaseFence();
+    }
+
+    public long get(int slot) {
+        return (long) BALANCE.getVolatile(balances, slot);
+    }
+
+    /**
+     * Ghi đè số dư; dùng khi chỉ một luồng ghi ô này (shard) và luồng khác chỉ đọc
+     */
+    public void set(int slot, long balance) {
+        BALANCE.setRelease(balances, slot, balance);
+    }
+
+    /**
+     * Cộng {@code amount} (phải dương) vào số dư; trả về số dư mới. Ném ArithmeticException nếu tràn số
+     */
+    public long add(int slot, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Số tiền phải dương: " + amount);
+        }
+        return apply(slot, amount);
+    }
+
+    /**
+     * Giữ chỗ cho khoản cộng {@code amount} (phải dương) chưa ghi journal; trả về false nếu số dư cộng các
+     * khoản đang chờ sẽ vượt Long.MAX_VALUE. Sau đó phải gọi {@link #credit} hoặc {@link #cancelCredit}
+     */
+    public boolean reserveCredit(int slot, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Số tiền phải dương: " + amount);
+        }
+        long pending = (long) BALANCE.getVolatile(credits, slot);
+        while (true) {
+            // Đọc khoản chờ trước số dư: credit() cộng số dư rồi mới trả chỗ, nên tổng chỉ có thể bị đọc dư
+            long balance = get(slot);
+            if (amount > Long.MAX_VALUE - balance - pending) {
+                return false;
+            }
+            long witness = (long) BALANCE.compareAndExchange(credits, slot, pending, pending + amount);
+            if (witness == pending) {
+                return true;
+            }
+            pending = witness;
+        }
+    }
+
+    /**
+     * Cộng khoản đã giữ chỗ vào số dư và trả chỗ; trả về số dư mới
+     */
+    public long credit(int slot, long amount) {
+        long next = apply(slot, amount);
+        BALANCE.getAndAdd(credits, slot, -amount);
+        return next;
+    }
+
+    /**
+     * Bỏ khoản đã giữ chỗ khi không ghi được journal
+     */
+    public void cancelCredit(int slot, long amount) {
+        BALANCE.getAndAdd(credits, slot, -amount);
+    }
+
+    /**
+     * Cộng delta có dấu (bản ghi nhân bản đã được leader kiểm tra); trả về số dư mới
+     */
+    public long apply(int slot, long delta) {
+        long current = (long) BALANCE.getVolatile(balances, slot);
+        while (true) {
+            long next = Math.addExact(current, delta);
+            long witness = (long) BALANCE.compareAndExchange(balances, slot, current, next);
+            if (witness == current) {
+                return next;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * Trừ {@code amount} (phải dương) nếu số dư đủ; trả về số dư mới, hoặc -1 nếu không đủ tiền
+     */
+    public long withdraw(int slot, long amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Số tiền phải dương: " + amount);
+        }
+        long current = (long) BALANCE.getVolatile(balances, slot);
+        while (current >= amount) {
+            long witness = (long) BALANCE.compareAndExchange(balances, slot, current, current - amount);
+            if (witness == current) {
+                return current - amount;
+            }
+            current = witness;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return balances.length;
+    }
+}
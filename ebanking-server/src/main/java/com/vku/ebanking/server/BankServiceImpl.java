@@ -2,130 +2,1355 @@ package com.vku.ebanking.server;
 
 import com.vku.ebanking.shared.Account;
 import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.BatchMode;
 import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.Money;
+import com.vku.ebanking.shared.Session;
+import com.vku.ebanking.shared.SessionToken;
+import com.vku.ebanking.shared.TransactionEvent;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 public class BankServiceImpl extends UnicastRemoteObject implements BankService {
-    private List<Account> accounts;
+    private AccountStore store;
+    private AccountLocks locks;
     private XMLAccountHandler xmlHandler;
-    private Map<String, ClientCallback> callbacks;
-    private ServerController controller;
+    private TransactionJournal journal;
+    private GroupCommitter committer;
+    private Checkpointer checkpointer;
+    private CallbackDispatcher callbacks;
+    // Chỉ có ở chế độ CAS; khi đó số dư trong Account không còn được cập nhật
+    private BalanceCells cells;
+    // Chỉ có ở chế độ SHARDED; khi đó số dư nằm trong các shard
+    private ShardedEngine shards;
+    // Chỉ có khi chạy như một node cluster: các chặng 2PC đã chuẩn bị và đã kết thúc
+    private ClusterTopology.Node clusterNode;
+    private final Map<Long, PreparedLeg> preparedLegs = new ConcurrentHashMap<>();
+    private final FinishedLegs finishedLegs = new FinishedLegs(100_000);
+    private final List<ServerEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private int maxBatchItems;
+    private IdempotencyCache dedup;
+    private PinHasher pins;
+    private SessionCache sessions;
+    // null khi tắt lịch sử (-Debanking.history.enabled=false)
+    private HistoryStore history;
+    // Chỉ có ở primary bật nhân bản (-Debanking.replication.port)
+    private volatile ReplicationPublisher replication;
 
-    public BankServiceImpl(ServerController controller) throws RemoteException {
+    public BankServiceImpl() throws RemoteException {
+        this(ServerConfig.fromSystemProperties());
+    }
+
+    public BankServiceImpl(ServerConfig config) throws RemoteException {
         super();
-        this.controller = controller;
-        this.xmlHandler = new XMLAccountHandler();
-        this.accounts = xmlHandler.loadAccounts();
-        this.callbacks = new HashMap<>();
+        this.xmlHandler = new XMLAccountHandler(AccountXmlFormat.named(config.getXmlParser()),
+                new File(config.getSnapshotDir()), config.getSnapshotFormat());
+        AccountSnapshot snapshot = xmlHandler.loadLatestSnapshot();
+        List<Account> accounts = snapshot.getAccounts();
+        if (config.getClusterNode() >= 0) {
+            if (config.getConcurrencyMode() != ConcurrencyMode.STRIPED
+                    && config.getConcurrencyMode() != ConcurrencyMode.GLOBAL) {
+                throw new RemoteException("Node cluster chỉ hỗ trợ chế độ GLOBAL hoặc STRIPED");
+            }
+            this.clusterNode = config.getClusterTopology().getNode(config.getClusterNode());
+            accounts = accounts.stream().filter(a -> clusterNode.owns(a.getAccountNumber())).toList();
+            System.out.println("🌐 Node cluster " + clusterNode + ": " + accounts.size() + " tài khoản");
+        }
+        this.pins = PinHasher.forConfig(config);
+        int hashedPins = pins.hashPlaintext(accounts);
+        this.sessions = SessionCache.forConfig(config);
+        this.store = AccountStore.create(accounts, config.getAccountStorage());
+        this.locks = new AccountLocks(config.getConcurrencyMode(), config.getLockStripes());
+        this.callbacks = new CallbackDispatcher(config, this::log);
+        this.maxBatchItems = config.getMaxBatchItems();
+        this.dedup = IdempotencyCache.forConfig(config);
+        try {
+            this.journal = new TransactionJournal(Paths.get(config.getJournalDir()),
+                    config.getFsyncPolicy(), config.getFsyncIntervalMs());
+            this.checkpointer = new Checkpointer(store, locks, journal, xmlHandler, config);
+            checkpointer.setRetentionLimit(this::retentionLimit);
+            if (hashedPins > 0) {
+                System.out.println("🔐 Đã băm " + hashedPins + " PIN dạng rõ (PBKDF2, "
+                        + pins.getIterations() + " vòng)");
+            }
+            // Snapshot mới thay cho bản còn PIN dạng rõ
+            if (!recover(snapshot.getSeq()) && hashedPins > 0) {
+                checkpointer.checkpoint();
+            }
+        } catch (IOException e) {
+            throw new RemoteException("Không mở được journal giao dịch", e);
+        }
+        if (config.isHistoryEnabled()) {
+            try {
+                this.history = HistoryStore.forConfig(config);
+            } catch (IOException e) {
+                throw new RemoteException("Không mở được lịch sử giao dịch", e);
+            }
+        }
+        if (config.getConcurrencyMode() == ConcurrencyMode.CAS) {
+            this.cells = new BalanceCells(store);
+        }
+        if ((config.getReplicationPort() > 0 || config.isReplicationFollower())
+                && config.getConcurrencyMode() == ConcurrencyMode.SHARDED) {
+            throw new RemoteException("Nhân bản không hỗ trợ chế độ SHARDED (mỗi shard có journal riêng)");
+        }
+        if (config.getConcurrencyMode() == ConcurrencyMode.SHARDED) {
+            try {
+                this.shards = new ShardedEngine(store, config);
+            } catch (IOException e) {
+                throw new RemoteException("Không khởi động được các shard", e);
+            }
+        } else if (ShardedEngine.existingShardDirs(config) > 0) {
+            System.err.println("⚠️ Còn trạng thái shard từ lần chạy SHARDED dừng đột ngột; "
+                    + "số dư trong snapshot chung có thể đã cũ. Hãy chạy lại với -Debanking.concurrency=SHARDED");
+        }
+        this.committer = new GroupCommitter(journal,
+                config.getGroupCommitWindowMicros(), config.getGroupCommitMaxBatch());
+        checkpointer.start();
+        metrics.add(committer.getMetrics().getLatencyStats());
+        metrics.add(locks.getWaitStats());
+        metrics.add(callbacks.getDeliveryStats());
+        metrics.add(xmlHandler.getSaveSnapshotStats());
+        metrics.add(xmlHandler.getSaveAccountsStats());
+        metrics.start(config);
+        if (config.getReplicationPort() > 0 && !config.isReplicationFollower()) {
+            startReplication(config.getReplicationPort());
+        }
     }
 
-    @Override
-    public synchronized Account login(String accountNumber) throws RemoteException {
-        for (Account account : accounts) {
-            if (account.getAccountNumber().equals(accountNumber)) {
-                controller.log("Đăng nhập: " + accountNumber + " - " + account.getAccountName());
-                return account;
+    /**
+     * Mở cổng nhân bản cho follower; gọi khi khởi động primary hoặc khi follower vừa được nâng lên
+     */
+    void startReplication(int port) throws RemoteException {
+        try {
+            ReplicationPublisher publisher = new ReplicationPublisher(journal, xmlHandler, port);
+            replication = publisher;
+            committer.setListener(publisher::published);
+        } catch (IOException e) {
+            throw new RemoteException("Không mở được cổng nhân bản " + port, e);
+        }
+    }
+
+    public ReplicationPublisher getReplication() {
+        return replication;
+    }
+
+    /**
+     * Follower: ghi các bản ghi nhận từ primary vào journal cục bộ (giữ nguyên seq) rồi áp dụng vào bộ nhớ
+     */
+    void applyReplicated(List<JournalRecord> records) throws IOException {
+        // Giữ khóa các tài khoản của cả lô từ lúc ghi journal tới lúc áp dụng xong, như giao dịch thường:
+        // checkpoint (giữ mọi khóa dải) không chụp được bản ghi đã vào journal mà chưa vào bộ nhớ
+        int[] held = cells == null ? locks.lockAll(accountsOf(records)) : new int[0];
+        try {
+            journal.appendRecords(records);
+            applyRecords(records);
+        } finally {
+            locks.unlockAll(held);
+        }
+    }
+
+    private static Set<String> accountsOf(List<JournalRecord> records) {
+        Set<String> numbers = new HashSet<>();
+        for (JournalRecord record : records) {
+            for (JournalEntry entry : record.getEntries()) {
+                numbers.add(entry.getAccountNumber());
+            }
+        }
+        return numbers;
+    }
+
+    private void applyRecords(List<JournalRecord> records) {
+        for (JournalRecord record : records) {
+            for (JournalEntry entry : record.getEntries()) {
+                if (clusterNode != null && entry.getLeg() != null) {
+                    recoverLeg(record.getSeq(), entry);
+                }
+                String number = entry.getAccountNumber();
+                if (cells != null) {
+                    int slot = store.slotOf(number);
+                    if (slot >= 0) {
+                        if (entry.isDelta()) {
+                            cells.apply(slot, entry.getBalance());
+                        } else {
+                            cells.set(slot, entry.getBalance());
+                        }
+                    }
+                    continue;
+                }
+                int slot = store.slotOf(number);
+                if (slot < 0) {
+                    System.err.println("⚠️ Bản ghi nhân bản nhắc tới tài khoản không tồn tại: " + number);
+                    continue;
+                }
+                store.setBalance(slot, entry.applyTo(store.balance(slot)));
+            }
+            checkpointer.recordChange();
+        }
+    }
+
+    /**
+     * Follower: thay toàn bộ số dư bằng snapshot của primary (khi không bắt kịp được từ journal)
+     */
+    void resetFromReplica(AccountSnapshot snapshot) throws IOException {
+        List<String> numbers = new ArrayList<>(store.size());
+        for (int slot = 0; slot < store.size(); slot++) {
+            numbers.add(store.accountNumber(slot));
+        }
+        List<Account> installed = new ArrayList<>(snapshot.getAccounts().size());
+        int[] held = locks.lockAll(numbers);
+        try {
+            for (Account incoming : snapshot.getAccounts()) {
+                int slot = store.slotOf(incoming.getAccountNumber());
+                if (slot < 0) {
+                    System.err.println("⚠️ Snapshot của primary có tài khoản follower không có: "
+                            + incoming.getAccountNumber());
+                    continue;
+                }
+                store.setBalance(slot, incoming.getBalance());
+                if (cells != null) {
+                    cells.set(slot, incoming.getBalance());
+                }
+                installed.add(current(store.get(slot)));
             }
+        } finally {
+            locks.unlockAll(held);
+        }
+        checkpointer.install(installed, snapshot.getSeq());
+    }
+
+    public long getJournalSeq() {
+        return journal.getLastSeq();
+    }
+
+    private long retentionLimit() {
+        ReplicationPublisher publisher = replication;
+        return Math.min(oldestPreparedSeq(), publisher == null ? Long.MAX_VALUE : publisher.retentionFloor());
+    }
+
+    /**
+     * Phát lại journal sau seq của snapshot vừa nạp; nếu có gì được phát lại
+     * (hoặc chưa từng có snapshot) thì chụp snapshot mới ngay; trả về true nếu đã chụp
+     */
+    private boolean recover(long snapshotSeq) throws IOException {
+        // Node cluster quét cả các segment trước snapshot để dựng lại các chặng 2PC chưa kết thúc
+        long scanFrom = clusterNode != null ? 0 : snapshotSeq;
+        int[] replayed = new int[1];
+        journal.replay(scanFrom, record -> {
+            for (JournalEntry entry : record.getEntries()) {
+                if (entry.getLeg() != null) {
+                    recoverLeg(record.getSeq(), entry);
+                }
+                if (record.getSeq() <= snapshotSeq) {
+                    continue;
+                }
+                int slot = store.slotOf(entry.getAccountNumber());
+                if (slot >= 0) {
+                    store.setBalance(slot, entry.applyTo(store.balance(slot)));
+                } else {
+                    System.err.println("⚠️ Journal nhắc tới tài khoản không tồn tại: " + entry.getAccountNumber());
+                }
+            }
+            if (record.getSeq() > snapshotSeq) {
+                replayed[0]++;
+            }
+        });
+        journal.advanceTo(snapshotSeq);
+        if (!preparedLegs.isEmpty()) {
+            System.out.println("🌐 " + preparedLegs.size() + " chặng 2PC đang chờ quyết định của router");
+        }
+        if (replayed[0] > 0 || snapshotSeq == 0) {
+            System.out.println("🔁 Đã phát lại " + replayed[0] + " giao dịch từ journal");
+            checkpointer.checkpoint();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tài khoản theo số, không kèm PIN và không xác thực. Các thao tác theo số tài khoản dưới đây chỉ dành cho
+     * mã chạy cùng tiến trình (công cụ, benchmark) và cho router qua {@link ClusterParticipant};
+     * chúng không nằm trong giao diện RMI {@link BankService}
+     */
+    public Account login(String accountNumber) throws RemoteException {
+        return metrics.login().time(() -> performLogin(accountNumber));
+    }
+
+    private Account performLogin(String accountNumber) {
+        Account account = withoutPin(current(store.find(accountNumber)));
+        if (account != null) {
+            if (logging()) {
+                log("Đăng nhập: " + accountNumber + " - " + account.getAccountName());
+            }
+            return account;
+        }
+        if (logging()) {
+            log("Đăng nhập thất bại: " + accountNumber);
         }
-        controller.log("Đăng nhập thất bại: " + accountNumber);
         return null;
     }
 
-    @Override
-    public synchronized boolean deposit(String accountNumber, double amount) throws RemoteException {
-        for (Account account : accounts) {
-            if (account.getAccountNumber().equals(accountNumber)) {
-                account.setBalance(account.getBalance() + amount);
-                xmlHandler.saveAccounts(accounts);
-                String message = String.format("Nạp tiền: +%.0f₫", amount);
-                controller.log(accountNumber + " - " + message);
-                notifyClient(accountNumber, message);
+    public boolean deposit(String accountNumber, long amount) throws RemoteException {
+        return metrics.deposit().time(() -> performDeposit(accountNumber, amount));
+    }
+
+    private boolean performDeposit(String accountNumber, long amount) throws RemoteException {
+        if (amount <= 0) {
+            return false;
+        }
+        if (cells != null) {
+            return depositCas(accountNumber, amount);
+        }
+        if (shards != null) {
+            return depositSharded(accountNumber, amount);
+        }
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) {
+            return false;
+        }
+        locks.lock(accountNumber);
+        try {
+            long balance = store.balance(slot);
+            if (amount > Long.MAX_VALUE - balance) {
+                return false;
+            }
+            long newBalance = balance + amount;
+            long seq = writeAhead(new JournalEntry(accountNumber, newBalance));
+            store.setBalance(slot, newBalance);
+            if (logging()) {
+                log(moneyLine(accountNumber, " - Nạp tiền: +", amount));
+            }
+            notifyClient(accountNumber,
+                    new TransactionEvent(TransactionEvent.Type.DEPOSIT, amount, null, newBalance, seq));
+            return true;
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
+    public boolean withdraw(String accountNumber, long amount) throws RemoteException {
+        return metrics.withdraw().time(() -> performWithdraw(accountNumber, amount));
+    }
+
+    private boolean performWithdraw(String accountNumber, long amount) throws RemoteException {
+        if (amount <= 0) {
+            return false;
+        }
+        if (cells != null) {
+            return withdrawCas(accountNumber, amount);
+        }
+        if (shards != null) {
+            return withdrawSharded(accountNumber, amount);
+        }
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) {
+            return false;
+        }
+        locks.lock(accountNumber);
+        try {
+            long balance = store.balance(slot);
+            if (balance >= amount) {
+                long newBalance = balance - amount;
+                long seq = writeAhead(new JournalEntry(accountNumber, newBalance));
+                store.setBalance(slot, newBalance);
+                if (logging()) {
+                    log(moneyLine(accountNumber, " - Rút tiền: -", amount));
+                }
+                notifyClient(accountNumber,
+                        new TransactionEvent(TransactionEvent.Type.WITHDRAW, amount, null, newBalance, seq));
                 return true;
             }
+            return false;
+        } finally {
+            locks.unlock(accountNumber);
         }
-        return false;
     }
 
-    @Override
-    public synchronized boolean withdraw(String accountNumber, double amount) throws RemoteException {
-        for (Account account : accounts) {
-            if (account.getAccountNumber().equals(accountNumber)) {
-                if (account.getBalance() >= amount) {
-                    account.setBalance(account.getBalance() - amount);
-                    xmlHandler.saveAccounts(accounts);
-                    String message = String.format("Rút tiền: -%.0f₫", amount);
-                    controller.log(accountNumber + " - " + message);
-                    notifyClient(accountNumber, message);
-                    return true;
+    public boolean transfer(String fromAccount, String toAccount, long amount)
+            throws RemoteException {
+        return metrics.transfer().time(() -> performTransfer(fromAccount, toAccount, amount));
+    }
+
+    private boolean performTransfer(String fromAccount, String toAccount, long amount) throws RemoteException {
+        if (amount <= 0) {
+            return false;
+        }
+        if (cells != null) {
+            return transferCas(fromAccount, toAccount, amount);
+        }
+        if (shards != null) {
+            return transferSharded(fromAccount, toAccount, amount);
+        }
+        int from = store.slotOf(fromAccount);
+        int to = store.slotOf(toAccount);
+        if (from < 0 || to < 0) {
+            return false;
+        }
+
+        locks.lockPair(fromAccount, toAccount);
+        try {
+            if (store.balance(from) >= amount && from != to) {
+                long fromBalance = store.balance(from) - amount;
+                long toBalance = store.balance(to) + amount;
+                long seq = writeAhead(new JournalEntry(fromAccount, fromBalance),
+                        new JournalEntry(toAccount, toBalance));
+                store.setBalance(from, fromBalance);
+                store.setBalance(to, toBalance);
+
+                if (logging()) {
+                    log(moneyLine(fromAccount, " -> " + toAccount + ": ", amount));
                 }
-                return false;
+                notifyClient(fromAccount, new TransactionEvent(
+                        TransactionEvent.Type.TRANSFER_OUT, amount, toAccount, fromBalance, seq));
+                notifyClient(toAccount, new TransactionEvent(
+                        TransactionEvent.Type.TRANSFER_IN, amount, fromAccount, toBalance, seq));
+                return true;
             }
+            return false;
+        } finally {
+            locks.unlockPair(fromAccount, toAccount);
         }
-        return false;
     }
 
-    @Override
-    public synchronized boolean transfer(String fromAccount, String toAccount, double amount)
+    /**
+     * Thực hiện cả batch chuyển khoản dưới một lần khóa và một bản ghi journal.
+     * ATOMIC: một lệnh lỗi thì cả batch bị hủy; BEST_EFFORT: chỉ bỏ các lệnh lỗi.
+     * Các lệnh được xét theo thứ tự, lệnh sau thấy số dư sau lệnh trước
+     */
+    public List<TransferResult> submitBatch(List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        return metrics.submitBatch().time(() -> performBatch(instructions, mode));
+    }
+
+    private List<TransferResult> performBatch(List<TransferInstruction> instructions, BatchMode mode)
             throws RemoteException {
-        Account from = null;
-        Account to = null;
+        if (instructions.size() > maxBatchItems) {
+            throw new RemoteException("Batch vượt quá " + maxBatchItems + " lệnh");
+        }
+        List<String> involved = new ArrayList<>(instructions.size() * 2);
+        for (TransferInstruction instruction : instructions) {
+            involved.add(instruction.getFromAccount());
+            involved.add(instruction.getToAccount());
+        }
+        if (cells != null) {
+            return submitBatchCas(instructions, mode, involved);
+        }
+        if (shards != null) {
+            return submitBatchSharded(instructions, mode);
+        }
+
+        int[] held = locks.lockAll(involved);
+        try {
+            // Số dư nháp theo slot tài khoản; chỉ ghi vào kho khi batch đã commit
+            Map<Integer, Long> working = new LinkedHashMap<>();
+            List<TransferResult> results = new ArrayList<>(instructions.size());
+            List<TransactionEvent[]> events = new ArrayList<>(instructions.size());
+            boolean failed = false;
+
+            for (TransferInstruction instruction : instructions) {
+                int from = store.slotOf(instruction.getFromAccount());
+                int to = store.slotOf(instruction.getToAccount());
+                long amount = instruction.getAmount();
+                TransferResult.Status status;
+                if (from < 0 || to < 0) {
+                    status = TransferResult.Status.ACCOUNT_NOT_FOUND;
+                } else if (from == to) {
+                    status = TransferResult.Status.SAME_ACCOUNT;
+                } else if (amount <= 0) {
+                    status = TransferResult.Status.INVALID_AMOUNT;
+                } else if (working.getOrDefault(from, store.balance(from)) < amount) {
+                    status = TransferResult.Status.INSUFFICIENT_FUNDS;
+                } else {
+                    status = TransferResult.Status.OK;
+                    long fromBalance = working.getOrDefault(from, store.balance(from)) - amount;
+                    long toBalance = working.getOrDefault(to, store.balance(to)) + amount;
+                    working.put(from, fromBalance);
+                    working.put(to, toBalance);
+                    events.add(new TransactionEvent[] {
+                            new TransactionEvent(TransactionEvent.Type.TRANSFER_OUT, amount,
+                                    instruction.getToAccount(), fromBalance, 0),
+                            new TransactionEvent(TransactionEvent.Type.TRANSFER_IN, amount,
+                                    instruction.getFromAccount(), toBalance, 0)});
+                }
+                failed |= status != TransferResult.Status.OK;
+                results.add(new TransferResult(status));
+            }
+
+            if (mode == BatchMode.ATOMIC && failed) {
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).isSuccess()) {
+                        results.set(i, new TransferResult(TransferResult.Status.ABORTED));
+                    }
+                }
+                log("Batch ATOMIC bị hủy: " + instructions.size() + " lệnh");
+                return results;
+            }
+            if (working.isEmpty()) {
+                return results;
+            }
+
+            JournalEntry[] entries = new JournalEntry[working.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Long> change : working.entrySet()) {
+                entries[i++] = new JournalEntry(store.accountNumber(change.getKey()), change.getValue());
+            }
+            long seq = writeAhead(entries);
+            for (Map.Entry<Integer, Long> change : working.entrySet()) {
+                store.setBalance(change.getKey(), change.getValue());
+            }
 
-        for (Account account : accounts) {
-            if (account.getAccountNumber().equals(fromAccount)) {
-                from = account;
+            for (TransactionEvent[] pair : events) {
+                TransactionEvent out = pair[0];
+                TransactionEvent in = pair[1];
+                notifyClient(in.getCounterparty(), new TransactionEvent(out.getType(), out.getAmount(),
+                        out.getCounterparty(), out.getBalanceAfter(), seq));
+                notifyClient(out.getCounterparty(), new TransactionEvent(in.getType(), in.getAmount(),
+                        in.getCounterparty(), in.getBalanceAfter(), seq));
             }
-            if (account.getAccountNumber().equals(toAccount)) {
-                to = account;
+            if (logging()) {
+                log(String.format("Batch %s: %d/%d lệnh thành công, %d tài khoản thay đổi",
+                        mode, events.size(), instructions.size(), working.size()));
             }
+            return results;
+        } finally {
+            locks.unlockAll(held);
+        }
+    }
+
+    /**
+     * Nạp tiền không khóa: ghi journal trước, rồi cộng vào ô số dư bằng CAS.
+     * Tiền chỉ xuất hiện khi đã bền vững nên không ai rút được khoản nạp chưa commit;
+     * chỗ dưới trần số dư được giữ bằng CAS trước khi ghi journal nên hai lần nạp đồng thời không cùng lọt
+     */
+    private boolean depositCas(String accountNumber, long amount) throws RemoteException {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0 || !cells.reserveCredit(slot, amount)) {
+            return false;
+        }
+        long seq;
+        try {
+            seq = writeAhead(JournalEntry.delta(accountNumber, amount));
+        } catch (RemoteException e) {
+            cells.cancelCredit(slot, amount);
+            throw e;
+        }
+        long newBalance = cells.credit(slot, amount);
+        if (logging()) {
+            log(moneyLine(accountNumber, " - Nạp tiền: +", amount));
         }
+        notifyClient(accountNumber,
+                new TransactionEvent(TransactionEvent.Type.DEPOSIT, amount, null, newBalance, seq));
+        return true;
+    }
 
-        if (from != null && to != null && from.getBalance() >= amount) {
-            from.setBalance(from.getBalance() - amount);
-            to.setBalance(to.getBalance() + amount);
-            xmlHandler.saveAccounts(accounts);
+    /**
+     * Rút tiền không khóa: giữ chỗ bằng CAS (kiểm tra đủ số dư ngay trong vòng CAS), rồi ghi journal;
+     * ghi journal lỗi thì trả lại khoản đã giữ
+     */
+    private boolean withdrawCas(String accountNumber, long amount) throws RemoteException {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) {
+            return false;
+        }
+        long newBalance = cells.withdraw(slot, amount);
+        if (newBalance < 0) {
+            return false;
+        }
+        long seq;
+        try {
+            seq = writeAhead(JournalEntry.delta(accountNumber, -amount));
+        } catch (RemoteException e) {
+            cells.add(slot, amount);
+            throw e;
+        }
+        if (logging()) {
+            log(moneyLine(accountNumber, " - Rút tiền: -", amount));
+        }
+        notifyClient(accountNumber,
+                new TransactionEvent(TransactionEvent.Type.WITHDRAW, amount, null, newBalance, seq));
+        return true;
+    }
 
-            String msgFrom = String.format("Chuyển tiền đến %s: -%.0f₫", toAccount, amount);
-            String msgTo = String.format("Nhận tiền từ %s: +%.0f₫", fromAccount, amount);
+    /**
+     * Chuyển khoản ở chế độ CAS: khóa hai tài khoản theo thứ tự (để xếp hàng với batch),
+     * trừ tài khoản nguồn bằng CAS, ghi một bản ghi journal cho cả hai phía rồi mới cộng cho đích
+     */
+    private boolean transferCas(String fromAccount, String toAccount, long amount) throws RemoteException {
+        int fromSlot = store.slotOf(fromAccount);
+        int toSlot = store.slotOf(toAccount);
+        if (fromSlot < 0 || toSlot < 0 || fromSlot == toSlot) {
+            return false;
+        }
 
-            controller.log(fromAccount + " -> " + toAccount + ": " + amount + "₫");
-            notifyClient(fromAccount, msgFrom);
-            notifyClient(toAccount, msgTo);
+        locks.lockPair(fromAccount, toAccount);
+        try {
+            if (!cells.reserveCredit(toSlot, amount)) {
+                return false;
+            }
+            long fromBalance = cells.withdraw(fromSlot, amount);
+            if (fromBalance < 0) {
+                cells.cancelCredit(toSlot, amount);
+                return false;
+            }
+            long seq;
+            try {
+                seq = writeAhead(JournalEntry.delta(fromAccount, -amount), JournalEntry.delta(toAccount, amount));
+            } catch (RemoteException e) {
+                cells.add(fromSlot, amount);
+                cells.cancelCredit(toSlot, amount);
+                throw e;
+            }
+            long toBalance = cells.credit(toSlot, amount);
+
+            if (logging()) {
+                log(moneyLine(fromAccount, " -> " + toAccount + ": ", amount));
+            }
+            notifyClient(fromAccount, new TransactionEvent(
+                    TransactionEvent.Type.TRANSFER_OUT, amount, toAccount, fromBalance, seq));
+            notifyClient(toAccount, new TransactionEvent(
+                    TransactionEvent.Type.TRANSFER_IN, amount, fromAccount, toBalance, seq));
             return true;
+        } finally {
+            locks.unlockPair(fromAccount, toAccount);
+        }
+    }
+
+    /**
+     * Batch ở chế độ CAS: mỗi lệnh trừ trước vào tiền nhận trong batch chưa áp dụng, phần còn lại
+     * giữ chỗ trên ô số dư bằng CAS. Batch bị hủy thì trả lại các khoản đã giữ; commit thì journal
+     * ghi biến động ròng của từng tài khoản rồi mới cộng tiền nhận.
+     * Số dư trong sự kiện là số dư sau cả batch
+     */
+    private List<TransferResult> submitBatchCas(List<TransferInstruction> instructions, BatchMode mode,
+                                                List<String> involved) throws RemoteException {
+        int[] held = locks.lockAll(involved);
+        try {
+            Map<Integer, CasChange> changes = new LinkedHashMap<>();
+            List<TransferResult> results = new ArrayList<>(instructions.size());
+            List<TransferInstruction> committed = new ArrayList<>(instructions.size());
+            boolean failed = false;
+
+            for (TransferInstruction instruction : instructions) {
+                int fromSlot = store.slotOf(instruction.getFromAccount());
+                int toSlot = store.slotOf(instruction.getToAccount());
+                long amount = instruction.getAmount();
+                TransferResult.Status status;
+                if (fromSlot < 0 || toSlot < 0) {
+                    status = TransferResult.Status.ACCOUNT_NOT_FOUND;
+                } else if (fromSlot == toSlot) {
+                    status = TransferResult.Status.SAME_ACCOUNT;
+                } else if (amount <= 0) {
+                    status = TransferResult.Status.INVALID_AMOUNT;
+                } else {
+                    CasChange pending = changes.get(fromSlot);
+                    long fromCredit = pending == null ? 0 : Math.min(pending.pendingCredit, amount);
+                    long rest = amount - fromCredit;
+                    if (rest > 0 && cells.withdraw(fromSlot, rest) < 0) {
+                        status = TransferResult.Status.INSUFFICIENT_FUNDS;
+                    } else {
+                        status = TransferResult.Status.OK;
+                        CasChange from = changes.computeIfAbsent(fromSlot, CasChange::new);
+                        from.pendingCredit -= fromCredit;
+                        from.reserved += rest;
+                        from.net -= amount;
+                        CasChange to = changes.computeIfAbsent(toSlot, CasChange::new);
+                        to.pendingCredit += amount;
+                        to.net += amount;
+                        committed.add(instruction);
+                    }
+                }
+                failed |= status != TransferResult.Status.OK;
+                results.add(new TransferResult(status));
+            }
+
+            if (mode == BatchMode.ATOMIC && failed) {
+                releaseReserved(changes);
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).isSuccess()) {
+                        results.set(i, new TransferResult(TransferResult.Status.ABORTED));
+                    }
+                }
+                log("Batch ATOMIC bị hủy: " + instructions.size() + " lệnh");
+                return results;
+            }
+
+            if (changes.isEmpty()) {
+                return results;
+            }
+            JournalEntry[] entries = new JournalEntry[changes.size()];
+            int i = 0;
+            for (CasChange change : changes.values()) {
+                entries[i++] = JournalEntry.delta(store.accountNumber(change.slot), change.net);
+            }
+            long seq;
+            try {
+                seq = writeAhead(entries);
+            } catch (RemoteException e) {
+                releaseReserved(changes);
+                throw e;
+            }
+            for (CasChange change : changes.values()) {
+                if (change.pendingCredit > 0) {
+                    cells.add(change.slot, change.pendingCredit);
+                }
+            }
+
+            for (TransferInstruction instruction : committed) {
+                String from = instruction.getFromAccount();
+                String to = instruction.getToAccount();
+                notifyClient(from, new TransactionEvent(TransactionEvent.Type.TRANSFER_OUT,
+                        instruction.getAmount(), to, cells.get(store.slotOf(from)), seq));
+                notifyClient(to, new TransactionEvent(TransactionEvent.Type.TRANSFER_IN,
+                        instruction.getAmount(), from, cells.get(store.slotOf(to)), seq));
+            }
+            if (logging()) {
+                log(String.format("Batch %s: %d/%d lệnh thành công, %d tài khoản thay đổi",
+                        mode, committed.size(), instructions.size(), changes.size()));
+            }
+            return results;
+        } finally {
+            locks.unlockAll(held);
+        }
+    }
+
+    private void releaseReserved(Map<Integer, CasChange> changes) {
+        for (CasChange change : changes.values()) {
+            if (change.reserved > 0) {
+                cells.add(change.slot, change.reserved);
+            }
+        }
+    }
+
+    /**
+     * Thay đổi nháp của một tài khoản trong batch chế độ CAS
+     */
+    private static final class CasChange {
+        final int slot;
+        // Tiền nhận trong batch chưa cộng vào ô số dư
+        long pendingCredit;
+        // Tiền đã trừ khỏi ô số dư bằng CAS
+        long reserved;
+        long net;
+
+        CasChange(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private boolean depositSharded(String accountNumber, long amount) throws RemoteException {
+        ShardCommand done = shardCall(() -> shards.deposit(accountNumber, amount));
+        if (done == null || done.isRejected()) {
+            return false;
+        }
+        if (logging()) {
+            log(moneyLine(accountNumber, " - Nạp tiền: +", amount));
+        }
+        notifyClient(accountNumber,
+                new TransactionEvent(TransactionEvent.Type.DEPOSIT, amount, null, done.balance, done.seq));
+        return true;
+    }
+
+    private boolean withdrawSharded(String accountNumber, long amount) throws RemoteException {
+        ShardCommand done = shardCall(() -> shards.withdraw(accountNumber, amount));
+        if (done == null || done.isRejected()) {
+            return false;
+        }
+        if (logging()) {
+            log(moneyLine(accountNumber, " - Rút tiền: -", amount));
+        }
+        notifyClient(accountNumber,
+                new TransactionEvent(TransactionEvent.Type.WITHDRAW, amount, null, done.balance, done.seq));
+        return true;
+    }
+
+    private boolean transferSharded(String fromAccount, String toAccount, long amount) throws RemoteException {
+        ShardCommand done = shardCall(() -> shards.transfer(fromAccount, toAccount, amount));
+        if (done == null) {
+            return false;
+        }
+        if (logging()) {
+            log(moneyLine(fromAccount, " -> " + toAccount + ": ", amount));
+        }
+        notifyClient(fromAccount, new TransactionEvent(
+                TransactionEvent.Type.TRANSFER_OUT, amount, toAccount, done.balance, done.seq));
+        notifyClient(toAccount, new TransactionEvent(
+                TransactionEvent.Type.TRANSFER_IN, amount, fromAccount, done.toBalance, done.seq));
+        return true;
+    }
+
+    /**
+     * Batch ở chế độ SHARDED: nếu mọi tài khoản cùng một shard thì chạy thành một lệnh của shard đó.
+     * Batch trải nhiều shard chỉ hỗ trợ BEST_EFFORT, chạy như các chuyển khoản lần lượt
+     */
+    private List<TransferResult> submitBatchSharded(List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        List<TransferResult> local = shardCall(() -> shards.submitLocalBatch(instructions, mode));
+        if (local != null) {
+            for (int i = 0; i < local.size(); i++) {
+                if (local.get(i).isSuccess()) {
+                    TransferInstruction instruction = instructions.get(i);
+                    String from = instruction.getFromAccount();
+                    String to = instruction.getToAccount();
+                    notifyClient(from, new TransactionEvent(TransactionEvent.Type.TRANSFER_OUT,
+                            instruction.getAmount(), to, shards.balanceOf(from), 0));
+                    notifyClient(to, new TransactionEvent(TransactionEvent.Type.TRANSFER_IN,
+                            instruction.getAmount(), from, shards.balanceOf(to), 0));
+                }
+            }
+            return local;
+        }
+        if (mode == BatchMode.ATOMIC) {
+            throw new RemoteException("Batch ATOMIC trải trên nhiều shard không được hỗ trợ ở chế độ SHARDED");
+        }
+
+        List<TransferResult> results = new ArrayList<>(instructions.size());
+        int succeeded = 0;
+        for (TransferInstruction instruction : instructions) {
+            String from = instruction.getFromAccount();
+            String to = instruction.getToAccount();
+            long amount = instruction.getAmount();
+            TransferResult.Status status;
+            if (shards.balanceOf(from) < 0 || shards.balanceOf(to) < 0) {
+                status = TransferResult.Status.ACCOUNT_NOT_FOUND;
+            } else if (from.equals(to)) {
+                status = TransferResult.Status.SAME_ACCOUNT;
+            } else if (amount <= 0) {
+                status = TransferResult.Status.INVALID_AMOUNT;
+            } else if (transferSharded(from, to, amount)) {
+                status = TransferResult.Status.OK;
+                succeeded++;
+            } else {
+                status = TransferResult.Status.INSUFFICIENT_FUNDS;
+            }
+            results.add(new TransferResult(status));
+        }
+        if (logging()) {
+            log(String.format("Batch %s: %d/%d lệnh thành công (nhiều shard)",
+                    mode, succeeded, instructions.size()));
+        }
+        return results;
+    }
+
+    /**
+     * Gọi vào bộ máy shard, đổi lỗi journal/hàng đợi thành RemoteException
+     */
+    private <T> T shardCall(ShardCall<T> call) throws RemoteException {
+        try {
+            return call.run();
+        } catch (IOException e) {
+            log("✗ Lỗi shard: " + e.getMessage());
+            throw new RemoteException("Không thực hiện được giao dịch", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T run() throws IOException;
+    }
+
+    private void recoverLeg(long seq, JournalEntry entry) {
+        if (entry.getLeg() == TransferLeg.DEBIT) {
+            preparedLegs.put(entry.getTransferId(), new PreparedLeg(entry.getAccountNumber(), entry.getAmount(), seq));
+        } else {
+            preparedLegs.remove(entry.getTransferId());
+            finishedLegs.add(entry.getTransferId());
         }
-        return false;
     }
 
+    /**
+     * Pha 1 của 2PC trên node này. DEBIT: trừ tiền ngay (giữ trong chặng đã chuẩn bị, ghi journal);
+     * CREDIT: chỉ kiểm tra tài khoản nhận được tiền. Trả về false nếu không thể thực hiện
+     */
+    boolean prepareLeg(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0 || amount <= 0) {
+            return false;
+        }
+        locks.lock(accountNumber);
+        try {
+            if (finishedLegs.contains(txId)) {
+                return false;
+            }
+            if (preparedLegs.containsKey(txId)) {
+                return true;
+            }
+            long balance = store.balance(slot);
+            if (leg == TransferLeg.CREDIT) {
+                if (amount > Long.MAX_VALUE - balance) {
+                    return false;
+                }
+                preparedLegs.put(txId, new PreparedLeg(accountNumber, amount, Long.MAX_VALUE));
+                return true;
+            }
+            if (balance < amount) {
+                return false;
+            }
+            long newBalance = balance - amount;
+            long seq = writeAhead(JournalEntry.legBalance(accountNumber, newBalance, amount, TransferLeg.DEBIT, txId));
+            store.setBalance(slot, newBalance);
+            preparedLegs.put(txId, new PreparedLeg(accountNumber, amount, seq));
+            return true;
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
+    /**
+     * Pha 2 (commit): DEBIT ghi dấu SETTLE, CREDIT cộng tiền. Gọi lại nhiều lần cũng chỉ áp dụng một lần
+     */
+    void commitLeg(long txId, TransferLeg leg, String accountNumber, String counterparty, long amount)
+            throws RemoteException {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) {
+            throw new RemoteException("Tài khoản không thuộc node này: " + accountNumber);
+        }
+        locks.lock(accountNumber);
+        try {
+            if (finishedLegs.contains(txId)) {
+                return;
+            }
+            if (leg == TransferLeg.DEBIT && !preparedLegs.containsKey(txId)) {
+                System.err.println("⚠️ Commit cho chặng DEBIT chưa chuẩn bị: " + txId);
+                return;
+            }
+            long newBalance = leg == TransferLeg.CREDIT ? store.balance(slot) + amount : store.balance(slot);
+            TransferLeg marker = leg == TransferLeg.CREDIT ? TransferLeg.CREDIT : TransferLeg.SETTLE;
+            long seq = writeAhead(JournalEntry.legBalance(accountNumber, newBalance, amount, marker, txId));
+            store.setBalance(slot, newBalance);
+            preparedLegs.remove(txId);
+            finishedLegs.add(txId);
+
+            if (leg == TransferLeg.CREDIT) {
+                if (logging()) {
+                    log(moneyLine(counterparty, " => " + accountNumber + " (cluster): ", amount));
+                }
+                notifyClient(accountNumber, new TransactionEvent(
+                        TransactionEvent.Type.TRANSFER_IN, amount, counterparty, newBalance, seq));
+            } else {
+                notifyClient(accountNumber, new TransactionEvent(
+                        TransactionEvent.Type.TRANSFER_OUT, amount, counterparty, newBalance, seq));
+            }
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
+    /**
+     * Pha 2 (abort): hoàn tiền cho DEBIT đã trừ; CREDIT chưa ghi gì nên chỉ quên chặng
+     */
+    void abortLeg(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException {
+        int slot = store.slotOf(accountNumber);
+        if (slot < 0) {
+            return;
+        }
+        locks.lock(accountNumber);
+        try {
+            if (finishedLegs.contains(txId)) {
+                return;
+            }
+            PreparedLeg prepared = preparedLegs.remove(txId);
+            if (leg == TransferLeg.DEBIT && prepared != null) {
+                long newBalance = store.balance(slot) + prepared.amount;
+                writeAhead(JournalEntry.legBalance(accountNumber, newBalance, prepared.amount,
+                        TransferLeg.REFUND, txId));
+                store.setBalance(slot, newBalance);
+            }
+            finishedLegs.add(txId);
+        } finally {
+            locks.unlock(accountNumber);
+        }
+    }
+
+    /**
+     * Checkpoint không được xóa segment chứa DEBIT còn chờ quyết định
+     */
+    private long oldestPreparedSeq() {
+        long oldest = Long.MAX_VALUE;
+        for (PreparedLeg prepared : preparedLegs.values()) {
+            oldest = Math.min(oldest, prepared.seq - 1);
+        }
+        return oldest;
+    }
+
+    /**
+     * Chặng 2PC đã chuẩn bị; seq là bản ghi DEBIT trong journal (Long.MAX_VALUE với CREDIT, chưa ghi gì)
+     */
+    private static final class PreparedLeg {
+        final String accountNumber;
+        final long amount;
+        final long seq;
+
+        PreparedLeg(String accountNumber, long amount, long seq) {
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * Mã các chặng 2PC đã kết thúc gần đây, để commit/abort gửi lại không áp dụng hai lần.
+     * Giữ tối đa {@code capacity} mã mới nhất
+     */
+    private static final class FinishedLegs {
+        private final int capacity;
+        private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        private final ArrayDeque<Long> order = new ArrayDeque<>();
+
+        FinishedLegs(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean contains(long id) {
+            return ids.contains(id);
+        }
+
+        synchronized void add(long id) {
+            if (ids.add(id)) {
+                order.addLast(id);
+                if (order.size() > capacity) {
+                    ids.remove(order.removeFirst());
+                }
+            }
+        }
+    }
+
+    public boolean deposit(String requestId, String accountNumber, long amount) throws RemoteException {
+        return dedup.execute(requestId, "deposit", accountNumber + ":" + amount,
+                () -> deposit(accountNumber, amount));
+    }
+
+    public boolean withdraw(String requestId, String accountNumber, long amount) throws RemoteException {
+        return dedup.execute(requestId, "withdraw", accountNumber + ":" + amount,
+                () -> withdraw(accountNumber, amount));
+    }
+
+    public boolean transfer(String requestId, String fromAccount, String toAccount, long amount)
+            throws RemoteException {
+        return dedup.execute(requestId, "transfer", fromAccount + ">" + toAccount + ":" + amount,
+                () -> transfer(fromAccount, toAccount, amount));
+    }
+
+    public List<TransferResult> submitBatch(String requestId, List<TransferInstruction> instructions,
+                                            BatchMode mode) throws RemoteException {
+        return dedup.execute(requestId, "batch", IdempotencyCache.batchPayload(instructions, mode),
+                () -> submitBatch(instructions, mode));
+    }
+
+    public HistoryPage getHistory(String accountNumber, long cursor, int limit) throws RemoteException {
+        return metrics.getHistory().time(() -> {
+            if (history == null || accountNumber == null) {
+                return new HistoryPage(new ArrayList<>(), -1);
+            }
+            try {
+                return history.page(accountNumber, cursor, limit);
+            } catch (IOException e) {
+                throw new RemoteException("Không đọc được lịch sử giao dịch", e);
+            }
+        });
+    }
+
+    /**
+     * PIN được kiểm tra với giá trị băm đã lưu; tài khoản không tồn tại vẫn tốn một lần băm
+     * để thời gian trả lời như nhau
+     */
     @Override
-    public void registerCallback(String accountNumber, ClientCallback callback)
+    public Session authenticate(String accountNumber, String pin) throws RemoteException {
+        return metrics.authenticate().time(() -> performAuthenticate(accountNumber, pin));
+    }
+
+    private Session performAuthenticate(String accountNumber, String pin) {
+        Account account = accountNumber == null ? null : store.find(accountNumber);
+        if (!pins.verify(pin, account == null ? null : account.getPin())) {
+            if (logging()) {
+                log("Đăng nhập thất bại: " + accountNumber);
+            }
+            return null;
+        }
+        if (logging()) {
+            log("Đăng nhập: " + accountNumber + " - " + account.getAccountName());
+        }
+        return new Session(sessions.create(accountNumber), withoutPin(current(account)), sessions.getTtlMs());
+    }
+
+    @Override
+    public void logout(SessionToken session) throws RemoteException {
+        String accountNumber = sessions.invalidate(session);
+        if (accountNumber != null && logging()) {
+            log("Đăng xuất: " + accountNumber);
+        }
+    }
+
+    @Override
+    public Account getAccount(SessionToken session) throws RemoteException {
+        return withoutPin(current(store.find(sessions.require(session))));
+    }
+
+    @Override
+    public boolean deposit(SessionToken session, String requestId, long amount) throws RemoteException {
+        return deposit(requestId, sessions.require(session), amount);
+    }
+
+    @Override
+    public boolean withdraw(SessionToken session, String requestId, long amount) throws RemoteException {
+        return withdraw(requestId, sessions.require(session), amount);
+    }
+
+    @Override
+    public boolean transfer(SessionToken session, String requestId, String toAccount, long amount)
+            throws RemoteException {
+        return transfer(requestId, sessions.require(session), toAccount, amount);
+    }
+
+    /**
+     * Batch theo phiên: mọi lệnh phải chuyển từ tài khoản của phiên
+     */
+    @Override
+    public List<TransferResult> submitBatch(SessionToken session, String requestId,
+                                            List<TransferInstruction> instructions, BatchMode mode)
             throws RemoteException {
-        callbacks.put(accountNumber, callback);
-        controller.log("Callback đã đăng ký: " + accountNumber);
+        requireSource(sessions.require(session), instructions);
+        return submitBatch(requestId, instructions, mode);
+    }
+
+    /**
+     * Từ chối batch có lệnh chuyển từ tài khoản khác {@code accountNumber}
+     */
+    static void requireSource(String accountNumber, List<TransferInstruction> instructions) throws RemoteException {
+        for (TransferInstruction instruction : instructions) {
+            if (!accountNumber.equals(instruction.getFromAccount())) {
+                throw new RemoteException("Lệnh chuyển từ tài khoản " + instruction.getFromAccount()
+                        + " không thuộc phiên hiện tại");
+            }
+        }
     }
 
     @Override
+    public HistoryPage getHistory(SessionToken session, long cursor, int limit) throws RemoteException {
+        return getHistory(sessions.require(session), cursor, limit);
+    }
+
+    @Override
+    public void registerCallback(SessionToken session, ClientCallback callback) throws RemoteException {
+        registerCallback(sessions.require(session), callback);
+    }
+
+    @Override
+    public void unregisterCallback(SessionToken session) throws RemoteException {
+        unregisterCallback(sessions.require(session));
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public HistoryStore getHistoryStore() {
+        return history;
+    }
+
+    public IdempotencyCache getIdempotencyCache() {
+        return dedup;
+    }
+
+    public SessionCache getSessionCache() {
+        return sessions;
+    }
+
+    public void registerCallback(String accountNumber, ClientCallback callback)
+            throws RemoteException {
+        callbacks.register(accountNumber, callback);
+        log("Callback đã đăng ký: " + accountNumber);
+    }
+
     public void unregisterCallback(String accountNumber) throws RemoteException {
-        callbacks.remove(accountNumber);
-        controller.log("Callback đã hủy: " + accountNumber);
+        callbacks.unregister(accountNumber);
+        log("Callback đã hủy: " + accountNumber);
+    }
+
+    /**
+     * Ghi giao dịch vào journal trước khi áp dụng lên bộ nhớ (write-ahead).
+     * Giao dịch được gom batch với các giao dịch đồng thời khác; hàm chỉ trả về
+     * khi batch chứa nó đã được ghi bền vững, kèm seq của bản ghi.
+     * RemoteException nghĩa là bản ghi chắc chắn không được ghi, nên bên gọi được phép hoàn lại bộ nhớ.
+     * Bản ghi đã xếp hàng thì sẽ được commit dù luồng gọi bị ngắt, nên chờ tới cùng rồi mới đặt lại cờ ngắt
+     */
+    private long writeAhead(JournalEntry... entries) throws RemoteException {
+        CompletableFuture<Long> commit = committer.submit(List.of(entries));
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    long seq = commit.get();
+                    checkpointer.recordChange();
+                    return seq;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            log("✗ Lỗi ghi journal: " + e.getCause().getMessage());
+            throw new RemoteException("Không ghi được giao dịch", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Dòng log giao dịch: tiền tố + số tiền đã định dạng + "₫", không qua String.format
+     */
+    private static String moneyLine(String accountNumber, String text, long amount) {
+        StringBuilder line = new StringBuilder(64).append(accountNumber).append(text);
+        return Money.appendTo(line, amount).append('₫').toString();
+    }
+
+    public void addListener(ServerEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ServerEventListener listener) {
+        listeners.remove(listener);
     }
 
-    private void notifyClient(String accountNumber, String message) {
-        ClientCallback callback = callbacks.get(accountNumber);
-        if (callback != null) {
+    /**
+     * Chỉ dựng dòng log khi có người nghe, để đường giao dịch không tốn gì khi chạy không giao diện
+     */
+    private boolean logging() {
+        return !listeners.isEmpty();
+    }
+
+    private void log(String message) {
+        for (ServerEventListener listener : listeners) {
+            listener.onLog(message);
+        }
+    }
+
+    /**
+     * Ghi lịch sử rồi xếp sự kiện cho client; việc gửi RMI diễn ra trên luồng của dispatcher.
+     * Gọi sau khi giao dịch đã commit, nên lỗi ghi lịch sử chỉ được báo chứ không hủy giao dịch
+     */
+    private void notifyClient(String accountNumber, TransactionEvent event) {
+        if (history != null) {
             try {
-                callback.notifyTransaction(message);
-            } catch (RemoteException e) {
-                callbacks.remove(accountNumber);
-                controller.log("Callback lỗi cho: " + accountNumber);
+                history.append(accountNumber, event);
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi ghi lịch sử " + accountNumber + ": " + e.getMessage());
             }
         }
+        callbacks.dispatch(accountNumber, event);
     }
 
     public List<Account> getAllAccounts() {
+        List<Account> accounts = new ArrayList<>(store.size());
+        for (int slot = 0; slot < store.size(); slot++) {
+            accounts.add(current(store.get(slot)));
+        }
         return accounts;
     }
+
+    /**
+     * Ở chế độ CAS/SHARDED, bản sao tài khoản mang số dư đọc từ ô CAS hoặc shard; các chế độ khác trả nguyên đối tượng
+     */
+    private Account current(Account account) {
+        if (account == null) {
+            return null;
+        }
+        String number = account.getAccountNumber();
+        long balance;
+        if (cells != null) {
+            balance = cells.get(store.slotOf(number));
+        } else if (shards != null) {
+            balance = shards.balanceOf(number);
+        } else {
+            // Chế độ khóa: đọc dưới khóa dải để thấy số dư đã commit, không đọc giữa chừng một giao dịch
+            locks.lock(number);
+            try {
+                balance = store.balance(store.slotOf(number));
+            } finally {
+                locks.unlock(number);
+            }
+        }
+        return new Account(number, account.getAccountName(), balance, account.getPin());
+    }
+
+    /**
+     * Bản sao trả cho client: không kèm PIN, kể cả dạng đã băm
+     */
+    private static Account withoutPin(Account account) {
+        return account == null ? null
+                : new Account(account.getAccountNumber(), account.getAccountName(), account.getBalance(), null);
+    }
+
+    public CommitMetrics getCommitMetrics() {
+        return committer.getMetrics();
+    }
+
+    public CallbackDispatcher getCallbackDispatcher() {
+        return callbacks;
+    }
+
+    /**
+     * Chụp snapshot cuối cùng và đóng journal khi dừng server
+     */
+    public void shutdown() {
+        if (replication != null) {
+            System.out.println("📊 " + replication);
+            replication.shutdown();
+        }
+        boolean shardsClean = false;
+        if (shards != null) {
+            // Gộp số dư các shard về kho chung để checkpoint cuối ghi vào snapshot chung
+            shardsClean = shards.shutdown();
+            shards.copyBalancesTo(store);
+        }
+        committer.shutdown();
+        callbacks.shutdown(2000);
+        System.out.println("📊 " + committer.getMetrics());
+        System.out.println("📊 " + callbacks);
+        System.out.println("📊 " + dedup);
+        System.out.println("📊 " + sessions);
+        sessions.shutdown();
+        System.out.println(metrics);
+        metrics.shutdown();
+        if (history != null) {
+            System.out.println("📊 " + history);
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi đóng lịch sử giao dịch: " + e.getMessage());
+            }
+        }
+        boolean saved = checkpointer.shutdown();
+        if (shards != null) {
+            if (saved && shardsClean) {
+                shards.discardShardState();
+            } else {
+                System.err.println("⚠️ Giữ lại journal các shard để khôi phục ở lần chạy SHARDED sau");
+            }
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi đóng journal: " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot nhị phân bố cục cố định, nạp bằng memory-mapped FileChannel.
+ *
+ * <pre>
+ * header  (32 byte): magic "EBS1" | version | số tài khoản | độ dài record | seq (long) | offset bảng tên (long)
+ * records (84 byte/tài khoản):
+ *         số tài khoản (1 byte độ dài + 15 byte) | offset tên (int) | độ dài tên (int)
+ *         | số dư theo đơn vị nhỏ nhất - đồng (long) | PIN đã băm: số vòng PBKDF2 (int) + salt 16 byte + hash 32 byte
+ * names   : tên tài khoản UTF-8 nối liền nhau
+ * trailer : CRC32 của records + names (long)
+ * </pre>
+ *
+ * Version 1 (record 48 byte, PIN dạng rõ 1 byte độ dài + 15 byte) vẫn đọc được; server băm các PIN đó
+ * khi khởi động. Các số đều big-endian. Khi nạp, chỉ việc đọc các ô cố định trên vùng đã map,
+ * không có bước parse XML hay chuyển đổi số.
+ */
+public class BinarySnapshotFormat {
+    private static final int MAGIC = 0x45425331; // "EBS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int FIELD_SIZE = 16;
+    private static final int RECORD_SIZE = FIELD_SIZE + 4 + 4 + 8 + PinHasher.BINARY_SIZE;
+    private static final int V1_RECORD_SIZE = FIELD_SIZE + 4 + 4 + 8 + FIELD_SIZE;
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Ghi snapshot ứng với seq journal đã cho
+     */
+    public void write(List<Account> accounts, long seq, File file) throws IOException {
+        long namesOffset = HEADER_SIZE + (long) accounts.size() * RECORD_SIZE;
+        CRC32 crc = new CRC32();
+        List<byte[]> names = new ArrayList<>(accounts.size());
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(accounts.size());
+            out.writeInt(RECORD_SIZE);
+            out.writeLong(seq);
+            out.writeLong(namesOffset);
+
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            int nameOffset = 0;
+            for (Account account : accounts) {
+                byte[] name = bytesOf(account.getAccountName());
+                names.add(name);
+
+                record.clear();
+                putField(record, account.getAccountNumber(), "số tài khoản");
+                record.putInt(nameOffset);
+                record.putInt(name.length);
+                record.putLong(account.getBalance());
+                byte[] pin = PinHasher.toBinary(account.getPin());
+                if (pin == null) {
+                    throw new IOException("PIN của tài khoản " + account.getAccountNumber() + " chưa được băm");
+                }
+                record.put(pin);
+                out.write(record.array());
+                crc.update(record.array());
+                nameOffset += name.length;
+            }
+            for (byte[] name : names) {
+                out.write(name);
+                crc.update(name);
+            }
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    /**
+     * Nạp snapshot bằng cách map file vào bộ nhớ; ném IOException nếu file hỏng
+     */
+    public AccountSnapshot read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Snapshot nhị phân quá ngắn: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot nhị phân lớn hơn 2GB chưa được hỗ trợ: " + file);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.BIG_ENDIAN);
+
+            int version = map.getInt(4);
+            int recordSize = version == 1 ? V1_RECORD_SIZE : RECORD_SIZE;
+            if (map.getInt(0) != MAGIC || (version != 1 && version != VERSION) || map.getInt(12) != recordSize) {
+                throw new IOException("Header snapshot nhị phân không hợp lệ: " + file);
+            }
+            int count = map.getInt(8);
+            long seq = map.getLong(16);
+            int namesOffset = (int) map.getLong(24);
+            int bodyEnd = (int) size - TRAILER_SIZE;
+            if (namesOffset != HEADER_SIZE + (long) count * recordSize || namesOffset > bodyEnd) {
+                throw new IOException("Kích thước snapshot nhị phân không khớp: " + file);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(HEADER_SIZE, bodyEnd - HEADER_SIZE));
+            if (crc.getValue() != map.getLong(bodyEnd)) {
+                throw new IOException("Sai CRC snapshot nhị phân: " + file);
+            }
+
+            List<Account> accounts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int base = HEADER_SIZE + i * recordSize;
+                String accountNumber = getField(map, base);
+                int nameOffset = map.getInt(base + FIELD_SIZE);
+                int nameLength = map.getInt(base + FIELD_SIZE + 4);
+                long balance = map.getLong(base + FIELD_SIZE + 8);
+                String pin = version == 1 ? getField(map, base + FIELD_SIZE + 16)
+                        : PinHasher.fromBinary(map, base + FIELD_SIZE + 16);
+                String name = getString(map, namesOffset + nameOffset, nameLength);
+                accounts.add(new Account(accountNumber, name, balance, pin));
+            }
+            return new AccountSnapshot(accounts, seq);
+        }
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putField(ByteBuffer record, String value, String label) throws IOException {
+        byte[] bytes = bytesOf(value);
+        if (bytes.length >= FIELD_SIZE) {
+            throw new IOException(label + " dài quá " + (FIELD_SIZE - 1) + " byte: " + value);
+        }
+        record.put((byte) bytes.length);
+        record.put(bytes);
+        record.position(record.position() + FIELD_SIZE - 1 - bytes.length);
+    }
+
+    private static String getField(ByteBuffer map, int offset) {
+        return getString(map, offset + 1, map.get(offset));
+    }
+
+    private static String getString(ByteBuffer map, int offset, int length) {
+        byte[] bytes = new byte[length];
+        map.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,237 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.TransactionEvent;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Gửi thông báo ClientCallback bất đồng bộ.
+ *
+ * Mỗi client có một hàng đợi giới hạn; giao dịch chỉ xếp sự kiện vào hàng đợi rồi đi tiếp.
+ * Khi hàng đợi có việc, một virtual thread được giao rút hàng đợi đó, nên một client
+ * chậm hoặc đã chết chỉ làm chậm chính nó. Client lỗi liên tiếp quá số lần cho phép bị gỡ đăng ký.
+ * Sự kiện đến trong cùng cửa sổ {@code batchWindowMs} được gửi chung một lời gọi
+ * {@link ClientCallback#notifyTransactions}.
+ */
+public class CallbackDispatcher {
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxFailures;
+    private final long batchWindowMs;
+    private final Consumer<String> logger;
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final OperationStats delivery = new OperationStats("callbackDelivery");
+
+    public CallbackDispatcher(ServerConfig config, Consumer<String> logger) {
+        this.queueCapacity = Math.max(1, config.getCallbackQueueCapacity());
+        this.overflowPolicy = config.getCallbackOverflowPolicy();
+        this.maxFailures = Math.max(1, config.getCallbackMaxFailures());
+        this.batchWindowMs = Math.max(0, config.getCallbackBatchWindowMs());
+        this.logger = logger;
+    }
+
+    public void register(String accountNumber, ClientCallback callback) {
+        mailboxes.put(accountNumber, new Mailbox(accountNumber, callback));
+    }
+
+    public void unregister(String accountNumber) {
+        mailboxes.remove(accountNumber);
+    }
+
+    /**
+     * Xếp sự kiện cho client; không bao giờ chặn luồng gọi
+     */
+    public void dispatch(String accountNumber, TransactionEvent event) {
+        Mailbox mailbox = mailboxes.get(accountNumber);
+        if (mailbox != null) {
+            mailbox.offer(event);
+        }
+    }
+
+    /**
+     * Ngừng nhận việc mới và chờ tối đa {@code timeoutMs} để gửi nốt
+     */
+    public void shutdown(long timeoutMs) {
+        mailboxes.clear();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Thời gian một lời gọi notifyTransactions tới client
+     */
+    public OperationStats getDeliveryStats() {
+        return delivery;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("callback: %d client, đã gửi %d sự kiện / %d batch, bỏ %d, gỡ %d",
+                mailboxes.size(), delivered.sum(), batches.sum(), dropped.sum(), evicted.sum());
+    }
+
+    private final class Mailbox {
+        private final String accountNumber;
+        private final ClientCallback callback;
+        private final ArrayDeque<TransactionEvent> queue = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean scheduled;
+        private int failures;
+
+        Mailbox(String accountNumber, ClientCallback callback) {
+            this.accountNumber = accountNumber;
+            this.callback = callback;
+        }
+
+        void offer(TransactionEvent event) {
+            lock.lock();
+            try {
+                if (queue.size() >= queueCapacity) {
+                    switch (overflowPolicy) {
+                        case DROP_NEWEST -> {
+                            dropped.increment();
+                            return;
+                        }
+                        case DROP_OLDEST -> {
+                            queue.pollFirst();
+                            dropped.increment();
+                            queue.addLast(event);
+                        }
+                        case COALESCE -> coalesce(event);
+                    }
+                } else {
+                    queue.addLast(event);
+                }
+                if (!scheduled) {
+                    scheduled = true;
+                    executor.execute(this::drain);
+                }
+            } catch (RejectedExecutionException e) {
+                // Dispatcher đã dừng: bỏ thông báo, không làm hỏng giao dịch
+                scheduled = false;
+                dropped.increment();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gộp sự kiện mới vào sự kiện cuối nếu cùng loại và cùng đối tác
+         * (cộng số tiền, lấy số dư và seq mới nhất); nếu không gộp được thì bỏ sự kiện cũ nhất
+         */
+        private void coalesce(TransactionEvent event) {
+            TransactionEvent last = queue.peekLast();
+            if (last != null && last.getType() == event.getType()
+                    && Objects.equals(last.getCounterparty(), event.getCounterparty())) {
+                queue.pollLast();
+                queue.addLast(new TransactionEvent(event.getType(), last.getAmount() + event.getAmount(),
+                        event.getCounterparty(), event.getBalanceAfter(), event.getSequence()));
+            } else {
+                queue.pollFirst();
+                queue.addLast(event);
+                dropped.increment();
+            }
+        }
+
+        private void drain() {
+            boolean finished = false;
+            try {
+                finished = deliverAll();
+            } finally {
+                if (!finished) {
+                    // Lỗi ngoài dự kiến thoát khỏi vòng gửi: bỏ cờ để lần offer sau giao lại việc rút
+                    lock.lock();
+                    try {
+                        scheduled = false;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Rút hàng đợi tới khi rỗng hoặc client bị gỡ; trả về true khi đã tự bỏ cờ {@code scheduled}
+         */
+        private boolean deliverAll() {
+            while (true) {
+                if (batchWindowMs > 0) {
+                    try {
+                        // Chờ một cửa sổ ngắn để gom các sự kiện đến sát nhau
+                        Thread.sleep(batchWindowMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                List<TransactionEvent> batch;
+                lock.lock();
+                try {
+                    if (queue.isEmpty()) {
+                        scheduled = false;
+                        return true;
+                    }
+                    batch = new ArrayList<>(queue);
+                    queue.clear();
+                } finally {
+                    lock.unlock();
+                }
+
+                long started = System.nanoTime();
+                try {
+                    callback.notifyTransactions(batch);
+                    delivery.record(System.nanoTime() - started, true);
+                    delivered.add(batch.size());
+                    batches.increment();
+                    failures = 0;
+                } catch (RemoteException | RuntimeException e) {
+                    // RuntimeException từ stub hoặc callback cùng JVM cũng tính là một lần gửi hỏng
+                    delivery.record(System.nanoTime() - started, false);
+                    dropped.add(batch.size());
+                    if (++failures >= maxFailures) {
+                        evict();
+                        return true;
+                    }
+                }
+            }
+        }
+
+        private void evict() {
+            lock.lock();
+            try {
+                dropped.add(queue.size());
+                queue.clear();
+                scheduled = false;
+            } finally {
+                lock.unlock();
+            }
+            if (mailboxes.remove(accountNumber, this)) {
+                evicted.increment();
+                logger.accept("Callback lỗi " + failures + " lần, đã gỡ: " + accountNumber);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Checkpoint nền: định kỳ (hoặc sau đủ số thay đổi) ghi snapshot toàn bộ tài khoản,
+ * xoay vòng snapshot cũ và xóa các segment journal không còn cần.
+ *
+ * Snapshot được chụp "mờ" (fuzzy): journal chuyển segment trước, lấy seq gốc, rồi sao chép
+ * từng tài khoản dưới khóa dải của nó. Giao dịch chỉ chờ trong lúc đọc một ô số dư, không chờ
+ * cả quá trình ghi file. Giao dịch chen vào sau seq gốc đều nằm trong journal và được phát lại
+ * (số dư tuyệt đối nên phát lại chồng lên vẫn đúng), nên tổng tiền của riêng file snapshot có thể lệch
+ * nửa chuyển khoản nhưng snapshot + journal luôn khôi phục đúng.
+ *
+ * Ở chế độ CAS, bộ nhớ có thể chứa khoản rút đã giữ chỗ nhưng chưa ghi journal và journal ghi
+ * biến động (phát lại hai lần là sai), nên snapshot được dựng từ log: snapshot gần nhất trên đĩa
+ * cộng các bản ghi journal tới đúng seq gốc, không đọc bộ nhớ.
+ */
+public class Checkpointer {
+    private final AccountStore store;
+    private final AccountLocks locks;
+    private final TransactionJournal journal;
+    private final XMLAccountHandler xmlHandler;
+    private final long intervalMs;
+    private final long changeThreshold;
+    private final int keepSnapshots;
+    private final boolean logDerived;
+    private final AtomicLong changes = new AtomicLong();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+    private volatile long lastCheckpointAt = System.currentTimeMillis();
+    // Seq lớn nhất được phép xóa khỏi journal do bên ngoài giữ lại (chặng 2PC, follower đang bắt kịp)
+    private volatile LongSupplier retentionLimit = () -> Long.MAX_VALUE;
+
+    public Checkpointer(AccountStore store, AccountLocks locks, TransactionJournal journal,
+                        XMLAccountHandler xmlHandler, ServerConfig config) {
+        this.store = store;
+        this.locks = locks;
+        this.journal = journal;
+        this.xmlHandler = xmlHandler;
+        this.intervalMs = config.getCheckpointIntervalMs();
+        this.changeThreshold = config.getCheckpointChanges();
+        this.keepSnapshots = Math.max(1, config.getSnapshotsToKeep());
+        this.logDerived = config.getConcurrencyMode() == ConcurrencyMode.CAS;
+    }
+
+    /**
+     * Không xóa segment journal chứa bản ghi có seq lớn hơn giá trị {@code limit} trả về
+     */
+    public void setRetentionLimit(LongSupplier limit) {
+        this.retentionLimit = limit;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpointer");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = Math.max(100, Math.min(1000, intervalMs));
+        scheduler.scheduleWithFixedDelay(this::maybeCheckpoint, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ghi nhận một giao dịch đã commit
+     */
+    public void recordChange() {
+        changes.incrementAndGet();
+    }
+
+    private void maybeCheckpoint() {
+        long pending = changes.get();
+        boolean due = System.currentTimeMillis() - lastCheckpointAt >= intervalMs;
+        if (pending >= changeThreshold || (due && pending > 0)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Chụp và lưu snapshot ngay; trả về false nếu ghi thất bại
+     */
+    public boolean checkpoint() {
+        checkpointLock.lock();
+        try {
+            long started = System.nanoTime();
+            changes.set(0);
+            long seq = journal.roll();
+
+            List<Account> copy = logDerived ? replayThrough(seq) : copyUnderLocks();
+
+            if (!xmlHandler.saveSnapshot(copy, seq)) {
+                return false;
+            }
+            long oldestKept = xmlHandler.pruneSnapshots(keepSnapshots);
+            int removed = journal.deleteSegmentsThrough(Math.min(oldestKept, retentionLimit.getAsLong()));
+            lastCheckpointAt = System.currentTimeMillis();
+            System.out.printf("📸 Checkpoint seq %d: %d tài khoản, xóa %d segment journal (%d ms)%n",
+                    seq, copy.size(), removed, (System.nanoTime() - started) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi checkpoint: " + e.getMessage());
+            return false;
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Lấy {@code accounts} làm trạng thái tại {@code seq} (follower vừa nhận snapshot từ primary):
+     * journal nhảy tới sau seq, sang segment mới và snapshot được ghi ngay
+     */
+    public void install(List<Account> accounts, long seq) throws IOException {
+        checkpointLock.lock();
+        try {
+            if (journal.getLastSeq() > seq) {
+                throw new IOException("Journal cục bộ đã vượt seq " + seq + " của snapshot nhận được; "
+                        + "hãy xóa dữ liệu của follower rồi chạy lại");
+            }
+            changes.set(0);
+            journal.advanceTo(seq);
+            journal.roll();
+            if (!xmlHandler.saveSnapshot(accounts, seq)) {
+                throw new IOException("Không ghi được snapshot seq " + seq);
+            }
+            xmlHandler.pruneSnapshots(keepSnapshots);
+            lastCheckpointAt = System.currentTimeMillis();
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Sao chép từng tài khoản dưới khóa dải của nó
+     */
+    private List<Account> copyUnderLocks() {
+        List<Account> copy = new ArrayList<>(store.size());
+        for (int slot = 0; slot < store.size(); slot++) {
+            Account account = store.get(slot);
+            String number = account.getAccountNumber();
+            locks.lock(number);
+            try {
+                copy.add(new Account(number, account.getAccountName(), store.balance(slot), account.getPin()));
+            } finally {
+                locks.unlock(number);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Trạng thái đúng tại {@code seq}: snapshot gần nhất cộng các bản ghi journal sau nó tới {@code seq}
+     */
+    private List<Account> replayThrough(long seq) throws IOException {
+        AccountSnapshot base = xmlHandler.loadLatestSnapshot();
+        AccountStore replayed = new HeapAccountStore(base.getAccounts());
+        journal.replay(base.getSeq(), seq, record -> {
+            for (JournalEntry entry : record.getEntries()) {
+                Account account = replayed.find(entry.getAccountNumber());
+                if (account != null) {
+                    account.setBalance(entry.applyTo(account.getBalance()));
+                }
+            }
+        });
+        return replayed.asList();
+    }
+
+    /**
+     * Dừng lịch chạy và chụp snapshot cuối cùng; trả về false nếu snapshot cuối ghi thất bại
+     */
+    public boolean shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return checkpoint();
+    }
+}
@@ -0,0 +1,48 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Giao diện nội bộ mà mỗi node cluster mở cho router (tên "ClusterParticipant" trong registry của node),
+ * gồm 2PC và các thao tác theo số tài khoản router chuyển tiếp sau khi đã tự kiểm tra phiên.
+ * Cổng registry của node chỉ dành cho router, không mở cho client.
+ * Mọi lệnh 2PC mang mã giao dịch do router cấp; commit/abort gửi lại nhiều lần chỉ có tác dụng một lần
+ */
+public interface ClusterParticipant extends Remote {
+    /**
+     * Pha 1: DEBIT trừ tiền tạm giữ, CREDIT kiểm tra tài khoản nhận. Trả về false nếu node bỏ phiếu không
+     */
+    boolean prepare(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException;
+
+    void commit(long txId, TransferLeg leg, String accountNumber, String counterparty, long amount)
+            throws RemoteException;
+
+    void abort(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException;
+
+    /**
+     * Tài khoản theo số, không kèm PIN
+     */
+    Account account(String accountNumber) throws RemoteException;
+
+    /*
+     * requestId có thể null (không chống lặp), như các hàm cùng tên của BankServiceImpl
+     */
+    boolean deposit(String requestId, String accountNumber, long amount) throws RemoteException;
+    boolean withdraw(String requestId, String accountNumber, long amount) throws RemoteException;
+    boolean transfer(String requestId, String fromAccount, String toAccount, long amount) throws RemoteException;
+    List<TransferResult> submitBatch(String requestId, List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException;
+
+    HistoryPage getHistory(String accountNumber, long cursor, int limit) throws RemoteException;
+    void registerCallback(String accountNumber, ClientCallback callback) throws RemoteException;
+    void unregisterCallback(String accountNumber) throws RemoteException;
+}
@@ -0,0 +1,82 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+/**
+ * Đối tượng RMI của node cluster nhận lệnh từ router và chuyển cho {@link BankServiceImpl}
+ */
+public class ClusterParticipantService extends UnicastRemoteObject implements ClusterParticipant {
+    private final BankServiceImpl bankService;
+
+    public ClusterParticipantService(BankServiceImpl bankService) throws RemoteException {
+        super();
+        this.bankService = bankService;
+    }
+
+    @Override
+    public boolean prepare(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException {
+        return bankService.prepareLeg(txId, leg, accountNumber, amount);
+    }
+
+    @Override
+    public void commit(long txId, TransferLeg leg, String accountNumber, String counterparty, long amount)
+            throws RemoteException {
+        bankService.commitLeg(txId, leg, accountNumber, counterparty, amount);
+    }
+
+    @Override
+    public void abort(long txId, TransferLeg leg, String accountNumber, long amount) throws RemoteException {
+        bankService.abortLeg(txId, leg, accountNumber, amount);
+    }
+
+    @Override
+    public Account account(String accountNumber) throws RemoteException {
+        return bankService.login(accountNumber);
+    }
+
+    @Override
+    public boolean deposit(String requestId, String accountNumber, long amount) throws RemoteException {
+        return bankService.deposit(requestId, accountNumber, amount);
+    }
+
+    @Override
+    public boolean withdraw(String requestId, String accountNumber, long amount) throws RemoteException {
+        return bankService.withdraw(requestId, accountNumber, amount);
+    }
+
+    @Override
+    public boolean transfer(String requestId, String fromAccount, String toAccount, long amount)
+            throws RemoteException {
+        return bankService.transfer(requestId, fromAccount, toAccount, amount);
+    }
+
+    @Override
+    public List<TransferResult> submitBatch(String requestId, List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        return bankService.submitBatch(requestId, instructions, mode);
+    }
+
+    @Override
+    public HistoryPage getHistory(String accountNumber, long cursor, int limit) throws RemoteException {
+        return bankService.getHistory(accountNumber, cursor, limit);
+    }
+
+    @Override
+    public void registerCallback(String accountNumber, ClientCallback callback) throws RemoteException {
+        bankService.registerCallback(accountNumber, callback);
+    }
+
+    @Override
+    public void unregisterCallback(String accountNumber) throws RemoteException {
+        bankService.unregisterCallback(accountNumber);
+    }
+}
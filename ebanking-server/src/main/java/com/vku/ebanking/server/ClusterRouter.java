@@ -0,0 +1,298 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.Session;
+import com.vku.ebanking.shared.SessionToken;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mặt tiền RMI của cluster: client vẫn tra "BankService" ở cổng registry thường (1099) như server đơn.
+ * Mỗi lời gọi được chuyển tới node sở hữu tài khoản theo {@link ClusterTopology};
+ * chuyển khoản giữa hai node đi qua {@link TwoPhaseCoordinator}.
+ *
+ * <pre>
+ * java -Debanking.cluster.nodes=localhost:1101=...,localhost:1102=... com.vku.ebanking.server.ClusterRouter
+ * </pre>
+ *
+ * Batch ATOMIC trải trên nhiều node bị từ chối; BEST_EFFORT được thực hiện tuần tự từng lệnh.
+ * PIN được node sở hữu tài khoản kiểm tra, còn phiên do router cấp và giữ.
+ */
+public class ClusterRouter extends UnicastRemoteObject implements BankService {
+    private final ClusterTopology topology;
+    private final NodeLink[] links;
+    private final TwoPhaseCoordinator coordinator;
+    // Chuyển khoản liên node do router tự điều phối nên router tự chống lặp
+    private final IdempotencyCache dedup;
+    private final SessionCache sessions;
+
+    public ClusterRouter(ServerConfig config) throws RemoteException {
+        super();
+        if (!config.isClustered()) {
+            throw new RemoteException("Thiếu -Debanking.cluster.nodes");
+        }
+        this.topology = config.getClusterTopology();
+        this.dedup = IdempotencyCache.forConfig(config);
+        this.sessions = SessionCache.forConfig(config);
+        this.links = new NodeLink[topology.getNodes().size()];
+        for (ClusterTopology.Node node : topology.getNodes()) {
+            links[node.getIndex()] = new NodeLink(node);
+        }
+        try {
+            this.coordinator = new TwoPhaseCoordinator(links, config);
+        } catch (IOException e) {
+            throw new RemoteException("Không mở được log điều phối", e);
+        }
+        for (ClusterTopology.Node node : topology.getNodes()) {
+            System.out.println("🌐 " + node);
+        }
+    }
+
+    private NodeLink linkFor(String accountNumber) {
+        ClusterTopology.Node node = topology.ownerOf(accountNumber);
+        return node == null ? null : links[node.getIndex()];
+    }
+
+    /**
+     * Tài khoản theo số, không xác thực. Các thao tác theo số tài khoản dưới đây dùng trong tiến trình router
+     * (phía sau kiểm tra phiên, và cho công cụ kiểm tra); chúng không nằm trong giao diện RMI
+     */
+    public Account login(String accountNumber) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        return link == null ? null : link.participant(node -> node.account(accountNumber));
+    }
+
+    public boolean deposit(String accountNumber, long amount) throws RemoteException {
+        return deposit((String) null, accountNumber, amount);
+    }
+
+    public boolean withdraw(String accountNumber, long amount) throws RemoteException {
+        return withdraw((String) null, accountNumber, amount);
+    }
+
+    public boolean transfer(String fromAccount, String toAccount, long amount) throws RemoteException {
+        NodeLink source = linkFor(fromAccount);
+        NodeLink target = linkFor(toAccount);
+        if (source == null || target == null || amount <= 0) {
+            return false;
+        }
+        if (source == target) {
+            return source.participant(node -> node.transfer(null, fromAccount, toAccount, amount));
+        }
+        return coordinator.transfer(source, target, fromAccount, toAccount, amount);
+    }
+
+    public List<TransferResult> submitBatch(List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        NodeLink single = null;
+        boolean crossNode = false;
+        for (TransferInstruction instruction : instructions) {
+            for (String number : new String[] {instruction.getFromAccount(), instruction.getToAccount()}) {
+                NodeLink owner = linkFor(number);
+                if (owner == null) {
+                    continue;
+                }
+                crossNode |= single != null && owner != single;
+                single = owner;
+            }
+        }
+        if (single == null) {
+            List<TransferResult> results = new ArrayList<>(instructions.size());
+            for (int i = 0; i < instructions.size(); i++) {
+                results.add(new TransferResult(mode == BatchMode.ATOMIC && i > 0
+                        ? TransferResult.Status.ABORTED : TransferResult.Status.ACCOUNT_NOT_FOUND));
+            }
+            return results;
+        }
+        if (!crossNode) {
+            return single.participant(node -> node.submitBatch(null, instructions, mode));
+        }
+        if (mode == BatchMode.ATOMIC) {
+            throw new RemoteException("Batch ATOMIC trải trên nhiều node cluster không được hỗ trợ");
+        }
+
+        List<TransferResult> results = new ArrayList<>(instructions.size());
+        for (TransferInstruction instruction : instructions) {
+            String from = instruction.getFromAccount();
+            String to = instruction.getToAccount();
+            long amount = instruction.getAmount();
+            TransferResult.Status status;
+            if (linkFor(from) == null || linkFor(to) == null) {
+                status = TransferResult.Status.ACCOUNT_NOT_FOUND;
+            } else if (from.equals(to)) {
+                status = TransferResult.Status.SAME_ACCOUNT;
+            } else if (amount <= 0) {
+                status = TransferResult.Status.INVALID_AMOUNT;
+            } else if (transfer(from, to, amount)) {
+                status = TransferResult.Status.OK;
+            } else {
+                status = TransferResult.Status.INSUFFICIENT_FUNDS;
+            }
+            results.add(new TransferResult(status));
+        }
+        return results;
+    }
+
+    public boolean deposit(String requestId, String accountNumber, long amount) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        return link != null && link.participant(node -> node.deposit(requestId, accountNumber, amount));
+    }
+
+    public boolean withdraw(String requestId, String accountNumber, long amount) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        return link != null && link.participant(node -> node.withdraw(requestId, accountNumber, amount));
+    }
+
+    public boolean transfer(String requestId, String fromAccount, String toAccount, long amount)
+            throws RemoteException {
+        NodeLink source = linkFor(fromAccount);
+        if (source != null && source == linkFor(toAccount)) {
+            return source.participant(node -> node.transfer(requestId, fromAccount, toAccount, amount));
+        }
+        return dedup.execute(requestId, "transfer", fromAccount + ">" + toAccount + ":" + amount,
+                () -> transfer(fromAccount, toAccount, amount));
+    }
+
+    public List<TransferResult> submitBatch(String requestId, List<TransferInstruction> instructions,
+                                            BatchMode mode) throws RemoteException {
+        return dedup.execute(requestId, "batch", IdempotencyCache.batchPayload(instructions, mode),
+                () -> submitBatch(instructions, mode));
+    }
+
+    public HistoryPage getHistory(String accountNumber, long cursor, int limit) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        return link == null ? new HistoryPage(new ArrayList<>(), -1)
+                : link.participant(node -> node.getHistory(accountNumber, cursor, limit));
+    }
+
+    public void registerCallback(String accountNumber, ClientCallback callback) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        if (link != null) {
+            link.participant(node -> {
+                node.registerCallback(accountNumber, callback);
+                return null;
+            });
+        }
+    }
+
+    public void unregisterCallback(String accountNumber) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        if (link != null) {
+            link.participant(node -> {
+                node.unregisterCallback(accountNumber);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public Session authenticate(String accountNumber, String pin) throws RemoteException {
+        NodeLink link = linkFor(accountNumber);
+        if (link == null) {
+            return null;
+        }
+        Session nodeSession = link.bank(bank -> {
+            Session session = bank.authenticate(accountNumber, pin);
+            if (session != null) {
+                bank.logout(session.getToken());
+            }
+            return session;
+        });
+        return nodeSession == null ? null
+                : new Session(sessions.create(accountNumber), nodeSession.getAccount(), sessions.getTtlMs());
+    }
+
+    @Override
+    public void logout(SessionToken session) throws RemoteException {
+        sessions.invalidate(session);
+    }
+
+    @Override
+    public Account getAccount(SessionToken session) throws RemoteException {
+        return login(sessions.require(session));
+    }
+
+    @Override
+    public boolean deposit(SessionToken session, String requestId, long amount) throws RemoteException {
+        return deposit(requestId, sessions.require(session), amount);
+    }
+
+    @Override
+    public boolean withdraw(SessionToken session, String requestId, long amount) throws RemoteException {
+        return withdraw(requestId, sessions.require(session), amount);
+    }
+
+    @Override
+    public boolean transfer(SessionToken session, String requestId, String toAccount, long amount)
+            throws RemoteException {
+        return transfer(requestId, sessions.require(session), toAccount, amount);
+    }
+
+    @Override
+    public List<TransferResult> submitBatch(SessionToken session, String requestId,
+                                            List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        BankServiceImpl.requireSource(sessions.require(session), instructions);
+        return submitBatch(requestId, instructions, mode);
+    }
+
+    @Override
+    public HistoryPage getHistory(SessionToken session, long cursor, int limit) throws RemoteException {
+        return getHistory(sessions.require(session), cursor, limit);
+    }
+
+    @Override
+    public void registerCallback(SessionToken session, ClientCallback callback) throws RemoteException {
+        registerCallback(sessions.require(session), callback);
+    }
+
+    @Override
+    public void unregisterCallback(SessionToken session) throws RemoteException {
+        unregisterCallback(sessions.require(session));
+    }
+
+    public TwoPhaseCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    public void shutdown() {
+        coordinator.shutdown();
+        sessions.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        ClusterRouter router = new ClusterRouter(config);
+        Registry registry = LocateRegistry.createRegistry(config.getRegistryPort());
+        registry.rebind("BankService", router);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                registry.unbind("BankService");
+            } catch (Exception e) {
+                System.err.println("⚠️ Không gỡ được BankService khỏi registry: " + e.getMessage());
+            }
+            router.shutdown();
+            try {
+                UnicastRemoteObject.unexportObject(router, true);
+                UnicastRemoteObject.unexportObject(registry, true);
+            } catch (NoSuchObjectException e) {
+                // Đã unexport
+            }
+            System.out.println("✓ Router đã dừng");
+        }, "ebanking-router-shutdown"));
+        System.out.println("✓ Router cluster chạy trên cổng " + config.getRegistryPort());
+    }
+}
@@ -0,0 +1,116 @@
+package com.vku.ebanking.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Danh sách node của cluster và dải số tài khoản mỗi node sở hữu.
+ *
+ * Cú pháp (-Debanking.cluster.nodes): các node cách nhau dấu phẩy, mỗi node
+ * {@code host:cổng=sốĐầu..sốCuối}, ví dụ
+ * {@code localhost:1101=0000000000..0000004999,localhost:1102=0000005000..9999999999}.
+ * Số tài khoản có cùng độ dài nên so sánh chuỗi cũng là so sánh số; các dải không được chồng nhau.
+ */
+public final class ClusterTopology {
+    private final List<Node> nodes;
+
+    private ClusterTopology(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    public static ClusterTopology parse(String spec) {
+        List<Node> nodes = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String item = part.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int eq = item.indexOf('=');
+            int colon = item.lastIndexOf(':', eq);
+            int dots = item.indexOf("..", eq);
+            if (eq < 0 || colon < 0 || dots < 0) {
+                throw new IllegalArgumentException("Node cluster không hợp lệ: " + item);
+            }
+            nodes.add(new Node(nodes.size(), item.substring(0, colon),
+                    Integer.parseInt(item.substring(colon + 1, eq)),
+                    item.substring(eq + 1, dots), item.substring(dots + 2)));
+        }
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Cluster không có node nào");
+        }
+        List<Node> sorted = new ArrayList<>(nodes);
+        sorted.sort((a, b) -> a.firstAccount.compareTo(b.firstAccount));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).firstAccount.compareTo(sorted.get(i - 1).lastAccount) <= 0) {
+                throw new IllegalArgumentException("Dải tài khoản chồng nhau: " + sorted.get(i - 1)
+                        + " và " + sorted.get(i));
+            }
+        }
+        return new ClusterTopology(Collections.unmodifiableList(nodes));
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Node sở hữu tài khoản, null nếu số tài khoản nằm ngoài mọi dải
+     */
+    public Node ownerOf(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        for (Node node : nodes) {
+            if (node.owns(accountNumber)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Một node: địa chỉ RMI registry và dải tài khoản [firstAccount, lastAccount]
+     */
+    public static final class Node {
+        private final int index;
+        private final String host;
+        private final int port;
+        private final String firstAccount;
+        private final String lastAccount;
+
+        Node(int index, String host, int port, String firstAccount, String lastAccount) {
+            this.index = index;
+            this.host = host;
+            this.port = port;
+            this.firstAccount = firstAccount;
+            this.lastAccount = lastAccount;
+        }
+
+        public boolean owns(String accountNumber) {
+            return accountNumber.length() == firstAccount.length()
+                    && accountNumber.compareTo(firstAccount) >= 0 && accountNumber.compareTo(lastAccount) <= 0;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public String toString() {
+            return "node " + index + " (" + host + ":" + port + ", " + firstAccount + ".." + lastAccount + ")";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.vku.ebanking.server;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thống kê group commit: kích thước batch và độ trễ commit (từ lúc xếp hàng đến lúc bền vững)
+ */
+public class CommitMetrics {
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+    private final OperationStats commit = new OperationStats("commit");
+
+    void recordBatch(int size) {
+        batches.increment();
+        records.add(size);
+        maxBatchSize.accumulate(size);
+    }
+
+    void recordLatency(long nanos) {
+        totalLatencyNanos.add(nanos);
+        maxLatencyNanos.accumulate(nanos);
+        commit.record(nanos, true);
+    }
+
+    /**
+     * Phân bố độ trễ commit của từng bản ghi
+     */
+    public OperationStats getLatencyStats() {
+        return commit;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) records.sum() / count;
+    }
+
+    public double getAverageLatencyMicros() {
+        long count = records.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxLatencyMicros() {
+        return maxLatencyNanos.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("commit: %d batch, %d bản ghi, batch TB %.1f (max %d), độ trễ TB %.0fµs (max %.0fµs)",
+                getBatchCount(), getRecordCount(), getAverageBatchSize(), getMaxBatchSize(),
+                getAverageLatencyMicros(), getMaxLatencyMicros());
+    }
+}
@@ -0,0 +1,21 @@
+package com.vku.ebanking.server;
+
+/**
+ * Chế độ khóa khi xử lý giao dịch
+ */
+public enum ConcurrencyMode {
+    /** Một khóa chung cho cả ngân hàng (hành vi cũ) */
+    GLOBAL,
+    /** Khóa theo dải (stripe) tài khoản, giao dịch khác tài khoản chạy song song */
+    STRIPED,
+    /**
+     * Nạp/rút không khóa: số dư nằm trong mảng long cập nhật bằng CAS ({@link BalanceCells}),
+     * journal ghi biến động (delta). Chuyển khoản và batch vẫn khóa hai tài khoản theo thứ tự
+     */
+    CAS,
+    /**
+     * Tài khoản chia theo băm vào N shard, mỗi shard một luồng duy nhất áp dụng lệnh từ hàng đợi riêng
+     * và ghi journal riêng; chuyển khoản liên shard gồm hai bước trừ/cộng có hoàn tiền
+     */
+    SHARDED
+}
@@ -0,0 +1,100 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.Money;
+import org.w3c.dom.*;
+import javax.xml.parsers.*;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Đọc/ghi accounts.xml bằng DOM: dựng cả cây tài liệu trong bộ nhớ.
+ * Giữ lại để so sánh và tương thích; đường mặc định là {@link StaxAccountXmlFormat}.
+ */
+public class DomAccountXmlFormat implements AccountXmlFormat {
+    private final DocumentBuilder builder;
+    private final Transformer transformer;
+
+    public DomAccountXmlFormat() {
+        try {
+            // Khởi tạo DocumentBuilder để parse XML
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            builder = factory.newDocumentBuilder();
+
+            // Khởi tạo Transformer để ghi XML với format đẹp
+            TransformerFactory transformerFactory = TransformerFactory.newInstance();
+            transformer = transformerFactory.newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        } catch (Exception e) {
+            throw new IllegalStateException("Không khởi tạo được DOM parser", e);
+        }
+    }
+
+    @Override
+    public void read(File file, Consumer<Account> consumer) throws Exception {
+        // Parse XML file
+        Document doc = builder.parse(file);
+        doc.getDocumentElement().normalize();
+
+        // Lấy tất cả các node <account> và tạo object
+        NodeList nodeList = doc.getElementsByTagName("account");
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Element element = (Element) nodeList.item(i);
+
+            String accountNumber = getElementText(element, "accountNumber");
+            String accountName = getElementText(element, "accountName");
+            long balance = Money.parseLegacy(getElementText(element, "balance"));
+            String pin = getElementText(element, "pin");
+
+            consumer.accept(new Account(accountNumber, accountName, balance, pin));
+        }
+    }
+
+    @Override
+    public void write(List<Account> accounts, File file) throws Exception {
+        // Tạo Document mới với root element <accounts>
+        Document doc = builder.newDocument();
+        Element rootElement = doc.createElement("accounts");
+        doc.appendChild(rootElement);
+
+        // Tạo từng <account> element
+        for (Account account : accounts) {
+            Element accountElement = doc.createElement("account");
+
+            appendChild(doc, accountElement, "accountNumber", account.getAccountNumber());
+            appendChild(doc, accountElement, "accountName", account.getAccountName());
+            appendChild(doc, accountElement, "balance", Long.toString(account.getBalance()));
+            appendChild(doc, accountElement, "pin", account.getPin());
+
+            rootElement.appendChild(accountElement);
+        }
+
+        transformer.transform(new DOMSource(doc), new StreamResult(file));
+    }
+
+    /**
+     * Helper method: Lấy text content của một element con
+     */
+    private String getElementText(Element parent, String tagName) {
+        NodeList nodeList = parent.getElementsByTagName(tagName);
+        if (nodeList.getLength() > 0) {
+            return nodeList.item(0).getTextContent();
+        }
+        return "";
+    }
+
+    /**
+     * Helper method: Thêm một child element với text content
+     */
+    private void appendChild(Document doc, Element parent, String tagName, String textContent) {
+        Element element = doc.createElement(tagName);
+        element.setTextContent(textContent);
+        parent.appendChild(element);
+    }
+}
@@ -0,0 +1,46 @@
+package com.vku.ebanking.server;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Thay file bằng file tạm sao cho sau khi hàm trả về, cả nội dung lẫn việc đổi tên đều bền vững.
+ *
+ * Chỉ ATOMIC_MOVE thì chưa đủ: nội dung file tạm có thể vẫn nằm trong page cache, và bản ghi đổi tên
+ * nằm trong thư mục cha cũng chưa được ghi xuống đĩa. Sau crash có thể còn file cũ, hoặc một file
+ * mới rỗng. Vì vậy phải fsync file tạm trước khi đổi tên và fsync thư mục sau đó.
+ */
+final class DurableFiles {
+    private DurableFiles() {}
+
+    /**
+     * fsync {@code tmp}, đổi tên đè lên {@code target}, rồi fsync thư mục chứa {@code target}
+     */
+    static void replace(Path tmp, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * fsync thư mục để việc tạo, đổi tên, xóa file trong đó bền vững
+     */
+    static void forceDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Windows không mở được thư mục như file; NTFS tự ghi nhật ký metadata khi đổi tên
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.vku.ebanking.server;
+
+/**
+ * Cách server thực thi các lời gọi BankService đến từ RMI
+ */
+public enum ExecutionMode {
+    /** Chạy thẳng trên luồng kết nối của RMI */
+    DIRECT,
+    /**
+     * Chuyển sang luồng ảo, giới hạn số lời gọi đồng thời và xếp hàng công bằng.
+     * Luồng RMI vẫn chờ tới khi lời gọi xong nên không tiết kiệm luồng nền tảng
+     */
+    VIRTUAL
+}
@@ -0,0 +1,13 @@
+package com.vku.ebanking.server;
+
+/**
+ * Chính sách đẩy journal xuống đĩa (fsync)
+ */
+public enum FsyncPolicy {
+    /** force() sau mỗi bản ghi: an toàn nhất, chậm nhất */
+    ALWAYS,
+    /** force() định kỳ trên luồng nền; có thể mất các bản ghi trong khoảng chờ */
+    INTERVAL,
+    /** Không gọi force(), để hệ điều hành tự ghi */
+    NEVER
+}
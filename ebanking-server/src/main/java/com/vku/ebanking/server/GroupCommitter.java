@@ -0,0 +1,173 @@
+package com.vku.ebanking.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gom các giao dịch đồng thời thành batch trước khi ghi journal.
+ *
+ * Luồng commit lấy yêu cầu đầu tiên, chờ thêm tối đa {@code windowMicros}
+ * hoặc tới khi đủ {@code maxBatchSize}, rồi ghi cả batch bằng một lần write + một lần fsync.
+ * Mỗi giao dịch nhận lại một future, hoàn tất khi batch của nó đã bền vững.
+ */
+public class GroupCommitter {
+    private final TransactionJournal journal;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingCommit> queue = new LinkedBlockingQueue<>();
+    private final CommitMetrics metrics = new CommitMetrics();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile CommitListener listener;
+
+    /**
+     * Nhận các bản ghi vừa ghi xong, được gọi trên luồng commit theo đúng thứ tự seq
+     */
+    @FunctionalInterface
+    public interface CommitListener {
+        void committed(long firstSeq, List<List<JournalEntry>> records);
+    }
+
+    public GroupCommitter(TransactionJournal journal, long windowMicros, int maxBatchSize) {
+        this.journal = journal;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.worker = new Thread(this::run, "group-commit");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Xếp một bản ghi vào hàng đợi commit; future trả về seq khi đã ghi xong,
+     * hoặc lỗi nếu group commit đã dừng
+     */
+    public CompletableFuture<Long> submit(List<JournalEntry> entries) {
+        PendingCommit pending = new PendingCommit(entries);
+        if (!running) {
+            pending.future.completeExceptionally(stopped());
+            return pending.future;
+        }
+        // Bản ghi quá lớn chỉ làm hỏng giao dịch của chính nó, không kéo cả batch commit theo
+        try {
+            TransactionJournal.checkRecord(entries);
+        } catch (IOException e) {
+            pending.future.completeExceptionally(e);
+            return pending.future;
+        }
+        queue.add(pending);
+        // shutdown() có thể chen vào giữa lần kiểm tra trên và lúc xếp hàng: nếu đã dừng mà yêu cầu vẫn còn
+        // trong hàng đợi thì không ai ghi nó nữa, tự rút ra và báo lỗi. Nếu không rút được thì luồng commit
+        // hoặc shutdown() đã lấy nó và sẽ hoàn tất future
+        if (!running && queue.remove(pending)) {
+            pending.future.completeExceptionally(stopped());
+        }
+        return pending.future;
+    }
+
+    public void setListener(CommitListener listener) {
+        this.listener = listener;
+    }
+
+    public CommitMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Dừng luồng commit sau khi ghi hết các yêu cầu còn trong hàng đợi
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Yêu cầu đến sau khi luồng commit đã thoát thì báo lỗi thay vì treo
+        PendingCommit late;
+        while ((late = queue.poll()) != null) {
+            late.future.completeExceptionally(stopped());
+        }
+    }
+
+    private static IOException stopped() {
+        return new IOException("Group commit đã dừng");
+    }
+
+    private void run() {
+        List<PendingCommit> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCommit first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingCommit next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Không giữ cờ interrupt: FileChannel sẽ bị đóng nếu luồng bị ngắt khi đang ghi.
+                // Dừng nhận batch mới và ghi nốt phần còn trong hàng đợi
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingCommit> batch) {
+        List<List<JournalEntry>> records = new ArrayList<>(batch.size());
+        for (PendingCommit pending : batch) {
+            records.add(pending.entries);
+        }
+        try {
+            long lastSeq = journal.appendAll(records);
+            long firstSeq = lastSeq - batch.size() + 1;
+            CommitListener current = listener;
+            if (current != null) {
+                try {
+                    current.committed(firstSeq, records);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Lỗi trong listener commit: " + e.getMessage());
+                }
+            }
+            long now = System.nanoTime();
+            metrics.recordBatch(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                PendingCommit pending = batch.get(i);
+                metrics.recordLatency(now - pending.enqueuedAt);
+                pending.future.complete(firstSeq + i);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi ghi batch journal: " + e.getMessage());
+            for (PendingCommit pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class PendingCommit {
+        final List<JournalEntry> entries;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        PendingCommit(List<JournalEntry> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.BankService;
+
+import java.nio.file.Paths;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Khởi động server không cần JavaFX: nạp dữ liệu, mở RMI registry và chạy tới khi tiến trình bị dừng.
+ * Mặc định không ghi log từng giao dịch; -Debanking.headless.log=true ghi qua ActivityLog ra console và file log.
+ * Với -Debanking.replication.primary=host:cổng, tiến trình chạy làm follower và chỉ phục vụ sau khi được nâng lên
+ */
+public class HeadlessServer {
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        if (config.getClusterNode() >= 0) {
+            // Node cluster: cổng registry theo danh sách node, dữ liệu riêng trong node-i
+            ClusterTopology.Node node = config.getClusterTopology().getNode(config.getClusterNode());
+            config.setRegistryPort(node.getPort());
+            config.setJournalDir(Paths.get(config.getJournalDir(), "node-" + node.getIndex()).toString());
+            config.setSnapshotDir(Paths.get(config.getSnapshotDir(), "node-" + node.getIndex()).toString());
+            config.setHistoryDir(Paths.get(config.getHistoryDir(), "node-" + node.getIndex()).toString());
+        }
+        BankServiceImpl bankService;
+        boolean takeover = config.isReplicationFollower();
+        if (takeover) {
+            // Follower: nhận journal từ primary, chỉ bind BankService sau khi được nâng lên
+            ReplicationFollower follower = new ReplicationFollower(config);
+            bankService = follower.start();
+            System.out.println("📡 Chạy làm follower của " + config.getReplicationPrimary());
+            while (!follower.awaitPromotion(10, TimeUnit.SECONDS)) {
+                System.out.println("📡 " + follower);
+            }
+            follower.startPublishing();
+        } else {
+            bankService = new BankServiceImpl(config);
+        }
+        ActivityLog activityLog = null;
+        if (Boolean.getBoolean("ebanking.headless.log")) {
+            activityLog = new ActivityLog(config, lines -> lines.forEach(System.out::println));
+            bankService.addListener(activityLog::publish);
+        }
+
+        Registry registry = takeover ? takeOverRegistry(config.getRegistryPort())
+                : LocateRegistry.createRegistry(config.getRegistryPort());
+        BankService endpoint = VirtualThreadBankService.forConfig(bankService, config);
+        registry.rebind("BankService", endpoint);
+        ClusterParticipantService participant = null;
+        if (config.getClusterNode() >= 0) {
+            participant = new ClusterParticipantService(bankService);
+            registry.rebind("ClusterParticipant", participant);
+        }
+        ActivityLog log = activityLog;
+        ClusterParticipantService clusterParticipant = participant;
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> stop(registry, endpoint, clusterParticipant, bankService, log), "ebanking-shutdown"));
+
+        System.out.println("✓ Server (không giao diện) chạy trên cổng " + config.getRegistryPort()
+                + ", sẵn sàng sau " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Registry cho follower vừa được nâng lên: tạo mới nếu primary cũ đã chết cùng registry của nó,
+     * ngược lại dùng registry đang chạy trên máy (rebind sẽ thay BankService của primary cũ)
+     */
+    private static Registry takeOverRegistry(int port) throws RemoteException {
+        try {
+            return LocateRegistry.createRegistry(port);
+        } catch (ExportException e) {
+            return LocateRegistry.getRegistry(port);
+        }
+    }
+
+    private static void stop(Registry registry, BankService endpoint, ClusterParticipantService participant,
+                             BankServiceImpl bankService, ActivityLog activityLog) {
+        try {
+            registry.unbind("BankService");
+            if (participant != null) {
+                registry.unbind("ClusterParticipant");
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Không gỡ được BankService khỏi registry: " + e.getMessage());
+        }
+        if (endpoint instanceof VirtualThreadBankService virtualService) {
+            virtualService.shutdown();
+        }
+        bankService.shutdown();
+        try {
+            if (endpoint != bankService) {
+                UnicastRemoteObject.unexportObject(endpoint, true);
+            }
+            UnicastRemoteObject.unexportObject(bankService, true);
+            if (participant != null) {
+                UnicastRemoteObject.unexportObject(participant, true);
+            }
+            UnicastRemoteObject.unexportObject(registry, true);
+        } catch (NoSuchObjectException e) {
+            // Đã unexport
+        }
+        if (activityLog != null) {
+            activityLog.close();
+        }
+        System.out.println("✓ Server đã dừng");
+    }
+}
@@ -0,0 +1,84 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kho tài khoản dạng đối tượng: tra cứu O(1) qua HashMap ra vị trí (slot) trong danh sách theo thứ tự nạp.
+ * {@link #find(String)} trả về chính đối tượng Account trong kho
+ */
+public class HeapAccountStore implements AccountStore {
+    private final Map<String, Integer> index;
+    private final List<Account> accounts;
+
+    public HeapAccountStore(List<Account> initialAccounts) {
+        // Cấp phát sẵn dung lượng để tránh rehash khi nạp nhiều tài khoản
+        int capacity = Math.max(16, (int) (initialAccounts.size() / 0.75f) + 1);
+        this.index = new HashMap<>(capacity);
+        this.accounts = new ArrayList<>(initialAccounts.size());
+        for (Account account : initialAccounts) {
+            add(account);
+        }
+    }
+
+    /**
+     * Thêm tài khoản mới, bỏ qua nếu số tài khoản đã tồn tại
+     */
+    public boolean add(Account account) {
+        if (index.putIfAbsent(account.getAccountNumber(), accounts.size()) != null) {
+            return false;
+        }
+        accounts.add(account);
+        return true;
+    }
+
+    @Override
+    public Account find(String accountNumber) {
+        int slot = slotOf(accountNumber);
+        return slot < 0 ? null : accounts.get(slot);
+    }
+
+    @Override
+    public int slotOf(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        Integer slot = index.get(accountNumber);
+        return slot == null ? -1 : slot;
+    }
+
+    @Override
+    public Account get(int slot) {
+        return accounts.get(slot);
+    }
+
+    @Override
+    public String accountNumber(int slot) {
+        return accounts.get(slot).getAccountNumber();
+    }
+
+    @Override
+    public long balance(int slot) {
+        return accounts.get(slot).getBalance();
+    }
+
+    @Override
+    public void setBalance(int slot, long balance) {
+        accounts.get(slot).setBalance(balance);
+    }
+
+    @Override
+    public int size() {
+        return accounts.size();
+    }
+
+    @Override
+    public List<Account> asList() {
+        return Collections.unmodifiableList(accounts);
+    }
+}
@@ -0,0 +1,617 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.TransactionEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Lịch sử giao dịch theo tài khoản: file chỉ ghi nối, chia segment {@code history-<n>.dat}.
+ *
+ * Mỗi dòng mang offset của dòng trước đó cùng tài khoản, nên các dòng của một tài khoản tạo thành
+ * danh sách liên kết ngược; chỉ mục {@code heads.idx} giữ offset dòng mới nhất của từng tài khoản.
+ * Lấy N giao dịch gần nhất là N lần đọc ngẫu nhiên, không phụ thuộc tổng số dòng.
+ *
+ * Offset = (số segment << 32) | vị trí trong segment. Dòng:
+ * {@code [độ dài][crc][prev][seq][thời điểm][loại][số tiền][số dư sau][tài khoản][đối tác]}.
+ *
+ * Lịch sử được ghi sau khi giao dịch đã commit và được đẩy xuống đĩa theo chu kỳ:
+ * dừng đột ngột có thể mất vài dòng cuối (số dư thì không, số dư nằm trong journal).
+ * Chỉ mục được lưu định kỳ cùng offset mà nó bao phủ; khi mở, phần sau offset đó được quét lại.
+ *
+ * {@link #append} chỉ xếp dòng vào hàng đợi có giới hạn; một luồng ghi riêng mã hóa và ghi file,
+ * nên luồng giao dịch (kể cả khi đang giữ khóa tài khoản) không tranh một khóa chung và không chờ I/O.
+ * Hàng đợi đầy thì append chờ tới khi luồng ghi rút bớt. Đọc trang chờ các dòng đã xếp trước đó được ghi.
+ * Không fsync nào chạy khi đang giữ khóa của luồng ghi.
+ */
+public class HistoryStore implements Closeable {
+    private static final int MAGIC = 0x45424853; // "EBHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ROW_HEADER_SIZE = 8;
+    private static final int MAX_ROW = 1024;
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_FILE = "heads.idx";
+    private static final TransactionEvent.Type[] TYPES = TransactionEvent.Type.values();
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    public static final int MAX_PAGE = 1000;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Map<String, Long> heads = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+    // Mở file đọc dưới ReentrantLock chứ không synchronized, để luồng ảo đọc lịch sử không ghim carrier
+    private final ReentrantLock readersLock = new ReentrantLock();
+    private final ScheduledExecutorService indexer;
+    private final BlockingQueue<PendingRow> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // Giữ khi luồng ghi động vào buffer/file; đọc trang lấy khóa này để đẩy buffer trước khi đọc
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Condition written = writeLock.newCondition();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    // Segment vừa bị thay, chờ fsync + đóng ngoài writeLock
+    private FileChannel retired;
+    private int segment;
+    // Vị trí trong segment hiện tại: đã ghi xuống file / gồm cả phần còn trong buffer
+    private long flushedPosition;
+    private long position;
+    private volatile long rows;
+    private volatile boolean running = true;
+
+    public HistoryStore(Path directory, long segmentBytes, long indexIntervalMs) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        Files.createDirectories(directory);
+        long indexed = loadIndex();
+        recover(indexed);
+
+        this.writer = new Thread(this::run, "history-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "history-index");
+            t.setDaemon(true);
+            return t;
+        });
+        indexer.scheduleWithFixedDelay(this::saveIndexQuietly, indexIntervalMs, indexIntervalMs,
+                TimeUnit.MILLISECONDS);
+        System.out.println("📜 Lịch sử giao dịch tại " + directory + ": " + heads.size() + " tài khoản, segment "
+                + segment);
+    }
+
+    public static HistoryStore forConfig(ServerConfig config) throws IOException {
+        return new HistoryStore(Path.of(config.getHistoryDir()), config.getHistorySegmentBytes(),
+                config.getHistoryIndexIntervalMs());
+    }
+
+    private static long offset(int segment, long position) {
+        return ((long) segment << 32) | position;
+    }
+
+    /**
+     * Xếp một giao dịch của tài khoản cho luồng ghi; chỉ chờ khi hàng đợi đầy
+     */
+    public void append(String accountNumber, TransactionEvent event) throws IOException {
+        if (!running) {
+            throw new IOException("Lịch sử giao dịch đã đóng");
+        }
+        try {
+            pending.put(new PendingRow(accountNumber, event));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi chờ hàng đợi lịch sử");
+        }
+        enqueued.incrementAndGet();
+    }
+
+    /**
+     * Luồng ghi: rút hàng đợi theo lô, ghi vào buffer và đẩy buffer xuống file mỗi 200 ms hoặc khi đầy
+     */
+    private void run() {
+        List<PendingRow> batch = new ArrayList<>(1024);
+        long lastFlush = System.nanoTime();
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingRow first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, 1023);
+                }
+            } catch (InterruptedException e) {
+                // Không giữ cờ interrupt: FileChannel sẽ bị đóng nếu luồng bị ngắt khi đang ghi
+                running = false;
+            }
+            boolean flushDue = System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS;
+            if (batch.isEmpty() && !flushDue) {
+                continue;
+            }
+            writeLock.lock();
+            try {
+                for (PendingRow row : batch) {
+                    try {
+                        writeRow(row.accountNumber, row.event);
+                    } catch (IOException e) {
+                        System.err.println("❌ Lỗi ghi lịch sử " + row.accountNumber + ": " + e.getMessage());
+                    }
+                }
+                if (flushDue) {
+                    flushBuffer();
+                    lastFlush = System.nanoTime();
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi ghi lịch sử giao dịch: " + e.getMessage());
+            } finally {
+                rows += batch.size();
+                written.signalAll();
+                writeLock.unlock();
+            }
+            batch.clear();
+            retire();
+        }
+    }
+
+    /**
+     * Fsync và đóng segment cũ sau lần chuyển segment, ngoài writeLock
+     */
+    private void retire() {
+        FileChannel old;
+        writeLock.lock();
+        try {
+            old = retired;
+            retired = null;
+        } finally {
+            writeLock.unlock();
+        }
+        if (old == null) {
+            return;
+        }
+        try (old) {
+            old.force(false);
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi đóng segment lịch sử: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mã hóa một dòng vào buffer; chỉ luồng ghi gọi, khi đang giữ writeLock
+     */
+    private void writeRow(String accountNumber, TransactionEvent event) throws IOException {
+        byte[] number = accountNumber.getBytes(StandardCharsets.UTF_8);
+        byte[] counterparty = event.getCounterparty() == null ? new byte[0]
+                : event.getCounterparty().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 8 * 3 + 1 + 8 * 2 + 2 + number.length + 2 + counterparty.length;
+        int rowLength = ROW_HEADER_SIZE + bodyLength;
+        if (rowLength > MAX_ROW) {
+            throw new IOException("Dòng lịch sử quá dài cho tài khoản " + accountNumber);
+        }
+        if (position + rowLength > segmentBytes) {
+            flushBuffer();
+            openSegment(segment + 1);
+        }
+        if (buffer.remaining() < rowLength) {
+            flushBuffer();
+        }
+        long prev = heads.getOrDefault(accountNumber, -1L);
+        int start = buffer.position();
+        buffer.position(start + ROW_HEADER_SIZE);
+        buffer.putLong(prev);
+        buffer.putLong(event.getSequence());
+        buffer.putLong(event.getTimestamp());
+        buffer.put((byte) event.getType().ordinal());
+        buffer.putLong(event.getAmount());
+        buffer.putLong(event.getBalanceAfter());
+        buffer.putShort((short) number.length);
+        buffer.put(number);
+        buffer.putShort((short) counterparty.length);
+        buffer.put(counterparty);
+        crc.reset();
+        crc.update(buffer.array(), start + ROW_HEADER_SIZE, bodyLength);
+        buffer.putInt(start, bodyLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        heads.put(accountNumber, offset(segment, position));
+        position += rowLength;
+    }
+
+    /**
+     * Chờ luồng ghi xử lý xong mọi dòng đã xếp trước lúc gọi; gọi khi đang giữ writeLock
+     */
+    private void awaitWritten() throws IOException {
+        long target = enqueued.get();
+        try {
+            while (rows < target && writer.isAlive()) {
+                written.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi chờ ghi lịch sử");
+        }
+    }
+
+    /**
+     * Trang lịch sử mới nhất trước; cursor 0 = bắt đầu từ giao dịch mới nhất
+     */
+    public HistoryPage page(String accountNumber, long cursor, int limit) throws IOException {
+        if (rows < enqueued.get()) {
+            writeLock.lock();
+            try {
+                awaitWritten();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE));
+        long next = cursor > 0 ? cursor : heads.getOrDefault(accountNumber, -1L);
+        List<TransactionEvent> events = new ArrayList<>(Math.min(pageSize, 64));
+        ByteBuffer row = ByteBuffer.allocate(MAX_ROW);
+        while (next >= 0 && events.size() < pageSize) {
+            readRow(next, row);
+            long prev = row.getLong();
+            long seq = row.getLong();
+            long timestamp = row.getLong();
+            TransactionEvent.Type type = TYPES[row.get()];
+            long amount = row.getLong();
+            long balanceAfter = row.getLong();
+            String number = readString(row);
+            String counterparty = readString(row);
+            if (!number.equals(accountNumber)) {
+                throw new IOException("Cursor lịch sử không thuộc tài khoản " + accountNumber);
+            }
+            events.add(new TransactionEvent(type, amount, counterparty.isEmpty() ? null : counterparty,
+                    balanceAfter, seq, timestamp));
+            next = prev;
+        }
+        return new HistoryPage(events, next);
+    }
+
+    private static String readString(ByteBuffer row) {
+        int length = row.getShort();
+        String value = new String(row.array(), row.position(), length, StandardCharsets.UTF_8);
+        row.position(row.position() + length);
+        return value;
+    }
+
+    /**
+     * Đọc dòng tại offset vào {@code row} (vị trí đặt ở đầu phần thân), kiểm tra CRC
+     */
+    private void readRow(long offset, ByteBuffer row) throws IOException {
+        int rowSegment = (int) (offset >>> 32);
+        long rowPosition = offset & 0xFFFFFFFFL;
+        writeLock.lock();
+        try {
+            if (rowSegment == segment && rowPosition >= flushedPosition) {
+                flushBuffer();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        FileChannel reader = reader(rowSegment);
+        row.clear();
+        // Đọc một lần đủ cho dòng thường gặp; dòng dài hơn thì đọc tiếp phần còn lại
+        long end = Math.min(reader.size(), rowPosition + row.capacity());
+        row.limit((int) (end - rowPosition));
+        while (row.hasRemaining()) {
+            if (reader.read(row, rowPosition + row.position()) < 0) {
+                break;
+            }
+        }
+        row.flip();
+        if (row.remaining() < ROW_HEADER_SIZE) {
+            throw new IOException("Offset lịch sử không hợp lệ: " + offset);
+        }
+        int bodyLength = row.getInt();
+        int checksum = row.getInt();
+        if (bodyLength <= 0 || bodyLength > row.remaining()) {
+            throw new IOException("Offset lịch sử không hợp lệ: " + offset);
+        }
+        CRC32C check = new CRC32C();
+        check.update(row.array(), ROW_HEADER_SIZE, bodyLength);
+        if ((int) check.getValue() != checksum) {
+            throw new IOException("Dòng lịch sử hỏng tại offset " + offset);
+        }
+    }
+
+    private FileChannel reader(int rowSegment) throws IOException {
+        FileChannel reader = readers.get(rowSegment);
+        if (reader == null) {
+            readersLock.lock();
+            try {
+                reader = readers.get(rowSegment);
+                if (reader == null) {
+                    reader = FileChannel.open(segmentPath(rowSegment), StandardOpenOption.READ);
+                    readers.put(rowSegment, reader);
+                }
+            } finally {
+                readersLock.unlock();
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Ghi mọi dòng đã xếp xuống file (chưa fsync)
+     */
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            awaitWritten();
+            flushBuffer();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        flushedPosition = position;
+    }
+
+    /**
+     * Mở segment mới; segment cũ được fsync và đóng sau khi luồng ghi nhả writeLock ({@link #retire})
+     */
+    private void openSegment(int index) throws IOException {
+        if (channel != null) {
+            retired = channel;
+        }
+        FileChannel newChannel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        newChannel.write(header, 0);
+        newChannel.truncate(HEADER_SIZE);
+        newChannel.position(HEADER_SIZE);
+        channel = newChannel;
+        segment = index;
+        position = HEADER_SIZE;
+        flushedPosition = HEADER_SIZE;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted().toList();
+        }
+    }
+
+    /**
+     * Nạp chỉ mục đầu danh sách; trả về offset mà chỉ mục đã bao phủ (0 nếu chưa có)
+     */
+    private long loadIndex() {
+        Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Sai định dạng");
+            }
+            long indexed = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                heads.put(in.readUTF(), in.readLong());
+            }
+            return indexed;
+        } catch (IOException e) {
+            System.err.println("⚠️ Chỉ mục lịch sử hỏng, dựng lại từ các segment: " + e.getMessage());
+            heads.clear();
+            return 0;
+        }
+    }
+
+    /**
+     * Quét các dòng sau offset đã có trong chỉ mục để cập nhật đầu danh sách, cắt dòng ghi dở ở cuối
+     */
+    private void recover(long indexed) throws IOException {
+        List<Integer> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(0);
+            return;
+        }
+        int fromSegment = (int) (indexed >>> 32);
+        long fromPosition = indexed == 0 ? HEADER_SIZE : indexed & 0xFFFFFFFFL;
+        int scanned = 0;
+        for (int index : segments) {
+            if (index < fromSegment) {
+                continue;
+            }
+            long start = index == fromSegment ? fromPosition : HEADER_SIZE;
+            long end = scanSegment(index, start);
+            scanned++;
+            if (index == segments.get(segments.size() - 1)) {
+                channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                if (end < channel.size()) {
+                    System.out.println("⚠️ Lịch sử có " + (channel.size() - end) + " byte ghi dở ở cuối, đang cắt bỏ");
+                    channel.truncate(end);
+                }
+                channel.position(end);
+                segment = index;
+                position = end;
+                flushedPosition = end;
+            }
+        }
+        if (scanned > 1 || indexed == 0) {
+            System.out.println("📜 Đã quét lại " + scanned + " segment lịch sử");
+        }
+    }
+
+    /**
+     * Đọc tuần tự các dòng hợp lệ từ {@code start}; trả về vị trí sau dòng hợp lệ cuối cùng
+     */
+    private long scanSegment(int index, long start) throws IOException {
+        Path path = segmentPath(index);
+        long position = start;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 256 * 1024))) {
+            in.skipNBytes(start);
+            byte[] body = new byte[MAX_ROW];
+            CRC32C check = new CRC32C();
+            while (true) {
+                int bodyLength;
+                int checksum;
+                try {
+                    bodyLength = in.readInt();
+                    checksum = in.readInt();
+                    if (bodyLength <= 0 || bodyLength > MAX_ROW - ROW_HEADER_SIZE) {
+                        break;
+                    }
+                    in.readFully(body, 0, bodyLength);
+                } catch (IOException e) {
+                    break;
+                }
+                check.reset();
+                check.update(body, 0, bodyLength);
+                if ((int) check.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer row = ByteBuffer.wrap(body, 0, bodyLength);
+                row.position(8 * 3 + 1 + 8 * 2);
+                heads.put(readString(row), offset(index, position));
+                position += ROW_HEADER_SIZE + bodyLength;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Ghi chỉ mục đầu danh sách (file tạm rồi đổi tên) sau khi dữ liệu nó trỏ tới đã xuống đĩa.
+     * Chỉ chụp chỉ mục dưới writeLock; fsync chạy sau khi nhả khóa
+     */
+    public void saveIndex() throws IOException {
+        Map<String, Long> copy;
+        long indexed;
+        FileChannel current;
+        FileChannel old;
+        writeLock.lock();
+        try {
+            flushBuffer();
+            copy = Map.copyOf(heads);
+            indexed = offset(segment, position);
+            current = channel;
+            old = retired;
+        } finally {
+            writeLock.unlock();
+        }
+        force(old);
+        force(current);
+        Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 256 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexed);
+            out.writeInt(copy.size());
+            for (Map.Entry<String, Long> head : copy.entrySet()) {
+                out.writeUTF(head.getKey());
+                out.writeLong(head.getValue());
+            }
+        }
+        DurableFiles.replace(tmp, directory.resolve(INDEX_FILE));
+    }
+
+    private static void force(FileChannel segmentChannel) throws IOException {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            segmentChannel.force(false);
+        } catch (ClosedChannelException e) {
+            // Segment đã được retire() fsync trước khi đóng
+        }
+    }
+
+    private void saveIndexQuietly() {
+        try {
+            saveIndex();
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi lưu chỉ mục lịch sử: " + e.getMessage());
+        }
+    }
+
+    public long getRowsAppended() {
+        return rows;
+    }
+
+    /**
+     * Ghi nốt hàng đợi, lưu chỉ mục rồi đóng file
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        indexer.shutdown();
+        try {
+            writer.join(5000);
+            indexer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveIndex();
+        retire();
+        writeLock.lock();
+        try {
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+        for (FileChannel reader : readers.values()) {
+            reader.close();
+        }
+    }
+
+    private static final class PendingRow {
+        final String accountNumber;
+        final TransactionEvent event;
+
+        PendingRow(String accountNumber, TransactionEvent event) {
+            this.accountNumber = accountNumber;
+            this.event = event;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Lịch sử: " + getRowsAppended() + " dòng mới, " + heads.size() + " tài khoản";
+    }
+}
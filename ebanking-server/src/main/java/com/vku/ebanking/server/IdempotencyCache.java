@@ -0,0 +1,204 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ nhớ kết quả theo mã yêu cầu để thao tác gửi lại không bị thực hiện hai lần.
+ *
+ * Chia thành nhiều phần theo băm của mã, mỗi phần là một LinkedHashMap theo thứ tự thêm vào
+ * dưới khóa riêng, nên tra cứu là O(1) và số mục tối đa cố định ({@code ebanking.dedup.capacity}).
+ * Mục quá {@code ebanking.dedup.ttlMs} coi như không còn và được dọn từ đầu danh sách (mục cũ nhất).
+ * Mục chưa hết hạn không bao giờ bị đẩy ra, vì client có thể còn gửi lại mã đó: một phần đầy thì mã mới
+ * bị từ chối (RemoteException, thao tác không chạy) cho tới khi mục cũ hết hạn. Vì vậy capacity cần ít nhất
+ * bằng số yêu cầu có mã mỗi giây × ttl. Lời gọi trùng mã khi lời gọi đầu còn đang chạy
+ * sẽ chờ và nhận cùng kết quả; lời gọi đầu lỗi thì mã bị quên để client có thể gửi lại.
+ * Mỗi mục nhớ cả loại thao tác và tham số (tài khoản, số tiền...): gửi lại cùng mã với tham số khác
+ * bị từ chối thay vì nhận kết quả của thao tác kia.
+ * Bộ nhớ chỉ nằm trong tiến trình: sau khi khởi động lại, mã cũ không còn được nhận ra.
+ */
+public class IdempotencyCache {
+    private static final int SHARDS = 64;
+    // Mỗi lần ghi dọn tối đa chừng này mục hết hạn ở đầu danh sách
+    private static final int EXPIRE_PER_PUT = 8;
+
+    /**
+     * Thao tác cần chống lặp
+     */
+    @FunctionalInterface
+    public interface Operation<T> {
+        T run() throws RemoteException;
+    }
+
+    private final Segment[] segments = new Segment[SHARDS];
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+
+    public IdempotencyCache(int capacity, long ttlMs) {
+        int perSegment = Math.max(1, capacity / SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.ttlNanos = ttlMs * 1_000_000L;
+    }
+
+    public static IdempotencyCache forConfig(ServerConfig config) {
+        return new IdempotencyCache(config.getDedupCapacity(), config.getDedupTtlMs());
+    }
+
+    /**
+     * Chạy {@code operation} nếu {@code requestId} chưa gặp (hoặc null), ngược lại trả kết quả đã lưu.
+     * {@code kind} và {@code payload} (tham số của thao tác) phải khớp với lần đầu dùng mã, nếu không bị từ chối
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String requestId, String kind, String payload, Operation<T> operation)
+            throws RemoteException {
+        if (requestId == null) {
+            return operation.run();
+        }
+        Segment segment = segments[(requestId.hashCode() * 0x9E3779B9 >>> 16) & (SHARDS - 1)];
+        Entry mine = new Entry(kind, payload, System.nanoTime());
+        Entry existing = segment.putIfAbsent(requestId, mine, ttlNanos);
+        if (existing != null) {
+            if (!existing.kind.equals(kind)) {
+                throw new RemoteException("Mã yêu cầu " + requestId + " đã dùng cho thao tác " + existing.kind);
+            }
+            if (!existing.payload.equals(payload)) {
+                throw new RemoteException("Mã yêu cầu " + requestId + " đã dùng cho thao tác " + kind
+                        + " với tài khoản hoặc số tiền khác");
+            }
+            hits.increment();
+            return (T) await(existing);
+        }
+        misses.increment();
+        try {
+            T result = operation.run();
+            mine.result.complete(result);
+            return result;
+        } catch (RemoteException | RuntimeException e) {
+            segment.remove(requestId, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Object await(Entry entry) throws RemoteException {
+        if (!entry.result.isDone()) {
+            waits.increment();
+        }
+        try {
+            return entry.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException remote) {
+                throw remote;
+            }
+            throw new RemoteException("Lời gọi gốc cùng mã yêu cầu thất bại", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Bị ngắt khi chờ lời gọi cùng mã yêu cầu", e);
+        }
+    }
+
+    /**
+     * Tham số của một batch để so khớp khi gửi lại cùng mã
+     */
+    static String batchPayload(List<TransferInstruction> instructions, BatchMode mode) {
+        StringBuilder payload = new StringBuilder(String.valueOf(mode));
+        for (TransferInstruction instruction : instructions) {
+            payload.append('|').append(instruction.getFromAccount()).append('>').append(instruction.getToAccount())
+                    .append(':').append(instruction.getAmount());
+        }
+        return payload.toString();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Chống lặp: " + size() + " mã, " + hits.sum() + " lần trùng (" + waits.sum()
+                + " phải chờ lời gọi gốc), " + misses.sum() + " mã mới";
+    }
+
+    private static final class Entry {
+        final String kind;
+        final String payload;
+        final long createdAt;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String kind, String payload, long createdAt) {
+            this.kind = kind;
+            this.payload = payload;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Một phần của bộ nhớ theo thứ tự thêm vào: đầu danh sách luôn là mục cũ nhất, chỉ mục đã xong
+     * và hết hạn mới bị dọn
+     */
+    private static final class Segment {
+        private final LinkedHashMap<String, Entry> map;
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(capacity * 4 / 3 + 1);
+            this.capacity = capacity;
+        }
+
+        synchronized Entry putIfAbsent(String requestId, Entry entry, long ttlNanos) throws RemoteException {
+            long now = entry.createdAt;
+            Entry existing = map.get(requestId);
+            if (existing != null) {
+                if (now - existing.createdAt < ttlNanos || !existing.result.isDone()) {
+                    return existing;
+                }
+                // Hết hạn: thêm lại ở cuối để thứ tự danh sách vẫn theo thời điểm tạo
+                map.remove(requestId);
+            }
+            // Bình thường chỉ dọn vài mục mỗi lần; khi đầy thì dọn hết phần hết hạn ở đầu
+            // (mỗi mục chỉ bị dọn một lần nên chi phí trung bình vẫn O(1))
+            int limit = map.size() >= capacity ? Integer.MAX_VALUE : EXPIRE_PER_PUT;
+            Iterator<Entry> oldest = map.values().iterator();
+            for (int i = 0; i < limit && oldest.hasNext(); i++) {
+                Entry candidate = oldest.next();
+                if (now - candidate.createdAt < ttlNanos || !candidate.result.isDone()) {
+                    break;
+                }
+                oldest.remove();
+            }
+            if (map.size() >= capacity) {
+                throw new RemoteException("Máy chủ đang nhớ quá nhiều mã yêu cầu, vui lòng thử lại sau");
+            }
+            map.put(requestId, entry);
+            return null;
+        }
+
+        synchronized void remove(String requestId, Entry entry) {
+            map.remove(requestId, entry);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
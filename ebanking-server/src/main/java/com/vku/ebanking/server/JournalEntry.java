@@ -0,0 +1,96 @@
+package com.vku.ebanking.server;
+
+/**
+ * Một thay đổi số dư trong bản ghi journal.
+ *
+ * Mặc định là số dư mới (tuyệt đối) của tài khoản: phát lại nhiều lần vẫn cho cùng kết quả.
+ * Ở chế độ CAS, thứ tự cập nhật trong bộ nhớ không trùng thứ tự ghi journal nên entry là
+ * chênh lệch (delta); các delta cộng giao hoán nên phát lại theo thứ tự nào cũng ra cùng số dư.
+ * Entry có thể là một chặng của chuyển khoản liên shard hoặc liên node ({@link TransferLeg})
+ * kèm mã chuyển khoản và số tiền, để khi khôi phục ghép được phần trừ tiền với phần cộng tiền.
+ */
+public final class JournalEntry {
+    private final String accountNumber;
+    private final long balance;
+    private final boolean delta;
+    private final TransferLeg leg;
+    private final long transferId;
+    private final long amount;
+
+    public JournalEntry(String accountNumber, long balance) {
+        this(accountNumber, balance, false, null, 0, 0);
+    }
+
+    private JournalEntry(String accountNumber, long value, boolean delta, TransferLeg leg, long transferId,
+                         long amount) {
+        this.accountNumber = accountNumber;
+        this.balance = value;
+        this.delta = delta;
+        this.leg = leg;
+        this.transferId = transferId;
+        this.amount = amount;
+    }
+
+    /**
+     * Entry cộng {@code amount} (âm khi trừ tiền) vào số dư hiện có
+     */
+    public static JournalEntry delta(String accountNumber, long amount) {
+        return new JournalEntry(accountNumber, amount, true, null, 0, 0);
+    }
+
+    /**
+     * Entry delta thuộc chuyển khoản liên shard {@code transferId}
+     */
+    public static JournalEntry leg(String accountNumber, long amount, TransferLeg leg, long transferId) {
+        return new JournalEntry(accountNumber, amount, true, leg, transferId, Math.abs(amount));
+    }
+
+    /**
+     * Entry số dư tuyệt đối thuộc chuyển khoản liên node {@code transferId}, dùng ở các chế độ khóa
+     * nơi journal phải phát lại chồng lên được
+     */
+    public static JournalEntry legBalance(String accountNumber, long balance, long amount, TransferLeg leg,
+                                          long transferId) {
+        return new JournalEntry(accountNumber, balance, false, leg, transferId, amount);
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    /**
+     * Số dư mới, hoặc số tiền chênh lệch nếu {@link #isDelta()}
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Chặng chuyển khoản liên shard, null với entry thường
+     */
+    public TransferLeg getLeg() {
+        return leg;
+    }
+
+    public long getTransferId() {
+        return transferId;
+    }
+
+    /**
+     * Số tiền (dương) của chặng chuyển khoản; 0 với entry thường
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Số dư sau khi áp entry lên {@code current}
+     */
+    public long applyTo(long current) {
+        return delta ? current + balance : balance;
+    }
+}
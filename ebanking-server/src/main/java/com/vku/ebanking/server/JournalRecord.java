@@ -0,0 +1,37 @@
+package com.vku.ebanking.server;
+
+import java.util.List;
+
+/**
+ * Một bản ghi journal: các entry của cùng một giao dịch, được ghi và phát lại cùng nhau
+ */
+public final class JournalRecord {
+    private final long seq;
+    private final List<JournalEntry> entries;
+    private final int encodedLength;
+
+    public JournalRecord(long seq, List<JournalEntry> entries) {
+        this(seq, entries, 0);
+    }
+
+    JournalRecord(long seq, List<JournalEntry> entries, int encodedLength) {
+        this.seq = seq;
+        this.entries = entries;
+        this.encodedLength = encodedLength;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public List<JournalEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Độ dài payload trên đĩa (0 nếu bản ghi không được đọc từ file)
+     */
+    int getEncodedLength() {
+        return encodedLength;
+    }
+}
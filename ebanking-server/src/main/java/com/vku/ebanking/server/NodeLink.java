@@ -0,0 +1,70 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.BankService;
+
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+
+/**
+ * Kết nối của router tới một node cluster: tra stub trong registry của node khi cần
+ * và bỏ stub sau lỗi RMI để lần gọi sau tra lại (node có thể đã khởi động lại)
+ */
+final class NodeLink {
+    /**
+     * Lời gọi tới một stub có thể ném RemoteException
+     */
+    @FunctionalInterface
+    interface RemoteCall<S, T> {
+        T call(S stub) throws RemoteException;
+    }
+
+    private final ClusterTopology.Node node;
+    private volatile BankService bank;
+    private volatile ClusterParticipant participant;
+
+    NodeLink(ClusterTopology.Node node) {
+        this.node = node;
+    }
+
+    ClusterTopology.Node getNode() {
+        return node;
+    }
+
+    <T> T bank(RemoteCall<BankService, T> call) throws RemoteException {
+        BankService stub = bank;
+        if (stub == null) {
+            stub = lookup("BankService", BankService.class);
+            bank = stub;
+        }
+        try {
+            return call.call(stub);
+        } catch (RemoteException e) {
+            bank = null;
+            throw e;
+        }
+    }
+
+    <T> T participant(RemoteCall<ClusterParticipant, T> call) throws RemoteException {
+        ClusterParticipant stub = participant;
+        if (stub == null) {
+            stub = lookup("ClusterParticipant", ClusterParticipant.class);
+            participant = stub;
+        }
+        try {
+            return call.call(stub);
+        } catch (RemoteException e) {
+            participant = null;
+            throw e;
+        }
+    }
+
+    private <S extends Remote> S lookup(String name, Class<S> type) throws RemoteException {
+        try {
+            return type.cast(LocateRegistry.getRegistry(node.getHost(), node.getPort()).lookup(name));
+        } catch (NotBoundException e) {
+            throw new RemoteException(name + " chưa được bind trên " + node, e);
+        }
+    }
+}
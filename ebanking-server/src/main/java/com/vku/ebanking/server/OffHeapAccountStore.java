@@ -0,0 +1,208 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kho tài khoản ngoài heap: không có đối tượng nào cho từng tài khoản, GC không phải duyệt hàng triệu
+ * Account/String/HashMap.Node.
+ *
+ * Mỗi slot là một bản ghi 16 byte trong direct ByteBuffer {@code records}:
+ * {@code [số dư long][offset dữ liệu int][độ dài tên short][độ dài số TK byte][độ dài PIN byte]};
+ * số tài khoản (ASCII), tên và PIN đã băm (UTF-8) nằm liền nhau trong direct ByteBuffer {@code data}.
+ * Chỉ mục là bảng băm địa chỉ mở trong một mảng int (slot + 1, 0 = trống), hệ số tải tối đa 0,5;
+ * khóa được so trực tiếp với các byte trong {@code data}.
+ *
+ * Tập tài khoản cố định sau khi nạp. Đối tượng Account chỉ được tạo khi trả ra ngoài
+ * ({@link #find(String)}, {@link #get(int)}, {@link #asList()}), mỗi lần một bản sao mới.
+ */
+public class OffHeapAccountStore implements AccountStore {
+    private static final int RECORD = 16;
+    private static final int BALANCE = 0;
+    private static final int OFFSET = 8;
+    private static final int NAME_LENGTH = 12;
+    private static final int NUMBER_LENGTH = 14;
+    private static final int PIN_LENGTH = 15;
+
+    private final ByteBuffer records;
+    private final ByteBuffer data;
+    private final int[] table;
+    private final int mask;
+    private int size;
+
+    public OffHeapAccountStore(List<Account> accounts) {
+        long dataBytes = 0;
+        for (Account account : accounts) {
+            dataBytes += account.getAccountNumber().length() + utf8(account.getAccountName()).length
+                    + utf8(account.getPin()).length;
+        }
+        if (dataBytes > Integer.MAX_VALUE || (long) accounts.size() * RECORD > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Quá nhiều tài khoản cho kho off-heap: " + accounts.size());
+        }
+        this.records = ByteBuffer.allocateDirect(accounts.size() * RECORD).order(ByteOrder.nativeOrder());
+        this.data = ByteBuffer.allocateDirect((int) dataBytes);
+        int capacity = Integer.highestOneBit(Math.max(16, accounts.size() * 2 - 1)) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+
+        int dataOffset = 0;
+        for (Account account : accounts) {
+            String number = account.getAccountNumber();
+            int bucket = bucketOf(number);
+            if (bucket < 0) {
+                continue;
+            }
+            byte[] name = utf8(account.getAccountName());
+            byte[] pin = utf8(account.getPin());
+            if (number.length() > 0xFF || name.length > 0xFFFF || pin.length > 0xFF) {
+                throw new IllegalArgumentException("Tài khoản quá dài cho kho off-heap: " + number);
+            }
+            for (int i = 0; i < number.length(); i++) {
+                char c = number.charAt(i);
+                if (c >= 0x80) {
+                    throw new IllegalArgumentException("Số tài khoản phải là ASCII: " + number);
+                }
+                data.put(dataOffset + i, (byte) c);
+            }
+            data.put(dataOffset + number.length(), name);
+            data.put(dataOffset + number.length() + name.length, pin);
+
+            int record = size * RECORD;
+            records.putLong(record + BALANCE, account.getBalance());
+            records.putInt(record + OFFSET, dataOffset);
+            records.putShort(record + NAME_LENGTH, (short) name.length);
+            records.put(record + NUMBER_LENGTH, (byte) number.length());
+            records.put(record + PIN_LENGTH, (byte) pin.length);
+            table[bucket] = size + 1;
+            dataOffset += number.length() + name.length + pin.length;
+            size++;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(String accountNumber) {
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Ô trống dành cho số tài khoản mới; -1 nếu số tài khoản đã có
+     */
+    private int bucketOf(String accountNumber) {
+        int bucket = hash(accountNumber) & mask;
+        while (table[bucket] != 0) {
+            if (matches(table[bucket] - 1, accountNumber)) {
+                return -1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return bucket;
+    }
+
+    private boolean matches(int slot, String accountNumber) {
+        int record = slot * RECORD;
+        int length = records.get(record + NUMBER_LENGTH) & 0xFF;
+        if (length != accountNumber.length()) {
+            return false;
+        }
+        int offset = records.getInt(record + OFFSET);
+        for (int i = 0; i < length; i++) {
+            if (data.get(offset + i) != (byte) accountNumber.charAt(i) || accountNumber.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Account find(String accountNumber) {
+        int slot = slotOf(accountNumber);
+        return slot < 0 ? null : get(slot);
+    }
+
+    @Override
+    public int slotOf(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        int bucket = hash(accountNumber) & mask;
+        int entry;
+        while ((entry = table[bucket]) != 0) {
+            if (matches(entry - 1, accountNumber)) {
+                return entry - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public Account get(int slot) {
+        int record = slot * RECORD;
+        int offset = records.getInt(record + OFFSET);
+        int numberLength = records.get(record + NUMBER_LENGTH) & 0xFF;
+        int nameLength = records.getShort(record + NAME_LENGTH) & 0xFFFF;
+        int pinLength = records.get(record + PIN_LENGTH) & 0xFF;
+        return new Account(string(offset, numberLength, StandardCharsets.US_ASCII),
+                string(offset + numberLength, nameLength, StandardCharsets.UTF_8),
+                records.getLong(record + BALANCE),
+                string(offset + numberLength + nameLength, pinLength, StandardCharsets.UTF_8));
+    }
+
+    private String string(int offset, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, charset);
+    }
+
+    @Override
+    public String accountNumber(int slot) {
+        int record = slot * RECORD;
+        return string(records.getInt(record + OFFSET), records.get(record + NUMBER_LENGTH) & 0xFF,
+                StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public long balance(int slot) {
+        return records.getLong(slot * RECORD + BALANCE);
+    }
+
+    @Override
+    public void setBalance(int slot, long balance) {
+        records.putLong(slot * RECORD + BALANCE, balance);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Account> asList() {
+        List<Account> accounts = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            accounts.add(get(slot));
+        }
+        return accounts;
+    }
+
+    /**
+     * Số byte ngoài heap (bản ghi + dữ liệu) và trong heap (bảng băm)
+     */
+    public long getOffHeapBytes() {
+        return records.capacity() + data.capacity();
+    }
+
+    public long getIndexBytes() {
+        return (long) table.length * Integer.BYTES;
+    }
+}
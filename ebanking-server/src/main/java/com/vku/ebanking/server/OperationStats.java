@@ -0,0 +1,110 @@
+package com.vku.ebanking.server;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Độ trễ, số lần gọi và số lỗi của một thao tác; ghi không khóa, chi phí cỡ hai lần đọc đồng hồ
+ * và vài phép cộng nguyên tử
+ */
+public class OperationStats implements OperationStatsMXBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private long rateCount;
+    private long rateSince = System.nanoTime();
+
+    /**
+     * Lời gọi được đo
+     */
+    public interface Call<T> {
+        T call() throws RemoteException;
+    }
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Chạy và đo lời gọi; lời gọi ném ngoại lệ được tính là lỗi
+     */
+    public <T> T time(Call<T> call) throws RemoteException {
+        long started = System.nanoTime();
+        boolean ok = false;
+        try {
+            T result = call.call();
+            ok = true;
+            return result;
+        } finally {
+            record(System.nanoTime() - started, ok);
+        }
+    }
+
+    public void record(long nanos, boolean ok) {
+        latency.record(nanos);
+        if (!ok) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public synchronized double getRatePerSecond() {
+        long now = System.nanoTime();
+        long count = latency.getCount();
+        double rate = now == rateSince ? 0 : (count - rateCount) * 1e9 / (now - rateSince);
+        rateCount = count;
+        rateSince = now;
+        return rate;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.getPercentileNanos(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.getPercentileNanos(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.getPercentileNanos(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d lần, %d lỗi, %.0f/s, p50 %.1fµs, p99 %.1fµs, p999 %.1fµs, max %.1fµs",
+                name, getCount(), getErrorCount(), getRatePerSecond(), getP50Micros(), getP99Micros(),
+                getP999Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,27 @@
+package com.vku.ebanking.server;
+
+/**
+ * Thống kê một thao tác của server qua JMX ({@code com.vku.ebanking:type=Operation,name=...})
+ */
+public interface OperationStatsMXBean {
+    String getName();
+
+    long getCount();
+
+    long getErrorCount();
+
+    /**
+     * Số lần gọi mỗi giây kể từ lần đọc thuộc tính này trước đó (hoặc từ lúc khởi động)
+     */
+    double getRatePerSecond();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
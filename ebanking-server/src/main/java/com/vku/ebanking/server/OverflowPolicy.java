@@ -0,0 +1,13 @@
+package com.vku.ebanking.server;
+
+/**
+ * Cách xử lý khi hàng đợi thông báo của một client đã đầy
+ */
+public enum OverflowPolicy {
+    /** Bỏ thông báo mới đến */
+    DROP_NEWEST,
+    /** Bỏ thông báo cũ nhất để nhường chỗ */
+    DROP_OLDEST,
+    /** Gộp thông báo mới vào thông báo cuối đang chờ */
+    COALESCE
+}
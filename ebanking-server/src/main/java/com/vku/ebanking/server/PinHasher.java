@@ -0,0 +1,147 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Băm PIN bằng PBKDF2-HMAC-SHA256 với salt ngẫu nhiên 16 byte cho từng tài khoản.
+ *
+ * PIN đã băm được lưu trong chính trường pin của Account dưới dạng
+ * {@code pbkdf2-sha256$<số vòng>$<salt base64>$<hash base64>}, nên các định dạng XML, journal nhân bản
+ * và kho tài khoản không phải đổi. Số vòng ({@code ebanking.auth.pbkdf2Iterations}) nằm trong từng
+ * giá trị: đổi cấu hình chỉ áp dụng cho PIN băm mới, PIN cũ vẫn kiểm tra được.
+ */
+public class PinHasher {
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final int SALT_BYTES = 16;
+    static final int HASH_BYTES = 32;
+    /**
+     * Số byte của PIN đã băm ở dạng nhị phân: số vòng (int) + salt + hash
+     */
+    static final int BINARY_SIZE = 4 + SALT_BYTES + HASH_BYTES;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    // Kiểm tra với giá trị giả khi không có tài khoản, để thời gian trả lời không lộ số tài khoản nào tồn tại
+    private final String decoy;
+
+    public PinHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Số vòng PBKDF2 phải dương: " + iterations);
+        }
+        this.iterations = iterations;
+        this.decoy = hash("");
+    }
+
+    public static PinHasher forConfig(ServerConfig config) {
+        return new PinHasher(config.getPbkdf2Iterations());
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String pin) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return encode(iterations, salt, derive(pin, salt, iterations));
+    }
+
+    /**
+     * So PIN với giá trị đã lưu trong thời gian không phụ thuộc vị trí sai khác.
+     * {@code stored} null (không có tài khoản) hoặc hỏng luôn trả về false
+     */
+    public boolean verify(String pin, String stored) {
+        if (pin == null) {
+            return false;
+        }
+        byte[] binary = isHashed(stored) ? toBinary(stored) : null;
+        if (binary == null) {
+            verify(pin, decoy);
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(binary);
+        int rounds = buffer.getInt();
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] expected = new byte[HASH_BYTES];
+        buffer.get(salt).get(expected);
+        return MessageDigest.isEqual(expected, derive(pin, salt, rounds));
+    }
+
+    /**
+     * Băm tại chỗ mọi PIN còn ở dạng rõ (dữ liệu tạo trước khi có băm PIN); trả về số PIN đã băm
+     */
+    public int hashPlaintext(List<Account> accounts) {
+        int hashed = 0;
+        for (Account account : accounts) {
+            if (!isHashed(account.getPin())) {
+                account.setPin(hash(account.getPin() == null ? "" : account.getPin()));
+                hashed++;
+            }
+        }
+        return hashed;
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(String pin, byte[] salt, int rounds) {
+        PBEKeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, rounds, HASH_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JVM không hỗ trợ " + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(int rounds, byte[] salt, byte[] hash) {
+        return PREFIX + rounds + '$' + ENCODER.encodeToString(salt) + '$' + ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * Dạng nhị phân {@link #BINARY_SIZE} byte của PIN đã băm (cho snapshot nhị phân); null nếu sai định dạng
+     */
+    static byte[] toBinary(String stored) {
+        if (!isHashed(stored)) {
+            return null;
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            int rounds = Integer.parseInt(parts[0]);
+            byte[] salt = DECODER.decode(parts[1]);
+            byte[] hash = DECODER.decode(parts[2]);
+            if (rounds < 1 || salt.length != SALT_BYTES || hash.length != HASH_BYTES) {
+                return null;
+            }
+            return ByteBuffer.allocate(BINARY_SIZE).putInt(rounds).put(salt).put(hash).array();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static String fromBinary(ByteBuffer buffer, int offset) {
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] hash = new byte[HASH_BYTES];
+        buffer.get(offset + 4, salt);
+        buffer.get(offset + 4 + SALT_BYTES, hash);
+        return encode(buffer.getInt(offset), salt, hash);
+    }
+}
@@ -0,0 +1,287 @@
+package com.vku.ebanking.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phía follower của nhân bản: nhận bản ghi journal từ primary, ghi vào journal cục bộ với cùng seq
+ * và áp dụng vào kho tài khoản trong bộ nhớ. Follower không bind BankService cho tới khi được nâng lên.
+ *
+ * Nâng lên primary khi mất kết nối quá {@code ebanking.replication.failoverMs}, hoặc thủ công bằng cách
+ * tạo file {@code PROMOTE} trong thư mục journal của follower.
+ */
+public class ReplicationFollower {
+    private static final int MAX_BATCH = 512;
+    private static final String PROMOTE_FILE = "PROMOTE";
+
+    private final ServerConfig config;
+    private final String host;
+    private final int port;
+    private final Path promoteFile;
+    private final CountDownLatch promoted = new CountDownLatch(1);
+    private BankServiceImpl service;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    private volatile long appliedSeq = -1;
+    private volatile long primarySeq;
+    private volatile long lastCommitMillis;
+    private volatile long lastContactMillis = System.currentTimeMillis();
+    private volatile boolean connected;
+
+    public ReplicationFollower(ServerConfig config) {
+        this.config = config;
+        String primary = config.getReplicationPrimary().trim();
+        int colon = primary.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("ebanking.replication.primary phải có dạng host:cổng: " + primary);
+        }
+        this.host = primary.substring(0, colon);
+        this.port = Integer.parseInt(primary.substring(colon + 1));
+        this.promoteFile = Paths.get(config.getJournalDir(), PROMOTE_FILE);
+    }
+
+    /**
+     * Đồng bộ trạng thái ban đầu (lấy snapshot từ primary nếu follower chưa có dữ liệu),
+     * dựng BankServiceImpl cục bộ và bắt đầu nhận bản ghi ở nền
+     */
+    public BankServiceImpl start() throws IOException {
+        XMLAccountHandler handler = new XMLAccountHandler(AccountXmlFormat.named(config.getXmlParser()),
+                new File(config.getSnapshotDir()), config.getSnapshotFormat());
+        if (!handler.hasSnapshot()) {
+            // Primary có thể chưa sẵn sàng: thử lại tới khi kết nối được
+            while (true) {
+                try {
+                    connect(-1);
+                    break;
+                } catch (IOException e) {
+                    System.out.println("⏳ Chờ primary " + host + ":" + port + " (" + e.getMessage() + ")");
+                    sleepQuietly(1000);
+                }
+            }
+            if (in.readByte() != ReplicationProtocol.SNAPSHOT) {
+                throw new IOException("Primary không gửi snapshot ban đầu");
+            }
+            AccountSnapshot snapshot = ReplicationProtocol.readSnapshot(in);
+            if (!handler.saveSnapshot(snapshot.getAccounts(), snapshot.getSeq())) {
+                throw new IOException("Không ghi được snapshot nhận từ primary");
+            }
+            System.out.println("📡 Nhận snapshot seq " + snapshot.getSeq() + " từ primary");
+        }
+        service = new BankServiceImpl(config);
+        appliedSeq = service.getJournalSeq();
+        primarySeq = appliedSeq;
+        Thread receiver = new Thread(this::receiveLoop, "replication-follower");
+        receiver.setDaemon(true);
+        receiver.start();
+        return service;
+    }
+
+    private void connect(long fromSeq) throws IOException {
+        Socket newSocket = new Socket();
+        newSocket.connect(new InetSocketAddress(host, port), 2000);
+        newSocket.setTcpNoDelay(true);
+        // Primary gửi nhịp tim mỗi 200 ms; im lặng lâu hơn coi như mất kết nối
+        newSocket.setSoTimeout(2000);
+        socket = newSocket;
+        in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream(), 64 * 1024));
+        out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+        out.writeInt(ReplicationProtocol.MAGIC);
+        out.writeLong(fromSeq);
+        out.flush();
+        connected = true;
+        lastContactMillis = System.currentTimeMillis();
+    }
+
+    private void receiveLoop() {
+        while (promoted.getCount() > 0) {
+            try {
+                if (socket == null) {
+                    connect(appliedSeq);
+                    System.out.println("📡 Đã kết nối primary " + host + ":" + port + " từ seq " + appliedSeq);
+                }
+                receive();
+            } catch (IOException e) {
+                if (promoted.getCount() == 0) {
+                    break;
+                }
+                if (connected) {
+                    System.err.println("⚠️ Mất kết nối primary: " + e);
+                }
+                disconnect();
+                long silentMs = System.currentTimeMillis() - lastContactMillis;
+                if (config.getReplicationFailoverMs() > 0 && silentMs >= config.getReplicationFailoverMs()) {
+                    System.out.println("⬆️ Không liên lạc được primary sau " + silentMs + " ms, tự nâng lên primary");
+                    promote();
+                    break;
+                }
+                if (Files.exists(promoteFile)) {
+                    promoteByFile();
+                    break;
+                }
+                sleepQuietly(200);
+            }
+        }
+    }
+
+    private void receive() throws IOException {
+        List<JournalRecord> batch = new ArrayList<>(MAX_BATCH);
+        long batchCommitMillis = 0;
+        while (promoted.getCount() > 0) {
+            byte type = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            switch (type) {
+                case ReplicationProtocol.RECORD -> {
+                    long commitMillis = in.readLong();
+                    JournalRecord record = ReplicationProtocol.readRecord(in);
+                    long expected = (batch.isEmpty() ? appliedSeq : batch.get(batch.size() - 1).getSeq()) + 1;
+                    if (record.getSeq() < expected) {
+                        continue;
+                    }
+                    if (record.getSeq() != expected) {
+                        throw new IOException("Thiếu bản ghi: nhận seq " + record.getSeq() + ", cần " + expected);
+                    }
+                    batch.add(record);
+                    batchCommitMillis = commitMillis;
+                    primarySeq = Math.max(primarySeq, record.getSeq());
+                }
+                case ReplicationProtocol.HEARTBEAT -> {
+                    primarySeq = Math.max(primarySeq, in.readLong());
+                    in.readLong();
+                    if (Files.exists(promoteFile)) {
+                        apply(batch, batchCommitMillis);
+                        promoteByFile();
+                        return;
+                    }
+                }
+                case ReplicationProtocol.SNAPSHOT -> {
+                    apply(batch, batchCommitMillis);
+                    AccountSnapshot snapshot = ReplicationProtocol.readSnapshot(in);
+                    service.resetFromReplica(snapshot);
+                    appliedSeq = snapshot.getSeq();
+                    System.out.println("📡 Đồng bộ lại từ snapshot seq " + snapshot.getSeq() + " của primary");
+                }
+                default -> throw new IOException("Khung nhân bản không hợp lệ: " + type);
+            }
+            if (batch.size() >= MAX_BATCH || in.available() == 0) {
+                apply(batch, batchCommitMillis);
+            }
+        }
+    }
+
+    private void apply(List<JournalRecord> batch, long commitMillis) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        service.applyReplicated(batch);
+        appliedSeq = batch.get(batch.size() - 1).getSeq();
+        if (commitMillis > 0) {
+            lastCommitMillis = commitMillis;
+        }
+        batch.clear();
+        out.writeByte(ReplicationProtocol.ACK);
+        out.writeLong(appliedSeq);
+        out.flush();
+    }
+
+    private void promoteByFile() {
+        try {
+            Files.deleteIfExists(promoteFile);
+        } catch (IOException e) {
+            System.err.println("⚠️ Không xóa được " + promoteFile + ": " + e.getMessage());
+        }
+        System.out.println("⬆️ Có yêu cầu nâng lên primary (" + PROMOTE_FILE + ")");
+        promote();
+    }
+
+    /**
+     * Ngừng nhận bản ghi từ primary; sau đó tiến trình có thể bind BankService
+     */
+    public void promote() {
+        promoted.countDown();
+        disconnect();
+    }
+
+    /**
+     * Chờ tối đa {@code timeout}; true nếu follower đã được nâng lên primary
+     */
+    public boolean awaitPromotion(long timeout, TimeUnit unit) throws InterruptedException {
+        return promoted.await(timeout, unit);
+    }
+
+    /**
+     * Sau khi được nâng lên: mở cổng nhân bản riêng (nếu cấu hình) để một follower mới bám theo
+     */
+    public void startPublishing() throws RemoteException {
+        if (config.getReplicationPort() > 0) {
+            service.startReplication(config.getReplicationPort());
+        }
+    }
+
+    private synchronized void disconnect() {
+        connected = false;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Đã đóng
+            }
+            socket = null;
+        }
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * Số bản ghi primary đã commit mà follower chưa áp dụng (theo nhịp tim gần nhất)
+     */
+    public long getLagRecords() {
+        return Math.max(0, primarySeq - appliedSeq);
+    }
+
+    /**
+     * Độ trễ theo thời gian: 0 khi đã bắt kịp, ngược lại là thời gian từ lúc primary commit
+     * bản ghi mới nhất mà follower đã áp dụng
+     */
+    public long getLagMillis() {
+        if (getLagRecords() == 0 || lastCommitMillis == 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - lastCommitMillis);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public String toString() {
+        return "Follower: seq " + appliedSeq + ", trễ " + getLagRecords() + " bản ghi / " + getLagMillis() + " ms"
+                + (connected ? "" : " (mất kết nối)");
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Khung tin trên kết nối nhân bản primary → follower.
+ *
+ * Follower mở kết nối và gửi {@code MAGIC, seqĐãCó} (-1 nếu chưa có gì). Primary gửi:
+ * <ul>
+ *     <li>{@code 'S'} snapshot: seq, số tài khoản, từng tài khoản — khi không phát lại được từ seq của follower;</li>
+ *     <li>{@code 'R'} bản ghi journal: thời điểm commit (ms, 0 nếu là bản ghi phát lại), seq, các entry;</li>
+ *     <li>{@code 'H'} nhịp tim: seq cuối của primary, thời điểm hiện tại.</li>
+ * </ul>
+ * Follower trả {@code 'A' seq} sau mỗi lô đã áp dụng.
+ */
+final class ReplicationProtocol {
+    static final int MAGIC = 0x45425250; // "EBRP"
+    static final byte SNAPSHOT = 'S';
+    static final byte RECORD = 'R';
+    static final byte HEARTBEAT = 'H';
+    static final byte ACK = 'A';
+
+    private static final byte KIND_BALANCE = 0;
+    private static final byte KIND_DELTA = 1;
+    private static final byte KIND_LEG = 2;
+    private static final byte KIND_LEG_BALANCE = 3;
+
+    private ReplicationProtocol() {}
+
+    static void writeSnapshot(DataOutputStream out, AccountSnapshot snapshot) throws IOException {
+        out.writeByte(SNAPSHOT);
+        out.writeLong(snapshot.getSeq());
+        out.writeInt(snapshot.getAccounts().size());
+        for (Account account : snapshot.getAccounts()) {
+            out.writeUTF(account.getAccountNumber());
+            out.writeUTF(account.getAccountName());
+            out.writeLong(account.getBalance());
+            out.writeUTF(account.getPin());
+        }
+    }
+
+    static AccountSnapshot readSnapshot(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        int count = in.readInt();
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF()));
+        }
+        return new AccountSnapshot(accounts, seq);
+    }
+
+    static void writeRecord(DataOutputStream out, long commitMillis, long seq, List<JournalEntry> entries)
+            throws IOException {
+        out.writeByte(RECORD);
+        out.writeLong(commitMillis);
+        out.writeLong(seq);
+        out.writeShort(entries.size());
+        for (JournalEntry entry : entries) {
+            out.writeUTF(entry.getAccountNumber());
+            if (entry.getLeg() != null) {
+                out.writeByte(entry.isDelta() ? KIND_LEG : KIND_LEG_BALANCE);
+                out.writeByte(entry.getLeg().ordinal());
+                out.writeLong(entry.getTransferId());
+                out.writeLong(entry.getAmount());
+            } else {
+                out.writeByte(entry.isDelta() ? KIND_DELTA : KIND_BALANCE);
+            }
+            out.writeLong(entry.getBalance());
+        }
+    }
+
+    /**
+     * Đọc phần sau byte loại của khung 'R' (đã đọc thời điểm commit)
+     */
+    static JournalRecord readRecord(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        int count = in.readUnsignedShort();
+        List<JournalEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String number = in.readUTF();
+            byte kind = in.readByte();
+            switch (kind) {
+                case KIND_BALANCE -> entries.add(new JournalEntry(number, in.readLong()));
+                case KIND_DELTA -> entries.add(JournalEntry.delta(number, in.readLong()));
+                case KIND_LEG, KIND_LEG_BALANCE -> {
+                    TransferLeg leg = TransferLeg.values()[in.readByte()];
+                    long transferId = in.readLong();
+                    long amount = in.readLong();
+                    long value = in.readLong();
+                    entries.add(kind == KIND_LEG
+                            ? JournalEntry.leg(number, value, leg, transferId)
+                            : JournalEntry.legBalance(number, value, amount, leg, transferId));
+                }
+                default -> throw new IOException("Loại entry nhân bản không hợp lệ: " + kind);
+            }
+        }
+        return new JournalRecord(seq, entries);
+    }
+}
@@ -0,0 +1,255 @@
+package com.vku.ebanking.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phía primary của nhân bản: mở cổng TCP, mỗi follower kết nối được một luồng gửi riêng.
+ *
+ * Follower báo seq đã có; nếu journal còn giữ các bản ghi sau seq đó thì chỉ phát lại phần thiếu,
+ * ngược lại gửi snapshot gần nhất rồi phát lại từ seq của snapshot. Sau đó mọi bản ghi
+ * được {@link GroupCommitter} commit được đẩy tiếp theo thứ tự seq. Nhân bản là bất đồng bộ:
+ * giao dịch đã báo thành công trên primary có thể chưa tới follower (xem {@link #getLagRecords()}).
+ */
+public class ReplicationPublisher {
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final long HEARTBEAT_MS = 200;
+
+    private final TransactionJournal journal;
+    private final XMLAccountHandler xmlHandler;
+    private final ServerSocket serverSocket;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    public ReplicationPublisher(TransactionJournal journal, XMLAccountHandler xmlHandler, int port)
+            throws IOException {
+        this.journal = journal;
+        this.xmlHandler = xmlHandler;
+        this.serverSocket = new ServerSocket(port);
+        this.acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("📡 Nhân bản: chờ follower trên cổng " + port);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                Thread.ofPlatform().daemon().name("replication-" + socket.getRemoteSocketAddress())
+                        .start(session::run);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("⚠️ Lỗi nhận kết nối follower: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gọi từ luồng commit sau mỗi batch journal
+     */
+    void published(long firstSeq, List<List<JournalEntry>> records) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < records.size(); i++) {
+            Outgoing outgoing = new Outgoing(firstSeq + i, now, records.get(i));
+            for (Session session : sessions) {
+                session.offer(outgoing);
+            }
+        }
+    }
+
+    /**
+     * Seq lớn nhất được phép xóa khỏi journal khi còn follower đang bắt kịp
+     */
+    long retentionFloor() {
+        long floor = Long.MAX_VALUE;
+        for (Session session : sessions) {
+            floor = Math.min(floor, session.floor);
+        }
+        return floor;
+    }
+
+    public int getFollowerCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Số bản ghi follower chậm nhất chưa xác nhận; 0 nếu không có follower
+     */
+    public long getLagRecords() {
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        long slowest = Long.MAX_VALUE;
+        for (Session session : sessions) {
+            slowest = Math.min(slowest, session.acked);
+        }
+        return Math.max(0, journal.getLastSeq() - slowest);
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Đang dừng
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Nhân bản: " + getFollowerCount() + " follower, trễ " + getLagRecords() + " bản ghi";
+    }
+
+    private static final class Outgoing {
+        final long seq;
+        final long commitMillis;
+        final List<JournalEntry> entries;
+
+        Outgoing(long seq, long commitMillis, List<JournalEntry> entries) {
+            this.seq = seq;
+            this.commitMillis = commitMillis;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Một follower đang kết nối
+     */
+    private final class Session {
+        private final Socket socket;
+        private final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // Giữ journal từ seq này trở đi cho tới khi follower bắt kịp
+        volatile long floor = 0;
+        volatile long acked;
+        private volatile boolean overflowed;
+        private long sent;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        void offer(Outgoing outgoing) {
+            if (!queue.offer(outgoing) && !overflowed) {
+                // Follower quá chậm: ngắt kết nối, lần kết nối lại sẽ bắt kịp từ journal hoặc snapshot
+                overflowed = true;
+                close();
+            }
+        }
+
+        void run() {
+            String peer = String.valueOf(socket.getRemoteSocketAddress());
+            try (socket) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                if (in.readInt() != ReplicationProtocol.MAGIC) {
+                    throw new IOException("Sai giao thức nhân bản");
+                }
+                long from = in.readLong();
+                acked = Math.max(0, from);
+                floor = Math.max(0, from);
+                // Đăng ký trước khi phát lại để không lọt bản ghi commit trong lúc phát lại
+                sessions.add(this);
+                Thread.ofVirtual().start(() -> readAcks(in));
+
+                if (from < 0 || from + 1 < journal.getFirstSeq() || from > journal.getLastSeq()) {
+                    floor = 0;
+                    AccountSnapshot snapshot = xmlHandler.loadLatestSnapshot();
+                    from = snapshot.getSeq();
+                    floor = from;
+                    ReplicationProtocol.writeSnapshot(out, snapshot);
+                    System.out.println("📡 Gửi snapshot seq " + from + " cho follower " + peer);
+                }
+                sent = from;
+                try {
+                    journal.replay(from, record -> {
+                        try {
+                            ReplicationProtocol.writeRecord(out, 0, record.getSeq(), record.getEntries());
+                            sent = record.getSeq();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.flush();
+                floor = Long.MAX_VALUE;
+                System.out.println("📡 Follower " + peer + " đã bắt kịp tới seq " + sent);
+
+                List<Outgoing> batch = new ArrayList<>(256);
+                while (running && !overflowed) {
+                    Outgoing first = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        out.writeByte(ReplicationProtocol.HEARTBEAT);
+                        out.writeLong(journal.getLastSeq());
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, 255);
+                    for (Outgoing outgoing : batch) {
+                        if (outgoing.seq > sent) {
+                            ReplicationProtocol.writeRecord(out, outgoing.commitMillis, outgoing.seq,
+                                    outgoing.entries);
+                            sent = outgoing.seq;
+                        }
+                    }
+                    batch.clear();
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("⚠️ Mất kết nối follower " + peer + ": " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sessions.remove(this);
+            }
+        }
+
+        private void readAcks(DataInputStream in) {
+            try {
+                while (in.readByte() == ReplicationProtocol.ACK) {
+                    acked = in.readLong();
+                }
+            } catch (IOException e) {
+                // Kết nối đóng; luồng gửi sẽ tự kết thúc
+            }
+            close();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Đã đóng
+            }
+        }
+    }
+}
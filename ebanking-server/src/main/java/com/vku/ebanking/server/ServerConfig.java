@@ -0,0 +1,583 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.BankService;
+
+/**
+ * Cấu hình server, đọc từ system properties (-Debanking.xxx=...)
+ */
+public class ServerConfig {
+    private int registryPort = 1099;
+    private ExecutionMode executionMode = ExecutionMode.DIRECT;
+    private int maxConcurrentRequests = 256;
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.STRIPED;
+    private int lockStripes = 64;
+    private int shards = Runtime.getRuntime().availableProcessors();
+    private int shardQueueCapacity = 65_536;
+    private AccountStorage accountStorage = AccountStorage.HEAP;
+    private String journalDir = "journal";
+    private String snapshotDir = "snapshots";
+    private String xmlParser = "stax";
+    private SnapshotFormat snapshotFormat = SnapshotFormat.XML;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.ALWAYS;
+    private long fsyncIntervalMs = 100;
+    private long groupCommitWindowMicros = 1000;
+    private int groupCommitMaxBatch = 256;
+    private long checkpointIntervalMs = 60_000;
+    private long checkpointChanges = 10_000;
+    private int snapshotsToKeep = 3;
+    private int callbackQueueCapacity = 64;
+    private OverflowPolicy callbackOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private int callbackMaxFailures = 3;
+    private long callbackBatchWindowMs = 50;
+    private int maxBatchItems = 10_000;
+    private int logRingCapacity = 8192;
+    private long logFrameMs = 100;
+    private int logViewLines = 1000;
+    private String logFile = "logs/server.log";
+    private long logFileMaxBytes = 10L * 1024 * 1024;
+    private int logFilesToKeep = 5;
+    private String clusterNodes = "";
+    private int clusterNode = -1;
+    private String clusterDir = "cluster";
+    private int replicationPort = 0;
+    private String replicationPrimary = "";
+    private long replicationFailoverMs = 3000;
+    private int dedupCapacity = 250_000;
+    private long dedupTtlMs = 3 * 60_000;
+    private boolean historyEnabled = true;
+    private String historyDir = "history";
+    private long historySegmentBytes = 256L * 1024 * 1024;
+    private long historyIndexIntervalMs = 30_000;
+    private boolean metricsJmx = true;
+    private long metricsDumpIntervalMs = 0;
+    private int pbkdf2Iterations = 100_000;
+    private long sessionTtlMs = 15 * 60_000;
+
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.registryPort = Integer.getInteger("ebanking.registry.port", config.registryPort);
+        config.executionMode = ExecutionMode.valueOf(
+                System.getProperty("ebanking.execution.mode", config.executionMode.name()).toUpperCase());
+        config.maxConcurrentRequests = Integer.getInteger("ebanking.execution.maxConcurrent",
+                config.maxConcurrentRequests);
+        config.concurrencyMode = ConcurrencyMode.valueOf(
+                System.getProperty("ebanking.concurrency", config.concurrencyMode.name()).toUpperCase());
+        config.lockStripes = Integer.getInteger("ebanking.lockStripes", config.lockStripes);
+        config.shards = Integer.getInteger("ebanking.shards", config.shards);
+        config.shardQueueCapacity = Integer.getInteger("ebanking.shard.queueCapacity", config.shardQueueCapacity);
+        config.accountStorage = AccountStorage.valueOf(
+                System.getProperty("ebanking.accounts.storage", config.accountStorage.name()).toUpperCase());
+        config.journalDir = System.getProperty("ebanking.journal.dir", config.journalDir);
+        config.snapshotDir = System.getProperty("ebanking.snapshot.dir", config.snapshotDir);
+        config.xmlParser = System.getProperty("ebanking.xml.parser", config.xmlParser);
+        config.snapshotFormat = SnapshotFormat.valueOf(
+                System.getProperty("ebanking.snapshot.format", config.snapshotFormat.name()).toUpperCase());
+        config.fsyncPolicy = FsyncPolicy.valueOf(
+                System.getProperty("ebanking.journal.fsync", config.fsyncPolicy.name()).toUpperCase());
+        config.fsyncIntervalMs = Long.getLong("ebanking.journal.fsyncIntervalMs", config.fsyncIntervalMs);
+        config.groupCommitWindowMicros = Long.getLong("ebanking.groupCommit.windowMicros",
+                config.groupCommitWindowMicros);
+        config.groupCommitMaxBatch = Integer.getInteger("ebanking.groupCommit.maxBatch", config.groupCommitMaxBatch);
+        config.checkpointIntervalMs = Long.getLong("ebanking.checkpoint.intervalMs", config.checkpointIntervalMs);
+        config.checkpointChanges = Long.getLong("ebanking.checkpoint.changes", config.checkpointChanges);
+        config.snapshotsToKeep = Integer.getInteger("ebanking.snapshot.keep", config.snapshotsToKeep);
+        config.callbackQueueCapacity = Integer.getInteger("ebanking.callback.queueCapacity",
+                config.callbackQueueCapacity);
+        config.callbackOverflowPolicy = OverflowPolicy.valueOf(
+                System.getProperty("ebanking.callback.overflow", config.callbackOverflowPolicy.name()).toUpperCase());
+        config.callbackMaxFailures = Integer.getInteger("ebanking.callback.maxFailures", config.callbackMaxFailures);
+        config.callbackBatchWindowMs = Long.getLong("ebanking.callback.batchWindowMs", config.callbackBatchWindowMs);
+        config.setMaxBatchItems(Integer.getInteger("ebanking.batch.maxItems", config.maxBatchItems));
+        config.logRingCapacity = Integer.getInteger("ebanking.log.ringCapacity", config.logRingCapacity);
+        config.logFrameMs = Long.getLong("ebanking.log.frameMs", config.logFrameMs);
+        config.logViewLines = Integer.getInteger("ebanking.log.viewLines", config.logViewLines);
+        config.logFile = System.getProperty("ebanking.log.file", config.logFile);
+        config.logFileMaxBytes = Long.getLong("ebanking.log.fileMaxBytes", config.logFileMaxBytes);
+        config.logFilesToKeep = Integer.getInteger("ebanking.log.filesToKeep", config.logFilesToKeep);
+        config.clusterNodes = System.getProperty("ebanking.cluster.nodes", config.clusterNodes);
+        config.clusterNode = Integer.getInteger("ebanking.cluster.node", config.clusterNode);
+        config.clusterDir = System.getProperty("ebanking.cluster.dir", config.clusterDir);
+        config.replicationPort = Integer.getInteger("ebanking.replication.port", config.replicationPort);
+        config.replicationPrimary = System.getProperty("ebanking.replication.primary", config.replicationPrimary);
+        config.replicationFailoverMs = Long.getLong("ebanking.replication.failoverMs", config.replicationFailoverMs);
+        config.dedupCapacity = Integer.getInteger("ebanking.dedup.capacity", config.dedupCapacity);
+        config.dedupTtlMs = Long.getLong("ebanking.dedup.ttlMs", config.dedupTtlMs);
+        if (config.dedupTtlMs < BankService.RESUBMIT_WINDOW_MS) {
+            throw new IllegalArgumentException("ebanking.dedup.ttlMs phải ít nhất "
+                    + BankService.RESUBMIT_WINDOW_MS + " ms (thời gian client gửi lại): " + config.dedupTtlMs);
+        }
+        config.historyEnabled = Boolean.parseBoolean(
+                System.getProperty("ebanking.history.enabled", String.valueOf(config.historyEnabled)));
+        config.historyDir = System.getProperty("ebanking.history.dir", config.historyDir);
+        config.historySegmentBytes = Long.getLong("ebanking.history.segmentBytes", config.historySegmentBytes);
+        config.historyIndexIntervalMs = Long.getLong("ebanking.history.indexIntervalMs",
+                config.historyIndexIntervalMs);
+        config.metricsJmx = Boolean.parseBoolean(
+                System.getProperty("ebanking.metrics.jmx", String.valueOf(config.metricsJmx)));
+        config.metricsDumpIntervalMs = Long.getLong("ebanking.metrics.dumpIntervalMs", config.metricsDumpIntervalMs);
+        config.pbkdf2Iterations = Integer.getInteger("ebanking.auth.pbkdf2Iterations", config.pbkdf2Iterations);
+        config.sessionTtlMs = Long.getLong("ebanking.session.ttlMs", config.sessionTtlMs);
+        return config;
+    }
+
+    public int getRegistryPort() {
+        return registryPort;
+    }
+
+    public void setRegistryPort(int registryPort) {
+        this.registryPort = registryPort;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Số lời gọi BankService chạy đồng thời tối đa ở chế độ VIRTUAL; lời gọi dư xếp hàng FIFO
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        this.concurrencyMode = concurrencyMode;
+    }
+
+    public int getLockStripes() {
+        return lockStripes;
+    }
+
+    public void setLockStripes(int lockStripes) {
+        this.lockStripes = lockStripes;
+    }
+
+    /**
+     * Số shard ở chế độ SHARDED; mặc định bằng số nhân CPU
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Số lệnh tối đa chờ trong hàng đợi mỗi shard; đầy thì lời gọi phải chờ
+     */
+    public int getShardQueueCapacity() {
+        return shardQueueCapacity;
+    }
+
+    public void setShardQueueCapacity(int shardQueueCapacity) {
+        this.shardQueueCapacity = shardQueueCapacity;
+    }
+
+    /**
+     * Cách giữ tài khoản trong bộ nhớ: HEAP (đối tượng Account) hoặc OFFHEAP (direct ByteBuffer)
+     */
+    public AccountStorage getAccountStorage() {
+        return accountStorage;
+    }
+
+    public void setAccountStorage(AccountStorage accountStorage) {
+        this.accountStorage = accountStorage;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public String getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public void setSnapshotDir(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    public String getXmlParser() {
+        return xmlParser;
+    }
+
+    public void setXmlParser(String xmlParser) {
+        this.xmlParser = xmlParser;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public long getFsyncIntervalMs() {
+        return fsyncIntervalMs;
+    }
+
+    public void setFsyncIntervalMs(long fsyncIntervalMs) {
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    public long getGroupCommitWindowMicros() {
+        return groupCommitWindowMicros;
+    }
+
+    public void setGroupCommitWindowMicros(long groupCommitWindowMicros) {
+        this.groupCommitWindowMicros = groupCommitWindowMicros;
+    }
+
+    public int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+
+    public void setGroupCommitMaxBatch(int groupCommitMaxBatch) {
+        this.groupCommitMaxBatch = groupCommitMaxBatch;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
+    public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    public long getCheckpointChanges() {
+        return checkpointChanges;
+    }
+
+    public void setCheckpointChanges(long checkpointChanges) {
+        this.checkpointChanges = checkpointChanges;
+    }
+
+    public int getSnapshotsToKeep() {
+        return snapshotsToKeep;
+    }
+
+    public void setSnapshotsToKeep(int snapshotsToKeep) {
+        this.snapshotsToKeep = snapshotsToKeep;
+    }
+
+    public int getCallbackQueueCapacity() {
+        return callbackQueueCapacity;
+    }
+
+    public void setCallbackQueueCapacity(int callbackQueueCapacity) {
+        this.callbackQueueCapacity = callbackQueueCapacity;
+    }
+
+    public OverflowPolicy getCallbackOverflowPolicy() {
+        return callbackOverflowPolicy;
+    }
+
+    public void setCallbackOverflowPolicy(OverflowPolicy callbackOverflowPolicy) {
+        this.callbackOverflowPolicy = callbackOverflowPolicy;
+    }
+
+    public int getCallbackMaxFailures() {
+        return callbackMaxFailures;
+    }
+
+    public void setCallbackMaxFailures(int callbackMaxFailures) {
+        this.callbackMaxFailures = callbackMaxFailures;
+    }
+
+    public long getCallbackBatchWindowMs() {
+        return callbackBatchWindowMs;
+    }
+
+    public void setCallbackBatchWindowMs(long callbackBatchWindowMs) {
+        this.callbackBatchWindowMs = callbackBatchWindowMs;
+    }
+
+    /**
+     * Số lệnh tối đa trong một submitBatch; giới hạn để một batch vừa một bản ghi journal
+     * (tối đa {@link TransactionJournal#MAX_BATCH_ITEMS})
+     */
+    public int getMaxBatchItems() {
+        return maxBatchItems;
+    }
+
+    public void setMaxBatchItems(int maxBatchItems) {
+        if (maxBatchItems < 1 || maxBatchItems > TransactionJournal.MAX_BATCH_ITEMS) {
+            throw new IllegalArgumentException("ebanking.batch.maxItems phải trong khoảng 1.."
+                    + TransactionJournal.MAX_BATCH_ITEMS + ": " + maxBatchItems);
+        }
+        this.maxBatchItems = maxBatchItems;
+    }
+
+    /**
+     * Số dòng tối đa chờ trong vòng đệm log (làm tròn lên lũy thừa của 2); đầy thì dòng mới bị bỏ
+     */
+    public int getLogRingCapacity() {
+        return logRingCapacity;
+    }
+
+    public void setLogRingCapacity(int logRingCapacity) {
+        this.logRingCapacity = logRingCapacity;
+    }
+
+    /**
+     * Chu kỳ luồng log đẩy một khung lên giao diện và file
+     */
+    public long getLogFrameMs() {
+        return logFrameMs;
+    }
+
+    public void setLogFrameMs(long logFrameMs) {
+        this.logFrameMs = logFrameMs;
+    }
+
+    /**
+     * Số dòng log giữ trên màn hình; dòng cũ hơn bị xóa khỏi TextArea
+     */
+    public int getLogViewLines() {
+        return logViewLines;
+    }
+
+    public void setLogViewLines(int logViewLines) {
+        this.logViewLines = logViewLines;
+    }
+
+    /**
+     * File log xoay vòng; để rỗng để tắt ghi file
+     */
+    public String getLogFile() {
+        return logFile;
+    }
+
+    public void setLogFile(String logFile) {
+        this.logFile = logFile;
+    }
+
+    public long getLogFileMaxBytes() {
+        return logFileMaxBytes;
+    }
+
+    public void setLogFileMaxBytes(long logFileMaxBytes) {
+        this.logFileMaxBytes = logFileMaxBytes;
+    }
+
+    public int getLogFilesToKeep() {
+        return logFilesToKeep;
+    }
+
+    public void setLogFilesToKeep(int logFilesToKeep) {
+        this.logFilesToKeep = logFilesToKeep;
+    }
+
+    /**
+     * Danh sách node cluster (xem {@link ClusterTopology}); rỗng nếu không chạy cluster
+     */
+    public String getClusterNodes() {
+        return clusterNodes;
+    }
+
+    public void setClusterNodes(String clusterNodes) {
+        this.clusterNodes = clusterNodes;
+    }
+
+    public boolean isClustered() {
+        return clusterNodes != null && !clusterNodes.isBlank();
+    }
+
+    public ClusterTopology getClusterTopology() {
+        return ClusterTopology.parse(clusterNodes);
+    }
+
+    /**
+     * Chỉ số node của tiến trình này trong danh sách node; -1 với router hoặc server đơn
+     */
+    public int getClusterNode() {
+        return clusterNode;
+    }
+
+    public void setClusterNode(int clusterNode) {
+        this.clusterNode = clusterNode;
+    }
+
+    /**
+     * Thư mục chứa log quyết định 2PC của router
+     */
+    public String getClusterDir() {
+        return clusterDir;
+    }
+
+    public void setClusterDir(String clusterDir) {
+        this.clusterDir = clusterDir;
+    }
+
+    /**
+     * Cổng TCP mà primary mở cho follower kết nối tới; 0 = không bật nhân bản
+     */
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    public void setReplicationPort(int replicationPort) {
+        this.replicationPort = replicationPort;
+    }
+
+    /**
+     * Địa chỉ host:cổng của primary; khác rỗng thì tiến trình này chạy làm follower
+     */
+    public String getReplicationPrimary() {
+        return replicationPrimary;
+    }
+
+    public void setReplicationPrimary(String replicationPrimary) {
+        this.replicationPrimary = replicationPrimary;
+    }
+
+    public boolean isReplicationFollower() {
+        return replicationPrimary != null && !replicationPrimary.isBlank();
+    }
+
+    /**
+     * Follower tự nâng lên primary sau khi mất kết nối quá thời gian này; 0 = chỉ nâng thủ công
+     */
+    public long getReplicationFailoverMs() {
+        return replicationFailoverMs;
+    }
+
+    public void setReplicationFailoverMs(long replicationFailoverMs) {
+        this.replicationFailoverMs = replicationFailoverMs;
+    }
+
+    /**
+     * Số mã yêu cầu tối đa được nhớ để chống thực hiện lặp. Mã chưa hết hạn không bị đẩy ra, nên cần
+     * ít nhất (số yêu cầu có mã mỗi giây lúc cao điểm) × ttl: mặc định 250000 mã / 180 s ≈ 1400 yêu cầu/s;
+     * vượt mức đó thì yêu cầu mới bị từ chối cho tới khi mã cũ hết hạn
+     */
+    public int getDedupCapacity() {
+        return dedupCapacity;
+    }
+
+    public void setDedupCapacity(int dedupCapacity) {
+        this.dedupCapacity = dedupCapacity;
+    }
+
+    /**
+     * Thời gian một mã yêu cầu được nhớ. Từ system property thì không được ngắn hơn
+     * {@link BankService#RESUBMIT_WINDOW_MS}, thời gian client còn gửi lại cùng mã;
+     * đặt trực tiếp (benchmark) thì không kiểm tra
+     */
+    public long getDedupTtlMs() {
+        return dedupTtlMs;
+    }
+
+    public void setDedupTtlMs(long dedupTtlMs) {
+        this.dedupTtlMs = dedupTtlMs;
+    }
+
+    /**
+     * Ghi lịch sử giao dịch theo tài khoản (tắt thì getHistory trả trang rỗng)
+     */
+    public boolean isHistoryEnabled() {
+        return historyEnabled;
+    }
+
+    public void setHistoryEnabled(boolean historyEnabled) {
+        this.historyEnabled = historyEnabled;
+    }
+
+    public String getHistoryDir() {
+        return historyDir;
+    }
+
+    public void setHistoryDir(String historyDir) {
+        this.historyDir = historyDir;
+    }
+
+    /**
+     * Kích thước tối đa một segment lịch sử
+     */
+    public long getHistorySegmentBytes() {
+        return historySegmentBytes;
+    }
+
+    public void setHistorySegmentBytes(long historySegmentBytes) {
+        this.historySegmentBytes = historySegmentBytes;
+    }
+
+    /**
+     * Chu kỳ lưu chỉ mục đầu danh sách; sau khi dừng đột ngột chỉ phần ghi sau lần lưu cuối phải quét lại
+     */
+    public long getHistoryIndexIntervalMs() {
+        return historyIndexIntervalMs;
+    }
+
+    public void setHistoryIndexIntervalMs(long historyIndexIntervalMs) {
+        this.historyIndexIntervalMs = historyIndexIntervalMs;
+    }
+
+    /**
+     * Đăng ký thống kê thao tác làm MXBean trên platform MBeanServer
+     */
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    public void setMetricsJmx(boolean metricsJmx) {
+        this.metricsJmx = metricsJmx;
+    }
+
+    /**
+     * Chu kỳ in thống kê thao tác ra console; 0 = không in
+     */
+    public long getMetricsDumpIntervalMs() {
+        return metricsDumpIntervalMs;
+    }
+
+    public void setMetricsDumpIntervalMs(long metricsDumpIntervalMs) {
+        this.metricsDumpIntervalMs = metricsDumpIntervalMs;
+    }
+
+    /**
+     * Số vòng PBKDF2 khi băm PIN; càng lớn đăng nhập càng chậm và dò PIN từ dữ liệu bị lộ càng khó
+     */
+    public int getPbkdf2Iterations() {
+        return pbkdf2Iterations;
+    }
+
+    public void setPbkdf2Iterations(int pbkdf2Iterations) {
+        this.pbkdf2Iterations = pbkdf2Iterations;
+    }
+
+    /**
+     * Phiên đăng nhập hết hạn sau chừng này ms không có lời gọi
+     */
+    public long getSessionTtlMs() {
+        return sessionTtlMs;
+    }
+
+    public void setSessionTtlMs(long sessionTtlMs) {
+        this.sessionTtlMs = sessionTtlMs;
+    }
+}
@@ -1,6 +1,7 @@
 package com.vku.ebanking.server;
 
 import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BankService;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -10,8 +11,9 @@ import javafx.scene.control.cell.PropertyValueFactory;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayDeque;
+import java.util.List;
 
 public class ServerController {
     @FXML private Label statusLabel;
@@ -21,11 +23,17 @@ public class ServerController {
     @FXML private TableView<Account> accountTable;
     @FXML private TableColumn<Account, String> colAccountNumber;
     @FXML private TableColumn<Account, String> colAccountName;
-    @FXML private TableColumn<Account, Double> colBalance;
+    @FXML private TableColumn<Account, Long> colBalance;
 
     private BankServiceImpl bankService;
+    private BankService endpoint;
     private Registry registry;
     private boolean isRunning = false;
+    private final ServerEventListener logListener = this::log;
+    private ServerConfig config;
+    private ActivityLog activityLog;
+    // Độ dài từng dòng đang hiển thị, để xóa dòng cũ nhất khỏi đầu TextArea
+    private final ArrayDeque<Integer> viewLineLengths = new ArrayDeque<>();
 
     @FXML
     public void initialize() {
@@ -33,6 +41,9 @@ public class ServerController {
         colAccountName.setCellValueFactory(new PropertyValueFactory<>("accountName"));
         colBalance.setCellValueFactory(new PropertyValueFactory<>("balance"));
 
+        config = ServerConfig.fromSystemProperties();
+        activityLog = new ActivityLog(config, this::showFrame);
+
         stopButton.setDisable(true);
         log("Server sẵn sàng khởi động...");
     }
@@ -40,16 +51,20 @@ public class ServerController {
     @FXML
     private void startServer() {
         try {
-            bankService = new BankServiceImpl(this);
-            registry = LocateRegistry.createRegistry(1099);
-            registry.rebind("BankService", bankService);
+            long start = System.nanoTime();
+            bankService = new BankServiceImpl(config);
+            bankService.addListener(logListener);
+            registry = LocateRegistry.createRegistry(config.getRegistryPort());
+            endpoint = VirtualThreadBankService.forConfig(bankService, config);
+            registry.rebind("BankService", endpoint);
 
             isRunning = true;
             startButton.setDisable(true);
             stopButton.setDisable(false);
             statusLabel.setText("🟢 Server đang chạy");
             statusLabel.setStyle("-fx-text-fill: #10b981;");
-            log("✓ Server đã khởi động thành công trên cổng 1099");
+            log("✓ Server đã khởi động thành công trên cổng " + config.getRegistryPort()
+                    + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
 
             loadAccounts();
         } catch (Exception e) {
@@ -64,6 +79,14 @@ public class ServerController {
             if (registry != null) {
                 registry.unbind("BankService");
             }
+            if (endpoint instanceof VirtualThreadBankService virtualService) {
+                virtualService.shutdown();
+                UnicastRemoteObject.unexportObject(virtualService, true);
+            }
+            if (bankService != null) {
+                bankService.removeListener(logListener);
+                bankService.shutdown();
+            }
             isRunning = false;
             startButton.setDisable(false);
             stopButton.setDisable(true);
@@ -79,6 +102,14 @@ public class ServerController {
     private void refreshAccounts() {
         loadAccounts();
         log("Danh sách tài khoản đã được làm mới");
+        if (bankService != null) {
+            log("📊 " + bankService.getCommitMetrics());
+            log("📊 " + bankService.getCallbackDispatcher());
+            log(bankService.getMetrics().toString());
+            if (endpoint instanceof VirtualThreadBankService) {
+                log("📊 " + endpoint);
+            }
+        }
     }
 
     private void loadAccounts() {
@@ -89,10 +120,37 @@ public class ServerController {
         }
     }
 
+    /**
+     * Ghi log không chặn; dòng log được đưa lên màn hình theo từng khung bởi ActivityLog
+     */
     public void log(String message) {
-        Platform.runLater(() -> {
-            String timestamp = new SimpleDateFormat("HH:mm:ss").format(new Date());
-            logArea.appendText("[" + timestamp + "] " + message + "\n");
-        });
+        activityLog.publish(message);
+    }
+
+    /**
+     * Gọi từ luồng ActivityLog mỗi khung hình: một Platform.runLater cho cả khung
+     */
+    private void showFrame(List<String> lines) {
+        Platform.runLater(() -> appendToView(lines));
+    }
+
+    private void appendToView(List<String> lines) {
+        int viewLines = Math.max(1, config.getLogViewLines());
+        int from = Math.max(0, lines.size() - viewLines);
+        StringBuilder chunk = new StringBuilder();
+        for (int i = from; i < lines.size(); i++) {
+            String line = lines.get(i);
+            chunk.append(line).append('\n');
+            viewLineLengths.addLast(line.length() + 1);
+        }
+        logArea.appendText(chunk.toString());
+
+        int evicted = 0;
+        while (viewLineLengths.size() > viewLines) {
+            evicted += viewLineLengths.removeFirst();
+        }
+        if (evicted > 0) {
+            logArea.deleteText(0, evicted);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.vku.ebanking.server;
+
+/**
+ * Nhận log hoạt động (đăng nhập, giao dịch, callback) từ BankServiceImpl.
+ * Giao diện JavaFX đăng ký để hiển thị; server chạy không giao diện có thể không đăng ký gì,
+ * khi đó dòng log giao dịch không được tạo ra
+ */
+@FunctionalInterface
+public interface ServerEventListener {
+    void onLog(String message);
+}
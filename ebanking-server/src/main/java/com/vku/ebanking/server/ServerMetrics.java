@@ -0,0 +1,143 @@
+package com.vku.ebanking.server;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Các thống kê thao tác của một server: lời gọi BankService, ghi snapshot, commit journal,
+ * thời gian chờ khóa và thời gian gửi callback. Mỗi thao tác là một MXBean
+ * {@code com.vku.ebanking:type=Operation,name=<thao tác>} (xem bằng jconsole/VisualVM);
+ * với -Debanking.metrics.dumpIntervalMs > 0, toàn bộ được in ra console theo chu kỳ.
+ */
+public class ServerMetrics {
+    private static final String DOMAIN = "com.vku.ebanking";
+
+    private final OperationStats login = new OperationStats("login");
+    private final OperationStats authenticate = new OperationStats("authenticate");
+    private final OperationStats deposit = new OperationStats("deposit");
+    private final OperationStats withdraw = new OperationStats("withdraw");
+    private final OperationStats transfer = new OperationStats("transfer");
+    private final OperationStats submitBatch = new OperationStats("submitBatch");
+    private final OperationStats getHistory = new OperationStats("getHistory");
+    private final Map<String, OperationStats> operations = new LinkedHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private ScheduledExecutorService dumper;
+
+    public ServerMetrics() {
+        for (OperationStats stats : List.of(login, authenticate, deposit, withdraw, transfer, submitBatch, getHistory)) {
+            add(stats);
+        }
+    }
+
+    /**
+     * Thêm thống kê do thành phần khác giữ (khóa, callback, snapshot, commit); gọi trước {@link #start}
+     */
+    public void add(OperationStats stats) {
+        operations.put(stats.getName(), stats);
+    }
+
+    public OperationStats login() {
+        return login;
+    }
+
+    public OperationStats authenticate() {
+        return authenticate;
+    }
+
+    public OperationStats deposit() {
+        return deposit;
+    }
+
+    public OperationStats withdraw() {
+        return withdraw;
+    }
+
+    public OperationStats transfer() {
+        return transfer;
+    }
+
+    public OperationStats submitBatch() {
+        return submitBatch;
+    }
+
+    public OperationStats getHistory() {
+        return getHistory;
+    }
+
+    public OperationStats get(String name) {
+        return operations.get(name);
+    }
+
+    /**
+     * Đăng ký MXBean (nếu bật) và bắt đầu in định kỳ (nếu chu kỳ > 0)
+     */
+    public void start(ServerConfig config) {
+        if (config.isMetricsJmx()) {
+            registerMBeans();
+        }
+        long interval = config.getMetricsDumpIntervalMs();
+        if (interval > 0) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.println(this), interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationStats stats : operations.values()) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Operation,name=" + stats.getName());
+                try {
+                    server.registerMBean(stats, name);
+                } catch (InstanceAlreadyExistsException e) {
+                    // Server trước trong cùng JVM chưa gỡ (benchmark): thay bằng bản của server này
+                    server.unregisterMBean(name);
+                    server.registerMBean(stats, name);
+                }
+                registered.add(name);
+            } catch (JMException e) {
+                System.err.println("⚠️ Không đăng ký được MBean " + stats.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (dumper != null) {
+            dumper.shutdown();
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // Đã bị server khác thay thế
+            }
+        }
+        registered.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("📈 Thống kê thao tác:");
+        for (OperationStats stats : operations.values()) {
+            if (stats.getCount() > 0) {
+                text.append(System.lineSeparator()).append("   ").append(stats);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.SessionExpiredException;
+import com.vku.ebanking.shared.SessionToken;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Các phiên đăng nhập còn hiệu lực: mã phiên ngẫu nhiên 32 byte → số tài khoản.
+ *
+ * Tra cứu là một lần get trên ConcurrentHashMap, không băm lại PIN. Phiên hết hạn sau
+ * {@code ebanking.session.ttlMs} không có lời gọi nào (mỗi lời gọi gia hạn); phiên hết hạn bị từ chối
+ * ngay khi tra và được một luồng nền dọn định kỳ. Phiên chỉ nằm trong bộ nhớ: khởi động lại server
+ * thì client phải đăng nhập lại.
+ */
+public class SessionCache {
+    private static final int TOKEN_BYTES = 32;
+
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final long ttlNanos;
+    // Chỉ gia hạn khi đã trôi qua chừng này, để lời gọi liên tiếp không ghi vào cùng một mục
+    private final long renewAfterNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SessionCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.renewAfterNanos = ttlNanos / 16;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, ttlMs / 4);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static SessionCache forConfig(ServerConfig config) {
+        return new SessionCache(config.getSessionTtlMs());
+    }
+
+    public SessionToken create(String accountNumber) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = encoder.encodeToString(bytes);
+        sessions.put(token, new Entry(accountNumber, System.nanoTime() + ttlNanos));
+        created.increment();
+        return new SessionToken(token);
+    }
+
+    /**
+     * Số tài khoản của phiên, hoặc null nếu phiên không tồn tại hay đã hết hạn
+     */
+    public String resolve(SessionToken session) {
+        if (session == null || session.getValue() == null) {
+            return null;
+        }
+        Entry entry = sessions.get(session.getValue());
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        long remaining = entry.expiresAt - now;
+        if (remaining <= 0) {
+            if (sessions.remove(session.getValue(), entry)) {
+                expired.increment();
+            }
+            return null;
+        }
+        if (ttlNanos - remaining > renewAfterNanos) {
+            entry.expiresAt = now + ttlNanos;
+        }
+        return entry.accountNumber;
+    }
+
+    /**
+     * Như {@link #resolve} nhưng ném SessionExpiredException thay vì trả null
+     */
+    public String require(SessionToken session) throws SessionExpiredException {
+        String accountNumber = resolve(session);
+        if (accountNumber == null) {
+            rejected.increment();
+            throw new SessionExpiredException("Phiên đăng nhập không hợp lệ hoặc đã hết hạn");
+        }
+        return accountNumber;
+    }
+
+    /**
+     * Hủy phiên (đăng xuất); trả về số tài khoản của phiên hoặc null
+     */
+    public String invalidate(SessionToken session) {
+        if (session == null || session.getValue() == null) {
+            return null;
+        }
+        Entry entry = sessions.remove(session.getValue());
+        return entry == null ? null : entry.accountNumber;
+    }
+
+    void sweep() {
+        long now = System.nanoTime();
+        Iterator<Entry> entries = sessions.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().expiresAt - now <= 0) {
+                entries.remove();
+                expired.increment();
+            }
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "Phiên: " + sessions.size() + " đang mở, " + created.sum() + " đã tạo, " + expired.sum()
+                + " hết hạn, " + rejected.sum() + " lời gọi bị từ chối";
+    }
+
+    private static final class Entry {
+        final String accountNumber;
+        volatile long expiresAt;
+
+        Entry(String accountNumber, long expiresAt) {
+            this.accountNumber = accountNumber;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
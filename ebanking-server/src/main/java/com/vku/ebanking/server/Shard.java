@@ -0,0 +1,498 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Một phân vùng tài khoản ở chế độ SHARDED, do đúng một luồng sở hữu.
+ *
+ * Luồng của shard lấy một loạt lệnh từ hàng đợi, áp dụng lần lượt lên mảng số dư riêng (không khóa),
+ * ghi tất cả bản ghi của loạt đó vào journal riêng của shard bằng một lần write, rồi mới công bố
+ * số dư mới cho luồng đọc và hoàn tất các lệnh. Ghi journal lỗi thì số dư được khôi phục từ bản đã công bố.
+ * Checkpoint cũng chạy trên luồng này giữa hai loạt lệnh nên snapshot luôn khớp chính xác với seq.
+ */
+final class Shard {
+    private final int index;
+    private final AccountStore store;
+    private final long[] balances;
+    private final BalanceCells published;
+    private final XMLAccountHandler snapshots;
+    private final TransactionJournal journal;
+    private final BlockingQueue<ShardCommand> queue;
+    private final int maxBatch;
+    private final long checkpointIntervalMs;
+    private final long checkpointChanges;
+    private final int keepSnapshots;
+    private final SettleListener settleListener;
+
+    // DEBIT/CREDIT chưa kết thúc: mã chuyển khoản -> seq; segment journal chứa chúng chưa được xóa
+    private final Map<Long, Long> openDebits = new HashMap<>();
+    private final Map<Long, Long> openCredits = new HashMap<>();
+    // Xác nhận từ shard nguồn rằng chuyển khoản đã SETTLE, chuyển sang không qua hàng đợi có giới hạn
+    private final ConcurrentLinkedQueue<Long> settledCredits = new ConcurrentLinkedQueue<>();
+    private final BitSet dirty = new BitSet();
+
+    // Kết quả quét journal khi khởi động, dùng để xử lý chuyển khoản dở dang
+    private final Map<Long, JournalEntry> unresolvedDebits = new LinkedHashMap<>();
+    private final Set<Long> recoveredCredits = new HashSet<>();
+
+    private Thread thread;
+    private volatile boolean running = true;
+    private long changes;
+    private long lastCheckpointAt = System.currentTimeMillis();
+
+    /**
+     * Gọi trên luồng của shard nguồn khi SETTLE đã bền vững, để báo cho shard đích
+     */
+    interface SettleListener {
+        void settled(int targetShard, long transferId);
+    }
+
+    Shard(int index, List<Account> partition, Path journalDir, File snapshotDir, ServerConfig config,
+          SettleListener settleListener) throws IOException {
+        this.index = index;
+        this.settleListener = settleListener;
+        this.snapshots = new XMLAccountHandler(AccountXmlFormat.named(config.getXmlParser()),
+                snapshotDir, config.getSnapshotFormat());
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, config.getShardQueueCapacity()));
+        this.maxBatch = Math.max(1, config.getGroupCommitMaxBatch());
+        this.checkpointIntervalMs = config.getCheckpointIntervalMs();
+        this.checkpointChanges = config.getCheckpointChanges();
+        this.keepSnapshots = Math.max(1, config.getSnapshotsToKeep());
+
+        AccountSnapshot snapshot;
+        if (snapshots.hasSnapshot()) {
+            snapshot = snapshots.loadLatestSnapshot();
+        } else {
+            // Shard mới: bắt đầu từ trạng thái chung, journal cũ (nếu sót lại) không còn giá trị
+            deleteSegments(journalDir);
+            snapshot = new AccountSnapshot(partition, 0);
+            if (!snapshots.saveSnapshot(partition, 0)) {
+                throw new IOException("Không ghi được snapshot đầu tiên của shard " + index);
+            }
+        }
+        this.store = new HeapAccountStore(snapshot.getAccounts());
+        this.balances = new long[store.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = store.get(i).getBalance();
+        }
+        this.journal = new TransactionJournal(journalDir, config.getFsyncPolicy(), config.getFsyncIntervalMs());
+        recover(snapshot.getSeq());
+        this.published = new BalanceCells(store);
+        for (int i = 0; i < balances.length; i++) {
+            published.set(i, balances[i]);
+        }
+    }
+
+    /**
+     * Phát lại journal sau seq của snapshot; đồng thời quét mọi segment còn giữ để tìm
+     * các DEBIT chưa SETTLE/REFUND và các CREDIT đã ghi
+     */
+    private void recover(long snapshotSeq) throws IOException {
+        int replayed = journal.replay(0, record -> {
+            for (JournalEntry entry : record.getEntries()) {
+                if (record.getSeq() > snapshotSeq) {
+                    int slot = store.slotOf(entry.getAccountNumber());
+                    if (slot >= 0) {
+                        balances[slot] = entry.applyTo(balances[slot]);
+                    }
+                }
+                if (entry.getLeg() == TransferLeg.DEBIT) {
+                    unresolvedDebits.put(entry.getTransferId(), entry);
+                } else if (entry.getLeg() == TransferLeg.SETTLE || entry.getLeg() == TransferLeg.REFUND) {
+                    unresolvedDebits.remove(entry.getTransferId());
+                } else if (entry.getLeg() == TransferLeg.CREDIT) {
+                    recoveredCredits.add(entry.getTransferId());
+                }
+            }
+        });
+        journal.advanceTo(snapshotSeq);
+        if (replayed > 0) {
+            System.out.println("🔁 Shard " + index + ": đã quét " + replayed + " bản ghi journal");
+        }
+    }
+
+    Map<Long, JournalEntry> getUnresolvedDebits() {
+        return unresolvedDebits;
+    }
+
+    boolean hasRecoveredCredit(long transferId) {
+        return recoveredCredits.contains(transferId);
+    }
+
+    /**
+     * Kết thúc một chuyển khoản dở dang khi khởi động (trước khi luồng shard chạy):
+     * SETTLE nếu shard đích đã cộng tiền, ngược lại REFUND cho tài khoản nguồn
+     */
+    void resolve(JournalEntry debit, boolean credited) throws IOException {
+        long amount = debit.getAmount();
+        TransferLeg leg = credited ? TransferLeg.SETTLE : TransferLeg.REFUND;
+        journal.append(List.of(JournalEntry.leg(debit.getAccountNumber(), credited ? 0 : amount,
+                leg, debit.getTransferId())));
+        if (!credited) {
+            int slot = store.slotOf(debit.getAccountNumber());
+            balances[slot] += amount;
+            published.set(slot, balances[slot]);
+        }
+        System.out.println("🔧 Shard " + index + ": chuyển khoản dở dang " + debit.getTransferId()
+                + " -> " + leg);
+    }
+
+    void start() {
+        unresolvedDebits.clear();
+        recoveredCredits.clear();
+        thread = new Thread(this::run, "shard-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int slotOf(String accountNumber) {
+        return store.slotOf(accountNumber);
+    }
+
+    String accountNumberAt(int slot) {
+        return store.get(slot).getAccountNumber();
+    }
+
+    /**
+     * Số dư đã bền vững của tài khoản, đọc được từ mọi luồng
+     */
+    long balanceAt(int slot) {
+        return published.get(slot);
+    }
+
+    /**
+     * Xếp lệnh vào hàng đợi, chờ nếu hàng đợi đầy
+     */
+    ShardCommand submit(ShardCommand command) throws IOException {
+        if (!running) {
+            throw new IOException("Shard " + index + " đã dừng");
+        }
+        try {
+            queue.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bị ngắt khi chờ hàng đợi shard " + index, e);
+        }
+        return command;
+    }
+
+    void settledCredit(long transferId) {
+        settledCredits.add(transferId);
+    }
+
+    private void run() {
+        List<ShardCommand> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                ShardCommand first = queue.poll(100, TimeUnit.MILLISECONDS);
+                Long settled;
+                while ((settled = settledCredits.poll()) != null) {
+                    openCredits.remove(settled);
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                    process(batch);
+                    batch.clear();
+                }
+                maybeCheckpoint();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                System.err.println("❌ Lỗi shard " + index + ": " + e);
+                restoreDirty();
+                for (ShardCommand command : batch) {
+                    command.done.completeExceptionally(e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Áp dụng một loạt lệnh, ghi journal một lần, rồi công bố số dư và hoàn tất các lệnh
+     */
+    private void process(List<ShardCommand> batch) {
+        List<List<JournalEntry>> records = new ArrayList<>(batch.size());
+        long nextSeq = journal.getLastSeq() + 1;
+        for (ShardCommand command : batch) {
+            List<JournalEntry> entries = execute(command, nextSeq);
+            if (entries != null) {
+                records.add(entries);
+                command.seq = nextSeq++;
+            }
+        }
+
+        if (!records.isEmpty()) {
+            try {
+                journal.appendAll(records);
+            } catch (IOException e) {
+                System.err.println("❌ Lỗi ghi journal shard " + index + ": " + e.getMessage());
+                restoreDirty();
+                for (ShardCommand command : batch) {
+                    command.done.completeExceptionally(e);
+                }
+                return;
+            }
+            changes += records.size();
+        }
+
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            published.set(slot, balances[slot]);
+        }
+        dirty.clear();
+        for (ShardCommand command : batch) {
+            if (command.seq > 0) {
+                committed(command);
+            }
+            command.done.complete(command);
+        }
+    }
+
+    /**
+     * Áp dụng lệnh lên mảng số dư; trả về các entry journal, hoặc null nếu lệnh không thay đổi gì
+     */
+    private List<JournalEntry> execute(ShardCommand command, long seq) {
+        int slot = command.slot;
+        long amount = command.amount;
+        switch (command.type) {
+            case DEPOSIT, CREDIT, REFUND -> {
+                if (amount > Long.MAX_VALUE - balances[slot]) {
+                    return null;
+                }
+                command.balance = change(slot, amount);
+                if (command.type == ShardCommand.Type.DEPOSIT) {
+                    return List.of(JournalEntry.delta(accountNumberAt(slot), amount));
+                }
+                TransferLeg leg = command.type == ShardCommand.Type.CREDIT ? TransferLeg.CREDIT : TransferLeg.REFUND;
+                return List.of(JournalEntry.leg(accountNumberAt(slot), amount, leg, command.transferId));
+            }
+            case WITHDRAW, DEBIT -> {
+                if (balances[slot] < amount) {
+                    return null;
+                }
+                command.balance = change(slot, -amount);
+                if (command.type == ShardCommand.Type.WITHDRAW) {
+                    return List.of(JournalEntry.delta(accountNumberAt(slot), -amount));
+                }
+                command.transferId = ShardedEngine.transferId(seq, index);
+                return List.of(JournalEntry.leg(accountNumberAt(slot), -amount, TransferLeg.DEBIT,
+                        command.transferId));
+            }
+            case SETTLE -> {
+                command.balance = balances[slot];
+                return List.of(JournalEntry.leg(accountNumberAt(slot), 0, TransferLeg.SETTLE, command.transferId));
+            }
+            case TRANSFER -> {
+                int toSlot = command.toSlot;
+                if (balances[slot] < amount || amount > Long.MAX_VALUE - balances[toSlot]) {
+                    return null;
+                }
+                command.balance = change(slot, -amount);
+                command.toBalance = change(toSlot, amount);
+                return List.of(JournalEntry.delta(accountNumberAt(slot), -amount),
+                        JournalEntry.delta(accountNumberAt(toSlot), amount));
+            }
+            case BATCH -> {
+                return executeBatch(command);
+            }
+            default -> throw new IllegalStateException("Lệnh không hỗ trợ: " + command.type);
+        }
+    }
+
+    /**
+     * Batch mà mọi tài khoản thuộc shard này: các lệnh xét theo thứ tự, ATOMIC lỗi thì hoàn tác cả batch.
+     * Journal ghi một bản ghi gồm biến động ròng của từng tài khoản
+     */
+    private List<JournalEntry> executeBatch(ShardCommand command) {
+        Map<Integer, Long> net = new LinkedHashMap<>();
+        List<TransferResult> results = new ArrayList<>(command.instructions.size());
+        boolean failed = false;
+        for (TransferInstruction instruction : command.instructions) {
+            int from = store.slotOf(instruction.getFromAccount());
+            int to = store.slotOf(instruction.getToAccount());
+            long amount = instruction.getAmount();
+            TransferResult.Status status;
+            if (from < 0 || to < 0) {
+                status = TransferResult.Status.ACCOUNT_NOT_FOUND;
+            } else if (from == to) {
+                status = TransferResult.Status.SAME_ACCOUNT;
+            } else if (amount <= 0) {
+                status = TransferResult.Status.INVALID_AMOUNT;
+            } else if (balances[from] < amount || amount > Long.MAX_VALUE - balances[to]) {
+                status = TransferResult.Status.INSUFFICIENT_FUNDS;
+            } else {
+                status = TransferResult.Status.OK;
+                change(from, -amount);
+                change(to, amount);
+                net.merge(from, -amount, Long::sum);
+                net.merge(to, amount, Long::sum);
+            }
+            failed |= status != TransferResult.Status.OK;
+            results.add(new TransferResult(status));
+        }
+        command.results = results;
+
+        if (command.mode == BatchMode.ATOMIC && failed) {
+            for (Map.Entry<Integer, Long> change : net.entrySet()) {
+                balances[change.getKey()] -= change.getValue();
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    results.set(i, new TransferResult(TransferResult.Status.ABORTED));
+                }
+            }
+            return null;
+        }
+        if (net.isEmpty()) {
+            return null;
+        }
+        List<JournalEntry> entries = new ArrayList<>(net.size());
+        for (Map.Entry<Integer, Long> change : net.entrySet()) {
+            entries.add(JournalEntry.delta(accountNumberAt(change.getKey()), change.getValue()));
+        }
+        command.balance = 0;
+        return entries;
+    }
+
+    /**
+     * Bỏ các thay đổi chưa ghi journal, quay về số dư đã công bố
+     */
+    private void restoreDirty() {
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            balances[slot] = published.get(slot);
+        }
+        dirty.clear();
+    }
+
+    private long change(int slot, long amount) {
+        balances[slot] += amount;
+        dirty.set(slot);
+        return balances[slot];
+    }
+
+    /**
+     * Việc làm sau khi bản ghi của lệnh đã bền vững
+     */
+    private void committed(ShardCommand command) {
+        switch (command.type) {
+            case DEBIT -> openDebits.put(command.transferId, command.seq);
+            case CREDIT -> openCredits.put(command.transferId, command.seq);
+            case REFUND -> openDebits.remove(command.transferId);
+            case SETTLE -> {
+                openDebits.remove(command.transferId);
+                settleListener.settled(command.targetShard, command.transferId);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void maybeCheckpoint() {
+        boolean due = System.currentTimeMillis() - lastCheckpointAt >= checkpointIntervalMs;
+        if (changes >= checkpointChanges || (due && changes > 0)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Snapshot các tài khoản của shard tại seq cuối; segment journal chỉ bị xóa tới trước
+     * chặng chuyển khoản liên shard cũ nhất chưa kết thúc
+     */
+    private void checkpoint() {
+        try {
+            long seq = journal.roll();
+            List<Account> copy = new ArrayList<>(store.size());
+            for (int i = 0; i < balances.length; i++) {
+                Account account = store.get(i);
+                copy.add(new Account(account.getAccountNumber(), account.getAccountName(), balances[i],
+                        account.getPin()));
+            }
+            if (!snapshots.saveSnapshot(copy, seq)) {
+                return;
+            }
+            long keepFrom = snapshots.pruneSnapshots(keepSnapshots);
+            long oldestOpen = Math.min(oldest(openDebits), oldest(openCredits));
+            journal.deleteSegmentsThrough(Math.min(keepFrom, oldestOpen - 1));
+            changes = 0;
+            lastCheckpointAt = System.currentTimeMillis();
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi checkpoint shard " + index + ": " + e.getMessage());
+        }
+    }
+
+    private static long oldest(Map<Long, Long> open) {
+        long oldest = Long.MAX_VALUE;
+        for (long seq : open.values()) {
+            oldest = Math.min(oldest, seq);
+        }
+        return oldest;
+    }
+
+    /**
+     * Còn chuyển khoản liên shard đã trừ tiền mà chưa SETTLE/REFUND hay không; chỉ gọi sau {@link #shutdown()}
+     */
+    boolean hasOpenDebits() {
+        return !openDebits.isEmpty();
+    }
+
+    /**
+     * Dừng luồng shard sau khi xử lý hết hàng đợi, rồi đóng journal
+     */
+    void shutdown() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ShardCommand late;
+        while ((late = queue.poll()) != null) {
+            late.done.completeExceptionally(new IOException("Shard " + index + " đã dừng"));
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi đóng journal shard " + index + ": " + e.getMessage());
+        }
+    }
+
+    private static void deleteSegments(Path journalDir) throws IOException {
+        if (!Files.isDirectory(journalDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Một lệnh trong hàng đợi của shard. Luồng của shard điền kết quả rồi hoàn tất {@link #done}
+ * sau khi bản ghi journal của lệnh đã được ghi.
+ */
+final class ShardCommand {
+    enum Type { DEPOSIT, WITHDRAW, TRANSFER, BATCH, DEBIT, CREDIT, REFUND, SETTLE }
+
+    final Type type;
+    final int slot;
+    final int toSlot;
+    final long amount;
+    // Shard đích của DEBIT/SETTLE
+    final int targetShard;
+    final List<TransferInstruction> instructions;
+    final BatchMode mode;
+    final CompletableFuture<ShardCommand> done = new CompletableFuture<>();
+
+    // Mã chuyển khoản liên shard: do DEBIT sinh ra, các chặng sau mang theo
+    long transferId;
+    // Số dư sau lệnh của tài khoản slot (-1 nếu lệnh bị từ chối) và của toSlot
+    long balance = -1;
+    long toBalance;
+    long seq;
+    List<TransferResult> results;
+
+    private ShardCommand(Type type, int slot, int toSlot, long amount, int targetShard, long transferId,
+                         List<TransferInstruction> instructions, BatchMode mode) {
+        this.type = type;
+        this.slot = slot;
+        this.toSlot = toSlot;
+        this.amount = amount;
+        this.targetShard = targetShard;
+        this.transferId = transferId;
+        this.instructions = instructions;
+        this.mode = mode;
+    }
+
+    static ShardCommand single(Type type, int slot, long amount) {
+        return new ShardCommand(type, slot, -1, amount, -1, 0, null, null);
+    }
+
+    static ShardCommand transfer(int fromSlot, int toSlot, long amount) {
+        return new ShardCommand(Type.TRANSFER, fromSlot, toSlot, amount, -1, 0, null, null);
+    }
+
+    static ShardCommand leg(Type type, int slot, long amount, int targetShard, long transferId) {
+        return new ShardCommand(type, slot, -1, amount, targetShard, transferId, null, null);
+    }
+
+    static ShardCommand batch(List<TransferInstruction> instructions, BatchMode mode) {
+        return new ShardCommand(Type.BATCH, -1, -1, 0, -1, 0, instructions, mode);
+    }
+
+    boolean isRejected() {
+        return balance < 0;
+    }
+}
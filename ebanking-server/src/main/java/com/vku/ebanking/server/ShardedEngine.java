@@ -0,0 +1,305 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Bộ máy giao dịch chế độ SHARDED: tài khoản chia theo băm số tài khoản vào N {@link Shard},
+ * mỗi lời gọi được chuyển thành lệnh trong hàng đợi của shard sở hữu tài khoản.
+ *
+ * Chuyển khoản trong cùng shard là một lệnh. Chuyển khoản liên shard đi hai bước:
+ * DEBIT ở shard nguồn (sinh mã chuyển khoản), CREDIT ở shard đích; cộng không được thì REFUND
+ * ở shard nguồn; cộng xong thì SETTLE ở shard nguồn (không chờ). Khi khởi động, DEBIT chưa có
+ * SETTLE/REFUND được SETTLE nếu shard đích đã có CREDIT cùng mã, ngược lại được hoàn tiền,
+ * nên tổng tiền luôn được bảo toàn.
+ *
+ * Mỗi shard có journal và snapshot riêng trong {@code <journal>/shard-i} và {@code <snapshots>/shard-i}.
+ * Khi dừng bình thường, số dư được gộp về snapshot chung và các thư mục shard bị xóa;
+ * nếu server dừng đột ngột, lần chạy SHARDED sau khôi phục từ các thư mục shard.
+ */
+public class ShardedEngine {
+    private static final String SHARD_DIR_PREFIX = "shard-";
+    // Mã chuyển khoản = seq của DEBIT ghép với chỉ số shard nguồn
+    private static final int SHARD_BITS = 10;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private final Shard[] shards;
+    private final Path journalRoot;
+    private final File snapshotRoot;
+    private final AtomicInteger crossShardInFlight = new AtomicInteger();
+    private volatile boolean accepting = true;
+
+    public ShardedEngine(AccountStore accounts, ServerConfig config) throws IOException {
+        int count = config.getShards();
+        if (count < 1 || count > MAX_SHARDS) {
+            throw new IOException("Số shard phải trong khoảng 1.." + MAX_SHARDS + ": " + count);
+        }
+        this.journalRoot = Paths.get(config.getJournalDir());
+        this.snapshotRoot = new File(config.getSnapshotDir());
+        int existing = existingShardDirs(config);
+        if (existing > 0 && existing != count) {
+            throw new IOException("Thư mục journal còn trạng thái của " + existing
+                    + " shard từ lần chạy trước; chạy lại với -Debanking.shards=" + existing);
+        }
+
+        List<List<Account>> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<>(accounts.size() / count + 1));
+        }
+        for (Account account : accounts.asList()) {
+            partitions.get(shardOf(account.getAccountNumber(), count)).add(account);
+        }
+
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, partitions.get(i), journalRoot.resolve(SHARD_DIR_PREFIX + i),
+                    new File(snapshotRoot, SHARD_DIR_PREFIX + i), config, this::settled);
+        }
+        resolveInDoubtTransfers();
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        System.out.println("🧩 Chế độ SHARDED: " + count + " shard, mỗi shard một luồng ghi");
+    }
+
+    /**
+     * Số thư mục shard còn lại trong thư mục journal (0 nếu lần trước dừng bình thường hoặc chưa chạy SHARDED)
+     */
+    public static int existingShardDirs(ServerConfig config) {
+        File[] dirs = new File(config.getJournalDir()).listFiles(
+                file -> file.isDirectory() && file.getName().startsWith(SHARD_DIR_PREFIX));
+        return dirs == null ? 0 : dirs.length;
+    }
+
+    static long transferId(long seq, int shardIndex) {
+        return (seq << SHARD_BITS) | shardIndex;
+    }
+
+    private static int shardOf(String accountNumber, int count) {
+        int h = accountNumber.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), count);
+    }
+
+    private Shard shardFor(String accountNumber) {
+        return shards[shardOf(accountNumber, shards.length)];
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Số dư đã bền vững, -1 nếu không có tài khoản
+     */
+    public long balanceOf(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        Shard shard = shardFor(accountNumber);
+        int slot = shard.slotOf(accountNumber);
+        return slot < 0 ? -1 : shard.balanceAt(slot);
+    }
+
+    /**
+     * Nạp tiền; trả về lệnh đã xong (bị từ chối nếu không có tài khoản hoặc tràn số), null nếu không có tài khoản
+     */
+    ShardCommand deposit(String accountNumber, long amount) throws IOException {
+        return single(ShardCommand.Type.DEPOSIT, accountNumber, amount);
+    }
+
+    ShardCommand withdraw(String accountNumber, long amount) throws IOException {
+        return single(ShardCommand.Type.WITHDRAW, accountNumber, amount);
+    }
+
+    private ShardCommand single(ShardCommand.Type type, String accountNumber, long amount) throws IOException {
+        Shard shard = shardFor(accountNumber);
+        int slot = shard.slotOf(accountNumber);
+        if (slot < 0) {
+            return null;
+        }
+        return await(shard.submit(ShardCommand.single(type, slot, amount)));
+    }
+
+    /**
+     * Chuyển khoản; trả về lệnh mang số dư sau của hai tài khoản, null nếu không thực hiện được
+     */
+    ShardCommand transfer(String fromAccount, String toAccount, long amount) throws IOException {
+        Shard source = shardFor(fromAccount);
+        Shard target = shardFor(toAccount);
+        int fromSlot = source.slotOf(fromAccount);
+        int toSlot = target.slotOf(toAccount);
+        if (fromSlot < 0 || toSlot < 0 || fromAccount.equals(toAccount)) {
+            return null;
+        }
+        if (source == target) {
+            ShardCommand done = await(source.submit(ShardCommand.transfer(fromSlot, toSlot, amount)));
+            return done.isRejected() ? null : done;
+        }
+
+        if (!accepting) {
+            throw new IOException("Bộ máy shard đang dừng");
+        }
+        crossShardInFlight.incrementAndGet();
+        try {
+            ShardCommand debit = await(source.submit(ShardCommand.leg(ShardCommand.Type.DEBIT, fromSlot, amount,
+                    target.getIndex(), 0)));
+            if (debit.isRejected()) {
+                return null;
+            }
+            ShardCommand credit = null;
+            IOException failure = null;
+            try {
+                credit = await(target.submit(ShardCommand.leg(ShardCommand.Type.CREDIT, toSlot, amount,
+                        -1, debit.transferId)));
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (credit == null || credit.isRejected()) {
+                // Hoàn tiền; nếu cả bước này lỗi, lần khởi động sau sẽ hoàn vì shard đích không có CREDIT
+                await(source.submit(ShardCommand.leg(ShardCommand.Type.REFUND, fromSlot, amount,
+                        -1, debit.transferId)));
+                if (failure != null) {
+                    throw failure;
+                }
+                return null;
+            }
+            source.submit(ShardCommand.leg(ShardCommand.Type.SETTLE, fromSlot, 0,
+                    target.getIndex(), debit.transferId));
+            debit.toBalance = credit.balance;
+            return debit;
+        } finally {
+            crossShardInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Batch mà mọi tài khoản thuộc cùng một shard chạy thành một lệnh (ATOMIC được bảo đảm);
+     * trả về null nếu batch trải trên nhiều shard
+     */
+    List<TransferResult> submitLocalBatch(List<TransferInstruction> instructions, BatchMode mode)
+            throws IOException {
+        Shard shard = null;
+        for (TransferInstruction instruction : instructions) {
+            for (String number : new String[] {instruction.getFromAccount(), instruction.getToAccount()}) {
+                Shard owner = number == null ? null : shardFor(number);
+                if (shard != null && owner != shard) {
+                    return null;
+                }
+                shard = owner;
+            }
+        }
+        if (shard == null) {
+            return new ArrayList<>();
+        }
+        return await(shard.submit(ShardCommand.batch(instructions, mode))).results;
+    }
+
+    private ShardCommand await(ShardCommand command) throws IOException {
+        try {
+            return command.done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Lỗi thực thi lệnh shard", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Bị ngắt khi chờ shard");
+            interrupted.initCause(e);
+            throw interrupted;
+        }
+    }
+
+    private void settled(int targetShard, long transferId) {
+        shards[targetShard].settledCredit(transferId);
+    }
+
+    /**
+     * Xử lý các DEBIT dở dang từ lần chạy trước, trước khi các luồng shard bắt đầu
+     */
+    private void resolveInDoubtTransfers() throws IOException {
+        for (Shard shard : shards) {
+            for (Map.Entry<Long, JournalEntry> debit : shard.getUnresolvedDebits().entrySet()) {
+                boolean credited = false;
+                for (Shard other : shards) {
+                    credited |= other.hasRecoveredCredit(debit.getKey());
+                }
+                shard.resolve(debit.getValue(), credited);
+            }
+        }
+    }
+
+    /**
+     * Ghi số dư hiện tại của mọi tài khoản vào các đối tượng Account của kho chung
+     */
+    public void copyBalancesTo(AccountStore accounts) {
+        for (int slot = 0; slot < accounts.size(); slot++) {
+            long balance = balanceOf(accounts.accountNumber(slot));
+            if (balance >= 0) {
+                accounts.setBalance(slot, balance);
+            }
+        }
+    }
+
+    /**
+     * Ngừng nhận chuyển khoản liên shard mới, chờ các chuyển khoản đang dở xong, rồi dừng các shard.
+     * Trả về true nếu không còn chuyển khoản nào đã trừ tiền mà chưa kết thúc
+     */
+    public boolean shutdown() {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (crossShardInFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+        boolean clean = crossShardInFlight.get() == 0;
+        for (Shard shard : shards) {
+            shard.shutdown();
+        }
+        for (Shard shard : shards) {
+            clean &= !shard.hasOpenDebits();
+        }
+        return clean;
+    }
+
+    /**
+     * Xóa journal và snapshot của các shard sau khi trạng thái đã được gộp vào snapshot chung
+     */
+    public void discardShardState() {
+        for (int i = 0; i < shards.length; i++) {
+            deleteRecursively(journalRoot.resolve(SHARD_DIR_PREFIX + i));
+            deleteRecursively(new File(snapshotRoot, SHARD_DIR_PREFIX + i).toPath());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Không xóa được " + dir + ": " + e.getMessage());
+        }
+    }
+}
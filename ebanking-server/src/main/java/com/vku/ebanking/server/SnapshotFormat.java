@@ -0,0 +1,21 @@
+package com.vku.ebanking.server;
+
+/**
+ * Định dạng file snapshot trong thư mục snapshot
+ */
+public enum SnapshotFormat {
+    /** accounts-&lt;seq&gt;.xml, cùng bố cục với accounts.xml */
+    XML(".xml"),
+    /** accounts-&lt;seq&gt;.bin, xem {@link BinarySnapshotFormat} */
+    BINARY(".bin");
+
+    private final String extension;
+
+    SnapshotFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,136 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.Money;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Đọc/ghi accounts.xml bằng StAX (XMLStreamReader/XMLStreamWriter).
+ * Duyệt file một lượt, chỉ giữ tài khoản đang đọc; bộ nhớ phụ không phụ thuộc kích thước file.
+ */
+public class StaxAccountXmlFormat implements AccountXmlFormat {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String INDENT_ACCOUNT = "\n    ";
+    private static final String INDENT_FIELD = "\n        ";
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory;
+
+    public StaxAccountXmlFormat() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        outputFactory = XMLOutputFactory.newInstance();
+    }
+
+    @Override
+    public void read(File file, Consumer<Account> consumer) throws Exception {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                readAccounts(reader, consumer);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private void readAccounts(XMLStreamReader reader, Consumer<Account> consumer) throws XMLStreamException {
+        String accountNumber = "";
+        String accountName = "";
+        String balance = "";
+        String pin = "";
+        boolean inAccount = false;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String tag = reader.getLocalName();
+                if (tag.equals("account")) {
+                    inAccount = true;
+                    accountNumber = "";
+                    accountName = "";
+                    balance = "";
+                    pin = "";
+                } else if (inAccount) {
+                    switch (tag) {
+                        case "accountNumber" -> accountNumber = reader.getElementText();
+                        case "accountName" -> accountName = reader.getElementText();
+                        case "balance" -> balance = reader.getElementText();
+                        case "pin" -> pin = reader.getElementText();
+                        default -> skipElement(reader);
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("account")) {
+                inAccount = false;
+                consumer.accept(new Account(accountNumber, accountName, Money.parseLegacy(balance), pin));
+            }
+        }
+    }
+
+    /**
+     * Bỏ qua một element không biết (kể cả các element con)
+     */
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public void write(List<Account> accounts, File file) throws Exception {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            try {
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeCharacters("\n");
+                writer.writeStartElement("accounts");
+                for (Account account : accounts) {
+                    writer.writeCharacters(INDENT_ACCOUNT);
+                    writer.writeStartElement("account");
+                    writeField(writer, "accountNumber", account.getAccountNumber());
+                    writeField(writer, "accountName", account.getAccountName());
+                    writeField(writer, "balance", Long.toString(account.getBalance()));
+                    writeField(writer, "pin", account.getPin());
+                    writer.writeCharacters(INDENT_ACCOUNT);
+                    writer.writeEndElement();
+                }
+                writer.writeCharacters("\n");
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.flush();
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private void writeField(XMLStreamWriter writer, String tag, String value) throws XMLStreamException {
+        writer.writeCharacters(INDENT_FIELD);
+        writer.writeStartElement(tag);
+        writer.writeCharacters(value == null ? "" : value);
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,575 @@
+package com.vku.ebanking.server;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal ghi trước (write-ahead) dạng nhị phân, chỉ ghi nối tiếp, chia thành nhiều segment.
+ *
+ * Mỗi segment là một file {@code journal-<seq đầu tiên>.log}: header 8 byte (magic "EBJ1" + version),
+ * sau đó là các bản ghi [int độ dài payload][int CRC32 payload][payload]. Payload gồm seq (long),
+ * số entry (short) và từng entry (số tài khoản UTF-8 + loại entry (byte) + số dư hoặc delta long theo đồng);
+ * entry là chặng chuyển khoản có thêm chặng (byte) và mã chuyển khoản (long) trước giá trị,
+ * chặng ghi số dư tuyệt đối có thêm cả số tiền (long).
+ * Segment version cũ (1: số dư double, 2: chưa có loại entry) vẫn đọc được;
+ * segment đó được đóng lại và ghi tiếp sang segment mới.
+ * Bản ghi cuối bị ghi dở (crash giữa chừng) được phát hiện qua CRC và bị cắt bỏ khi mở;
+ * segment cuối chưa kịp ghi xong header (crash ngay sau khi tạo file) được tạo lại.
+ * Lần ghi lỗi giữa chừng được cắt khỏi file và seq cuối giữ nguyên; fsync lỗi (hoặc không cắt được)
+ * thì journal dừng ghi hẳn, mọi lần ghi sau đều báo lỗi.
+ * Khi checkpoint, journal chuyển sang segment mới; các segment cũ đã nằm trọn trong snapshot thì bị xóa.
+ */
+public class TransactionJournal implements Closeable {
+    private static final int MAGIC = 0x45424A31; // "EBJ1"
+    private static final int VERSION = 3;
+    private static final int DOUBLE_BALANCE_VERSION = 1;
+    private static final int ABSOLUTE_ONLY_VERSION = 2;
+    private static final byte KIND_BALANCE = 0;
+    private static final byte KIND_DELTA = 1;
+    private static final byte KIND_TRANSFER_LEG = 2;
+    private static final byte KIND_TRANSFER_LEG_BALANCE = 3;
+    private static final TransferLeg[] LEGS = TransferLeg.values();
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final int MAX_ENTRIES = Short.MAX_VALUE;
+    // Entry số dư tuyệt đối: độ dài số tài khoản (short) + số tài khoản + loại + số dư
+    private static final int BALANCE_ENTRY_OVERHEAD = 2 + 1 + 8;
+    private static final int TYPICAL_ACCOUNT_NUMBER_BYTES = 32;
+    /**
+     * Số lệnh tối đa của một batch để bản ghi của nó (tối đa hai entry mỗi lệnh) còn đọc lại được,
+     * tính cho số tài khoản tới 32 byte. Số tài khoản dài hơn thì {@link #checkRecord} vẫn chặn lúc commit
+     */
+    public static final int MAX_BATCH_ITEMS = Math.min(MAX_ENTRIES / 2,
+            (MAX_RECORD_SIZE - 10) / (2 * (BALANCE_ENTRY_OVERHEAD + TYPICAL_ACCOUNT_NUMBER_BYTES)));
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private ScheduledExecutorService syncTimer;
+    private volatile FileChannel channel;
+    private Path currentSegment;
+    private long lastSeq;
+    // Khác null sau lỗi không khôi phục được: từ chối mọi lần ghi tiếp theo
+    private IOException failure;
+
+    public TransactionJournal(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            currentSegment = segments.get(segments.size() - 1);
+            lastSeq = firstSeqOf(currentSegment) - 1;
+            if (isTornSegment(currentSegment)) {
+                System.out.println("⚠️ Segment journal " + currentSegment.getFileName()
+                        + " chưa ghi xong header, đang tạo lại");
+                Files.delete(currentSegment);
+                openSegment(lastSeq + 1);
+            } else {
+                channel = FileChannel.open(currentSegment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            if (recoverTail() != VERSION) {
+                channel.close();
+                openSegment(lastSeq + 1);
+            }
+        }
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncTimer.scheduleWithFixedDelay(this::syncQuietly,
+                    fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("📒 Journal mở tại " + directory.toAbsolutePath()
+                + " (" + segments.size() + " segment, seq cuối " + lastSeq + ")");
+    }
+
+    /**
+     * Ghi một bản ghi gồm các entry; trả về số thứ tự (seq) của bản ghi
+     */
+    public long append(List<JournalEntry> entries) throws IOException {
+        return appendAll(List.of(entries));
+    }
+
+    /**
+     * Ghi nhiều bản ghi bằng một lần write và (với ALWAYS) một lần force.
+     * Dùng cho group commit; trả về seq của bản ghi cuối cùng
+     */
+    public long appendAll(List<List<JournalEntry>> records) throws IOException {
+        writeLock.lock();
+        try {
+            checkWritable();
+            long seq = lastSeq;
+            buffer.clear();
+            for (List<JournalEntry> entries : records) {
+                encode(++seq, entries);
+            }
+            writeBuffer(seq);
+            return seq;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Ghi các bản ghi giữ nguyên seq của chúng (follower nhận từ primary); seq phải tăng dần
+     * và lớn hơn seq cuối hiện tại. Trả về seq của bản ghi cuối cùng
+     */
+    public long appendRecords(List<JournalRecord> records) throws IOException {
+        writeLock.lock();
+        try {
+            checkWritable();
+            long seq = lastSeq;
+            buffer.clear();
+            for (JournalRecord record : records) {
+                if (record.getSeq() <= seq) {
+                    throw new IOException("Seq " + record.getSeq() + " không lớn hơn seq cuối " + seq);
+                }
+                seq = record.getSeq();
+                encode(seq, record.getEntries());
+            }
+            writeBuffer(seq);
+            return seq;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal đã dừng ghi sau lỗi: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Ghi buffer rồi mới nhận seq mới. Lỗi write: cắt phần ghi dở để lần ghi sau không nằm sau rác.
+     * Lỗi fsync: cũng cắt, nhưng sau đó không còn biết trang nào đã xuống đĩa nên journal dừng ghi hẳn
+     */
+    private void writeBuffer(long seq) throws IOException {
+        long start = channel.position();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            rollBack(start, e);
+            throw e;
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                rollBack(start, e);
+                failure = e;
+                throw e;
+            }
+        }
+        lastSeq = seq;
+    }
+
+    /**
+     * Cắt segment về vị trí trước lần ghi lỗi; không cắt được thì đánh dấu journal hỏng
+     */
+    private void rollBack(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+        System.err.println("❌ Lỗi ghi journal, đã cắt về " + start + " byte: " + cause.getMessage());
+    }
+
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Phát lại theo thứ tự các bản ghi có seq lớn hơn {@code afterSeq}; trả về số bản ghi đã phát lại
+     */
+    public int replay(long afterSeq, Consumer<JournalRecord> consumer) throws IOException {
+        return replay(afterSeq, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Phát lại các bản ghi có seq trong khoảng ({@code afterSeq}, {@code throughSeq}];
+     * segment bắt đầu sau {@code throughSeq} (kể cả segment đang ghi) không được mở
+     */
+    public int replay(long afterSeq, long throughSeq, Consumer<JournalRecord> consumer) throws IOException {
+        List<Path> segments = listSegments();
+        int count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            // Segment kết thúc trước seq bắt đầu của segment kế tiếp
+            if (i + 1 < segments.size() && firstSeqOf(segments.get(i + 1)) - 1 <= afterSeq) {
+                continue;
+            }
+            if (firstSeqOf(segments.get(i)) > throughSeq) {
+                break;
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(segments.get(i)), 64 * 1024))) {
+                int version = checkHeader(in, segments.get(i));
+                JournalRecord record;
+                while ((record = readRecord(in, version)) != null) {
+                    if (record.getSeq() > throughSeq) {
+                        break;
+                    }
+                    if (record.getSeq() > afterSeq) {
+                        consumer.accept(record);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Bảo đảm seq tiếp theo lớn hơn {@code seq} (seq gốc của snapshot vừa nạp),
+     * kể cả khi các segment cũ đã bị xóa
+     */
+    public void advanceTo(long seq) {
+        writeLock.lock();
+        try {
+            lastSeq = Math.max(lastSeq, seq);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Đóng segment hiện tại và mở segment mới.
+     * Trả về seq cuối cùng của segment cũ: mọi bản ghi tới seq này đều đã được ghi
+     */
+    public long roll() throws IOException {
+        writeLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+            openSegment(lastSeq + 1);
+            return lastSeq;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Xóa các segment (trừ segment đang ghi) chỉ chứa bản ghi có seq không lớn hơn {@code seq}
+     */
+    public int deleteSegmentsThrough(long seq) throws IOException {
+        List<Path> segments = listSegments();
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i).equals(currentSegment) || firstSeqOf(segments.get(i + 1)) - 1 > seq) {
+                break;
+            }
+            Files.deleteIfExists(segments.get(i));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Seq đầu tiên còn có thể phát lại (segment cũ nhất còn giữ)
+     */
+    public long getFirstSeq() throws IOException {
+        List<Path> segments = listSegments();
+        return segments.isEmpty() ? getLastSeq() + 1 : firstSeqOf(segments.get(0));
+    }
+
+    public long getLastSeq() {
+        writeLock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.shutdownNow();
+        }
+        writeLock.lock();
+        try {
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (ClosedChannelException e) {
+            // Segment vừa được chuyển; segment cũ đã force khi đóng
+        } catch (IOException e) {
+            System.err.println("❌ Lỗi fsync journal: " + e.getMessage());
+        }
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel newChannel = FileChannel.open(segment, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        newChannel.write(header, 0);
+        newChannel.truncate(HEADER_SIZE);
+        newChannel.position(HEADER_SIZE);
+        newChannel.force(true);
+        // File mới chỉ còn sau crash khi mục của nó trong thư mục đã bền; bản ghi commit vào đây phụ thuộc điều đó
+        DurableFiles.forceDirectory(directory);
+        currentSegment = segment;
+        channel = newChannel;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Tên file chứa seq đệm 20 chữ số nên sắp xếp theo tên cũng là theo seq
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Từ chối bản ghi mà readRecord sẽ coi là hỏng khi đọc lại (quá {@value #MAX_ENTRIES} entry
+     * hoặc payload quá 1 MiB), để nó không được báo commit rồi bị cắt bỏ khi khởi động lại
+     */
+    public static void checkRecord(List<JournalEntry> entries) throws IOException {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IOException("Bản ghi journal có " + entries.size() + " entry, tối đa " + MAX_ENTRIES);
+        }
+        long size = 10;
+        for (JournalEntry entry : entries) {
+            size += encodedLength(entry, entry.getAccountNumber().length() * 3L);
+        }
+        if (size <= MAX_RECORD_SIZE) {
+            return;
+        }
+        // Ước lượng 3 byte mỗi ký tự vượt giới hạn: tính đúng độ dài UTF-8
+        size = 10;
+        for (JournalEntry entry : entries) {
+            size += encodedLength(entry, entry.getAccountNumber().getBytes(StandardCharsets.UTF_8).length);
+        }
+        if (size > MAX_RECORD_SIZE) {
+            throw new IOException("Bản ghi journal " + size + " byte, tối đa " + MAX_RECORD_SIZE);
+        }
+    }
+
+    private static long encodedLength(JournalEntry entry, long numberBytes) {
+        long length = BALANCE_ENTRY_OVERHEAD + numberBytes;
+        if (entry.getLeg() != null) {
+            length += 1 + 8 + (entry.isDelta() ? 0 : 8);
+        }
+        return length;
+    }
+
+    /**
+     * Mã hóa một bản ghi nối vào cuối buffer hiện tại; bản ghi vượt giới hạn đọc thì bị bỏ khỏi buffer
+     * và báo lỗi (cả lần ghi thất bại) thay vì ghi ra bản ghi không đọc lại được
+     */
+    private void encode(long seq, List<JournalEntry> entries) throws IOException {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IOException("Bản ghi journal có " + entries.size() + " entry, tối đa " + MAX_ENTRIES);
+        }
+        ensureCapacity(RECORD_HEADER_SIZE + 10);
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.putLong(seq);
+        buffer.putShort((short) entries.size());
+        for (JournalEntry entry : entries) {
+            byte[] number = entry.getAccountNumber().getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(2 + number.length + 1 + 17 + 8);
+            buffer.putShort((short) number.length);
+            buffer.put(number);
+            if (entry.getLeg() != null) {
+                buffer.put(entry.isDelta() ? KIND_TRANSFER_LEG : KIND_TRANSFER_LEG_BALANCE);
+                buffer.put((byte) entry.getLeg().ordinal());
+                buffer.putLong(entry.getTransferId());
+                if (!entry.isDelta()) {
+                    buffer.putLong(entry.getAmount());
+                }
+            } else {
+                buffer.put(entry.isDelta() ? KIND_DELTA : KIND_BALANCE);
+            }
+            buffer.putLong(entry.getBalance());
+        }
+        int payloadLength = buffer.position() - start - RECORD_HEADER_SIZE;
+        if (payloadLength > MAX_RECORD_SIZE) {
+            buffer.position(start);
+            throw new IOException("Bản ghi journal seq " + seq + " dài " + payloadLength + " byte, tối đa "
+                    + MAX_RECORD_SIZE);
+        }
+        crc.reset();
+        crc.update(buffer.array(), start + RECORD_HEADER_SIZE, payloadLength);
+        buffer.putInt(start, payloadLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() < extra) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * Đọc segment cuối để tìm seq cuối cùng, cắt phần đuôi ghi dở nếu có; trả về version của segment
+     */
+    private int recoverTail() throws IOException {
+        long size = channel.size();
+        long position = HEADER_SIZE;
+        int version;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(currentSegment), 64 * 1024))) {
+            version = checkHeader(in, currentSegment);
+            JournalRecord record;
+            while ((record = readRecord(in, version)) != null) {
+                lastSeq = record.getSeq();
+                position += RECORD_HEADER_SIZE + record.getEncodedLength();
+            }
+        }
+
+        if (position < size) {
+            System.out.println("⚠️ Journal có " + (size - position) + " byte ghi dở ở cuối, đang cắt bỏ");
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        return version;
+    }
+
+    /**
+     * Segment tạo xong nhưng header chưa xuống đĩa: không quá HEADER_SIZE byte và header không đọc được.
+     * Segment dài hơn mà header sai là hỏng thật, để checkHeader báo lỗi
+     */
+    private static boolean isTornSegment(Path segment) throws IOException {
+        long size = Files.size(segment);
+        if (size > HEADER_SIZE) {
+            return false;
+        }
+        if (size < HEADER_SIZE) {
+            return true;
+        }
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int version = header.getInt() == MAGIC ? header.getInt() : -1;
+        return version < DOUBLE_BALANCE_VERSION || version > VERSION;
+    }
+
+    private int checkHeader(DataInputStream in, Path segment) throws IOException {
+        int version = in.readInt() == MAGIC ? in.readInt() : -1;
+        if (version < DOUBLE_BALANCE_VERSION || version > VERSION) {
+            throw new IOException("File journal không hợp lệ: " + segment);
+        }
+        return version;
+    }
+
+    /**
+     * Đọc bản ghi kế tiếp; trả về null khi hết file hoặc gặp bản ghi hỏng
+     */
+    private JournalRecord readRecord(DataInputStream in, int version) throws IOException {
+        int length;
+        int checksum;
+        byte[] payload;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            payload = in.readNBytes(length);
+        } catch (EOFException e) {
+            return null;
+        }
+        if (payload.length < length) {
+            return null;
+        }
+        CRC32 check = new CRC32();
+        check.update(payload, 0, length);
+        if ((int) check.getValue() != checksum) {
+            return null;
+        }
+        return decode(ByteBuffer.wrap(payload), length, version);
+    }
+
+    private JournalRecord decode(ByteBuffer payload, int length, int version) {
+        long seq = payload.getLong();
+        int count = payload.getShort();
+        List<JournalEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] number = new byte[payload.getShort()];
+            payload.get(number);
+            String accountNumber = new String(number, StandardCharsets.UTF_8);
+            if (version == DOUBLE_BALANCE_VERSION) {
+                entries.add(new JournalEntry(accountNumber, Math.round(payload.getDouble())));
+                continue;
+            }
+            byte kind = version == ABSOLUTE_ONLY_VERSION ? KIND_BALANCE : payload.get();
+            if (kind == KIND_BALANCE) {
+                entries.add(new JournalEntry(accountNumber, payload.getLong()));
+            } else if (kind == KIND_DELTA) {
+                entries.add(JournalEntry.delta(accountNumber, payload.getLong()));
+            } else if (kind == KIND_TRANSFER_LEG) {
+                TransferLeg leg = LEGS[payload.get()];
+                long transferId = payload.getLong();
+                entries.add(JournalEntry.leg(accountNumber, payload.getLong(), leg, transferId));
+            } else {
+                TransferLeg leg = LEGS[payload.get()];
+                long transferId = payload.getLong();
+                long amount = payload.getLong();
+                entries.add(JournalEntry.legBalance(accountNumber, payload.getLong(), amount, leg, transferId));
+            }
+        }
+        return new JournalRecord(seq, entries, length);
+    }
+}
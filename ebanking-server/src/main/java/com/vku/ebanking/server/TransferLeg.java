@@ -0,0 +1,16 @@
+package com.vku.ebanking.server;
+
+/**
+ * Các chặng của một chuyển khoản liên shard (hoặc liên node trong cluster), ghi trong journal của
+ * shard/node tương ứng
+ */
+public enum TransferLeg {
+    /** Trừ tiền tài khoản nguồn (journal shard nguồn) */
+    DEBIT,
+    /** Cộng tiền tài khoản đích (journal shard đích) */
+    CREDIT,
+    /** Hoàn lại tiền đã trừ khi không cộng được cho đích (journal shard nguồn) */
+    REFUND,
+    /** Đánh dấu chuyển khoản đã xong, delta 0 (journal shard nguồn) */
+    SETTLE
+}
@@ -0,0 +1,364 @@
+package com.vku.ebanking.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Điều phối chuyển khoản giữa hai node cluster bằng commit hai pha (presumed abort).
+ *
+ * Log quyết định {@code <clusterDir>/coordinator.log} là văn bản, mỗi dòng một sự kiện:
+ * {@code B id nodeNguồn nodeĐích tkNguồn tkĐích sốTiền} trước pha 1, {@code C id} hoặc {@code A id}
+ * khi đã quyết định, {@code D id} khi cả hai node đã nhận quyết định. B và C/A được force xuống đĩa
+ * (trừ khi fsync=NEVER) trước khi gửi lệnh tiếp theo. Các lần force được gom: một lần fsync phủ mọi dòng
+ * đã ghi trước nó, luồng đang chờ mà dòng của mình đã được phủ thì không fsync nữa. Khóa ghi log
+ * không bao giờ được giữ trong lúc fsync (trừ lần nén log hiếm hoi).
+ *
+ * Khi khởi động, giao dịch có C mà chưa có D được commit lại, có A hoặc chỉ có B thì bị hủy.
+ * Quyết định chưa gửi được (node tạm không truy cập được) được thử lại mỗi giây.
+ */
+public class TwoPhaseCoordinator {
+    private static final String LOG_NAME = "coordinator.log";
+    private static final long COMPACT_BYTES = 16L * 1024 * 1024;
+
+    private final NodeLink[] links;
+    private final Path logFile;
+    private final boolean forceWrites;
+    // Các giao dịch chưa có dòng D
+    private final Map<Long, Transaction> open = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Transaction> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextTxId;
+    private final ScheduledExecutorService retrier;
+    // Giữ khi ghi dòng log hoặc nén log
+    private final ReentrantLock logLock = new ReentrantLock();
+    // Chỉ một luồng fsync một lúc; các luồng chờ sau nó thường thấy dòng của mình đã bền vững
+    private final ReentrantLock syncLock = new ReentrantLock();
+    // Số byte đã ghi (cộng dồn qua các lần nén) và phần chắc chắn đã xuống đĩa
+    private final AtomicLong durable = new AtomicLong();
+    private long written;
+    private FileChannel channel;
+    private long logBytes;
+
+    TwoPhaseCoordinator(NodeLink[] links, ServerConfig config) throws IOException {
+        this.links = links;
+        Path dir = Paths.get(config.getClusterDir());
+        Files.createDirectories(dir);
+        this.logFile = dir.resolve(LOG_NAME);
+        this.forceWrites = config.getFsyncPolicy() != FsyncPolicy.NEVER;
+
+        long maxSeen = recover();
+        this.nextTxId = new AtomicLong(Math.max(maxSeen + 1, System.currentTimeMillis() * 1000));
+        logLock.lock();
+        try {
+            compact();
+        } finally {
+            logLock.unlock();
+        }
+        pending.addAll(open.values());
+        if (!open.isEmpty()) {
+            System.out.println("🌐 " + open.size() + " giao dịch liên node chưa kết thúc từ lần chạy trước");
+        }
+
+        this.retrier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-2pc-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        retrier.scheduleWithFixedDelay(this::retryPending, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Chuyển khoản giữa hai node khác nhau; true nếu đã commit.
+     * Lỗi RMI ở pha 1 coi như bỏ phiếu không; lỗi ở pha 2 được thử lại ở nền
+     */
+    boolean transfer(NodeLink source, NodeLink target, String fromAccount, String toAccount, long amount)
+            throws RemoteException {
+        Transaction tx = new Transaction(nextTxId.getAndIncrement(), source.getNode().getIndex(),
+                target.getNode().getIndex(), fromAccount, toAccount, amount);
+        open.put(tx.id, tx);
+        try {
+            append(tx.beginLine(), true);
+        } catch (IOException e) {
+            open.remove(tx.id);
+            throw new RemoteException("Không ghi được log điều phối", e);
+        }
+
+        boolean yes = prepare(tx, TransferLeg.DEBIT) && prepare(tx, TransferLeg.CREDIT);
+        // Đặt trước khi ghi để lần nén log ngay trong append giữ đúng quyết định
+        tx.decision = yes ? 'C' : 'A';
+        try {
+            append(tx.decision + " " + tx.id, true);
+        } catch (IOException e) {
+            // Chưa gửi quyết định nào: để nguyên các chặng đã chuẩn bị,
+            // lần khởi động sau quyết định theo nội dung log
+            tx.decision = 'B';
+            throw new RemoteException("Không ghi được quyết định cho giao dịch " + tx.id, e);
+        }
+        if (!deliver(tx)) {
+            pending.add(tx);
+        }
+        return yes;
+    }
+
+    private boolean prepare(Transaction tx, TransferLeg leg) {
+        boolean debit = leg == TransferLeg.DEBIT;
+        try {
+            return links[debit ? tx.fromNode : tx.toNode].participant(p ->
+                    p.prepare(tx.id, leg, debit ? tx.fromAccount : tx.toAccount, tx.amount));
+        } catch (RemoteException e) {
+            System.err.println("⚠️ Giao dịch " + tx.id + ": " + leg + " không chuẩn bị được: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gửi quyết định tới các node chưa nhận; true (và ghi D) khi cả hai đã nhận
+     */
+    private boolean deliver(Transaction tx) {
+        boolean commit = tx.decision == 'C';
+        if (!tx.debitDone) {
+            tx.debitDone = send(tx, TransferLeg.DEBIT, commit);
+        }
+        if (!tx.creditDone) {
+            tx.creditDone = send(tx, TransferLeg.CREDIT, commit);
+        }
+        if (!tx.debitDone || !tx.creditDone) {
+            return false;
+        }
+        try {
+            append("D " + tx.id, false);
+        } catch (IOException e) {
+            // Thiếu D chỉ làm lần khởi động sau gửi lại quyết định, node bỏ qua lệnh lặp
+            System.err.println("⚠️ Không ghi được D cho giao dịch " + tx.id + ": " + e.getMessage());
+        }
+        open.remove(tx.id);
+        return true;
+    }
+
+    private boolean send(Transaction tx, TransferLeg leg, boolean commit) {
+        boolean debit = leg == TransferLeg.DEBIT;
+        String account = debit ? tx.fromAccount : tx.toAccount;
+        String counterparty = debit ? tx.toAccount : tx.fromAccount;
+        try {
+            links[debit ? tx.fromNode : tx.toNode].participant(p -> {
+                if (commit) {
+                    p.commit(tx.id, leg, account, counterparty, tx.amount);
+                } else {
+                    p.abort(tx.id, leg, account, tx.amount);
+                }
+                return null;
+            });
+            return true;
+        } catch (RemoteException e) {
+            return false;
+        }
+    }
+
+    private void retryPending() {
+        for (int i = pending.size(); i > 0; i--) {
+            Transaction tx = pending.poll();
+            if (tx == null) {
+                break;
+            }
+            if (!deliver(tx)) {
+                pending.add(tx);
+            }
+        }
+    }
+
+    /**
+     * Số giao dịch đã quyết định nhưng chưa gửi được tới đủ hai node
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void append(String line, boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        long end;
+        logLock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                int bytes = channel.write(buffer);
+                logBytes += bytes;
+                written += bytes;
+            }
+            end = written;
+            if (logBytes > COMPACT_BYTES) {
+                compact();
+            }
+        } finally {
+            logLock.unlock();
+        }
+        if (force && forceWrites) {
+            awaitDurable(end);
+        }
+    }
+
+    /**
+     * Chờ tới khi log bền vững tới {@code end}: nếu chưa ai fsync phần đó thì tự fsync mọi thứ đã ghi
+     */
+    private void awaitDurable(long end) throws IOException {
+        if (durable.get() >= end) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable.get() >= end) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            logLock.lock();
+            try {
+                target = written;
+                current = channel;
+            } finally {
+                logLock.unlock();
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // Log vừa được nén: file mới đã fsync và phủ mọi dòng ghi trước đó
+                if (durable.get() < end) {
+                    throw e;
+                }
+                return;
+            }
+            durable.accumulateAndGet(target, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Đọc log, dựng lại các giao dịch chưa có D; trả về mã giao dịch lớn nhất đã gặp
+     */
+    private long recover() throws IOException {
+        long maxSeen = 0;
+        if (!Files.exists(logFile)) {
+            return maxSeen;
+        }
+        Map<Long, Transaction> seen = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(logFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.trim().split(" ");
+            try {
+                long id = Long.parseLong(parts[1]);
+                maxSeen = Math.max(maxSeen, id);
+                switch (parts[0]) {
+                    case "B" -> seen.put(id, new Transaction(id, Integer.parseInt(parts[2]),
+                            Integer.parseInt(parts[3]), parts[4], parts[5], Long.parseLong(parts[6])));
+                    case "C", "A" -> {
+                        Transaction tx = seen.get(id);
+                        if (tx != null) {
+                            tx.decision = parts[0].charAt(0);
+                        }
+                    }
+                    case "D" -> seen.remove(id);
+                    default -> throw new IllegalArgumentException(parts[0]);
+                }
+            } catch (RuntimeException e) {
+                // Dòng cuối bị cắt ngang khi router dừng đột ngột
+                System.err.println("⚠️ Bỏ qua dòng log điều phối hỏng: " + line);
+            }
+        }
+        for (Transaction tx : seen.values()) {
+            if (tx.fromNode >= links.length || tx.toNode >= links.length) {
+                System.err.println("⚠️ Giao dịch " + tx.id + " nhắc tới node không còn trong cấu hình");
+                continue;
+            }
+            if (tx.decision != 'C') {
+                tx.decision = 'A';
+            }
+            open.put(tx.id, tx);
+        }
+        return maxSeen;
+    }
+
+    /**
+     * Ghi lại log chỉ với các giao dịch chưa kết thúc (file tạm rồi đổi tên); người gọi giữ logLock
+     */
+    private void compact() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Transaction tx : open.values()) {
+            lines.add(tx.beginLine());
+            if (tx.decision != 'B') {
+                lines.add(tx.decision + " " + tx.id);
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Path tmp = logFile.resolveSibling(LOG_NAME + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        // Đổi tên phải bền trước khi ghi tiếp: nếu không, sau crash log cũ quay lại và mất các quyết định mới
+        DurableFiles.replace(tmp, logFile);
+        channel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logBytes = channel.size();
+        durable.accumulateAndGet(written, Math::max);
+    }
+
+    /**
+     * Dừng luồng thử lại và đóng log; giao dịch còn treo được xử lý ở lần khởi động sau
+     */
+    public void shutdown() {
+        retrier.shutdownNow();
+        logLock.lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Lỗi đóng log điều phối: " + e.getMessage());
+        } finally {
+            logLock.unlock();
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("⚠️ Còn " + pending.size() + " giao dịch liên node chờ gửi quyết định");
+        }
+    }
+
+    /**
+     * Một giao dịch liên node; decision là 'B' (chưa quyết định), 'C' hoặc 'A'
+     */
+    private static final class Transaction {
+        final long id;
+        final int fromNode;
+        final int toNode;
+        final String fromAccount;
+        final String toAccount;
+        final long amount;
+        volatile char decision = 'B';
+        volatile boolean debitDone;
+        volatile boolean creditDone;
+
+        Transaction(long id, int fromNode, int toNode, String fromAccount, String toAccount, long amount) {
+            this.id = id;
+            this.fromNode = fromNode;
+            this.toNode = toNode;
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+        }
+
+        String beginLine() {
+            return "B " + id + " " + fromNode + " " + toNode + " " + fromAccount + " " + toAccount + " " + amount;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.vku.ebanking.server;
+
+import com.vku.ebanking.shared.Account;
+import com.vku.ebanking.shared.BankService;
+import com.vku.ebanking.shared.BatchMode;
+import com.vku.ebanking.shared.ClientCallback;
+import com.vku.ebanking.shared.HistoryPage;
+import com.vku.ebanking.shared.Session;
+import com.vku.ebanking.shared.SessionToken;
+import com.vku.ebanking.shared.TransferInstruction;
+import com.vku.ebanking.shared.TransferResult;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bọc BankServiceImpl để mỗi lời gọi RMI chạy trên một luồng ảo.
+ *
+ * Số lời gọi thực thi đồng thời bị giới hạn bởi một Semaphore công bằng: lời gọi vượt giới hạn
+ * xếp hàng theo thứ tự đến.
+ *
+ * Lưu ý: RMI vẫn phục vụ mỗi lời gọi trên một luồng nền tảng của nó, và luồng đó bị chặn trong lúc
+ * chờ semaphore rồi chờ kết quả từ luồng ảo. Vì vậy chế độ này không giảm số luồng nền tảng, còn thêm
+ * một lần chuyển luồng cho mỗi lời gọi. Lợi ích thật chỉ là giới hạn và xếp hàng công bằng các lời gọi
+ * đang thực thi. Việc tỏa ra bên trong server (gửi callback, nhận ack nhân bản) dùng luồng ảo riêng,
+ * không phụ thuộc chế độ này.
+ */
+public class VirtualThreadBankService extends UnicastRemoteObject implements BankService {
+    private final BankService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final ExecutorService executor;
+    private final LongAdder queued = new LongAdder();
+
+    public VirtualThreadBankService(BankService delegate, int maxConcurrent) throws RemoteException {
+        super();
+        this.delegate = delegate;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("bank-request-", 0).factory());
+        System.out.println("🧵 Thực thi lời gọi bằng luồng ảo, tối đa " + maxConcurrent + " đồng thời");
+    }
+
+    /**
+     * Đối tượng cần bind vào registry theo chế độ thực thi trong cấu hình
+     */
+    public static BankService forConfig(BankServiceImpl bankService, ServerConfig config) throws RemoteException {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            return new VirtualThreadBankService(bankService, config.getMaxConcurrentRequests());
+        }
+        return bankService;
+    }
+
+    @Override
+    public Session authenticate(String accountNumber, String pin) throws RemoteException {
+        return execute(() -> delegate.authenticate(accountNumber, pin));
+    }
+
+    @Override
+    public void logout(SessionToken session) throws RemoteException {
+        execute(() -> {
+            delegate.logout(session);
+            return null;
+        });
+    }
+
+    @Override
+    public Account getAccount(SessionToken session) throws RemoteException {
+        return execute(() -> delegate.getAccount(session));
+    }
+
+    @Override
+    public boolean deposit(SessionToken session, String requestId, long amount) throws RemoteException {
+        return execute(() -> delegate.deposit(session, requestId, amount));
+    }
+
+    @Override
+    public boolean withdraw(SessionToken session, String requestId, long amount) throws RemoteException {
+        return execute(() -> delegate.withdraw(session, requestId, amount));
+    }
+
+    @Override
+    public boolean transfer(SessionToken session, String requestId, String toAccount, long amount)
+            throws RemoteException {
+        return execute(() -> delegate.transfer(session, requestId, toAccount, amount));
+    }
+
+    @Override
+    public List<TransferResult> submitBatch(SessionToken session, String requestId,
+                                            List<TransferInstruction> instructions, BatchMode mode)
+            throws RemoteException {
+        return execute(() -> delegate.submitBatch(session, requestId, instructions, mode));
+    }
+
+    @Override
+    public HistoryPage getHistory(SessionToken session, long cursor, int limit) throws RemoteException {
+        return execute(() -> delegate.getHistory(session, cursor, limit));
+    }
+
+    @Override
+    public void registerCallback(SessionToken session, ClientCallback callback) throws RemoteException {
+        execute(() -> {
+            delegate.registerCallback(session, callback);
+            return null;
+        });
+    }
+
+    @Override
+    public void unregisterCallback(SessionToken session) throws RemoteException {
+        execute(() -> {
+            delegate.unregisterCallback(session);
+            return null;
+        });
+    }
+
+    /**
+     * Chờ tới lượt (FIFO) rồi chạy lời gọi trên luồng ảo; lỗi của lời gọi được ném lại nguyên dạng
+     */
+    private <T> T execute(Callable<T> call) throws RemoteException {
+        boolean acquired = false;
+        try {
+            // tryAcquire() không tham số bỏ qua hàng đợi công bằng, nên dùng bản có timeout
+            if (!permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                queued.increment();
+                permits.acquire();
+            }
+            acquired = true;
+            return executor.submit(call).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Lời gọi bị ngắt khi chờ thực thi", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException remote) {
+                throw remote;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RemoteException("Lỗi thực thi lời gọi", cause);
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Số lời gọi đang thực thi và tổng số lần phải xếp hàng
+     */
+    @Override
+    public String toString() {
+        return String.format("luồng ảo: %d/%d đang chạy, %d lượt xếp hàng",
+                maxConcurrent - permits.availablePermits(), maxConcurrent, queued.sum());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
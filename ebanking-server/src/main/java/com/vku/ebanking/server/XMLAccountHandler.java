@@ -1,38 +1,46 @@
 package com.vku.ebanking.server;
 
 import com.vku.ebanking.shared.Account;
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class XMLAccountHandler {
     private static final String XML_FILE = "accounts.xml";
-    private DocumentBuilder builder;
-    private Transformer transformer;
+    private static final String SNAPSHOT_PREFIX = "accounts-";
+    private final AccountXmlFormat format;
+    private final BinarySnapshotFormat binaryFormat = new BinarySnapshotFormat();
+    private final File snapshotDir;
+    private final SnapshotFormat snapshotFormat;
+    private final File xmlFile;
+    // ReentrantLock thay cho synchronized: luồng ảo chờ ghi file không giữ chặt carrier thread
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final OperationStats saveAccountsStats = new OperationStats("saveAccounts");
+    private final OperationStats saveSnapshotStats = new OperationStats("saveSnapshot");
 
     public XMLAccountHandler() {
-        try {
-            // Khởi tạo DocumentBuilder để parse XML
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            builder = factory.newDocumentBuilder();
-
-            // Khởi tạo Transformer để ghi XML với format đẹp
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
-            System.out.println("✅ XMLAccountHandler đã khởi tạo");
-        } catch (Exception e) {
-            System.err.println("❌ Lỗi khởi tạo XMLAccountHandler: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Mặc định dùng StAX; -Debanking.xml.parser=dom để quay lại đường DOM cũ
+        this(AccountXmlFormat.named(System.getProperty("ebanking.xml.parser", "stax")),
+                new File("snapshots"), SnapshotFormat.XML);
+    }
+
+    public XMLAccountHandler(AccountXmlFormat format, File snapshotDir, SnapshotFormat snapshotFormat) {
+        this(format, snapshotDir, snapshotFormat, new File(XML_FILE));
+    }
+
+    /**
+     * Dùng file tài khoản gốc khác accounts.xml trong thư mục hiện tại (benchmark, nhiều server trên một máy)
+     */
+    public XMLAccountHandler(AccountXmlFormat format, File snapshotDir, SnapshotFormat snapshotFormat,
+                             File xmlFile) {
+        this.format = format;
+        this.snapshotDir = snapshotDir;
+        this.snapshotFormat = snapshotFormat;
+        this.xmlFile = xmlFile;
+        System.out.println("✅ XMLAccountHandler đã khởi tạo (" + format.getClass().getSimpleName() + ")");
     }
 
     /**
@@ -42,35 +50,14 @@ public class XMLAccountHandler {
     public List<Account> loadAccounts() {
         List<Account> accounts = new ArrayList<>();
         try {
-            File xmlFile = new File(XML_FILE);
-
             // Kiểm tra file có tồn tại không
             if (!xmlFile.exists()) {
                 System.out.println("⚠️ File XML không tồn tại, đang tạo file mặc định...");
                 createDefaultXML();
-                xmlFile = new File(XML_FILE);
-            }
-
-            // Parse XML file
-            Document doc = builder.parse(xmlFile);
-            doc.getDocumentElement().normalize();
-
-            // Lấy tất cả các node <account>
-            NodeList nodeList = doc.getElementsByTagName("account");
-            System.out.println("📖 Đọc " + nodeList.getLength() + " tài khoản từ XML");
-
-            // Duyệt qua từng account và tạo object
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Element element = (Element) nodeList.item(i);
-
-                String accountNumber = getElementText(element, "accountNumber");
-                String accountName = getElementText(element, "accountName");
-                double balance = Double.parseDouble(getElementText(element, "balance"));
-                String pin = getElementText(element, "pin");
-
-                accounts.add(new Account(accountNumber, accountName, balance, pin));
             }
 
+            // Đọc tuần tự từng <account>
+            format.read(xmlFile, accounts::add);
             System.out.println("✅ Load thành công " + accounts.size() + " tài khoản");
         } catch (Exception e) {
             System.err.println("❌ Lỗi load accounts từ XML: " + e.getMessage());
@@ -80,46 +67,170 @@ public class XMLAccountHandler {
     }
 
     /**
-     * Lưu danh sách tài khoản vào file XML
-     * Được gọi ngay khi có thay đổi (nạp tiền, rút tiền, chuyển khoản)
+     * Lưu danh sách tài khoản vào file XML (snapshot)
+     * Ghi ra file tạm rồi đổi tên (fsync cả file lẫn thư mục), nên crash giữa chừng không làm hỏng file cũ
+     * Trả về false nếu ghi thất bại
      */
-    public synchronized void saveAccounts(List<Account> accounts) {
+    public boolean saveAccounts(List<Account> accounts) {
+        long started = System.nanoTime();
+        boolean saved = false;
+        fileLock.lock();
         try {
             System.out.println("💾 Đang lưu " + accounts.size() + " tài khoản vào XML...");
 
-            // Tạo Document mới
-            Document doc = builder.newDocument();
+            // Ghi ra file tạm, sau đó thay thế file chính
+            File file = xmlFile;
+            File tempFile = new File(xmlFile.getPath() + ".tmp");
+            format.write(accounts, tempFile);
+            DurableFiles.replace(tempFile.toPath(), file.toPath());
 
-            // Tạo root element <accounts>
-            Element rootElement = doc.createElement("accounts");
-            doc.appendChild(rootElement);
+            System.out.println("✅ Lưu thành công vào file: " + file.getAbsolutePath());
+            saved = true;
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Lỗi lưu accounts vào XML: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            fileLock.unlock();
+            saveAccountsStats.record(System.nanoTime() - started, saved);
+        }
+    }
 
-            // Tạo từng <account> element
-            for (Account account : accounts) {
-                Element accountElement = doc.createElement("account");
+    /**
+     * Nạp snapshot mới nhất còn đọc được trong thư mục snapshot (XML hoặc nhị phân).
+     * Snapshot hỏng bị bỏ qua để thử bản cũ hơn; nếu không có snapshot nào
+     * thì dùng accounts.xml làm trạng thái ban đầu (seq 0)
+     */
+    public AccountSnapshot loadLatestSnapshot() {
+        File[] snapshots = listSnapshots();
+        for (int i = snapshots.length - 1; i >= 0; i--) {
+            try {
+                AccountSnapshot snapshot = readSnapshot(snapshots[i]);
+                System.out.println("✅ Nạp snapshot " + snapshots[i].getName() + ": "
+                        + snapshot.getAccounts().size() + " tài khoản");
+                return snapshot;
+            } catch (Exception e) {
+                System.err.println("⚠️ Snapshot hỏng, thử bản cũ hơn: " + snapshots[i].getName()
+                        + " (" + e.getMessage() + ")");
+            }
+        }
+        return new AccountSnapshot(loadAccounts(), 0);
+    }
 
-                // Thêm các child elements
-                appendChild(doc, accountElement, "accountNumber", account.getAccountNumber());
-                appendChild(doc, accountElement, "accountName", account.getAccountName());
-                appendChild(doc, accountElement, "balance", String.valueOf(account.getBalance()));
-                appendChild(doc, accountElement, "pin", account.getPin());
+    /**
+     * Có ít nhất một snapshot trong thư mục snapshot hay không
+     */
+    public boolean hasSnapshot() {
+        return listSnapshots().length > 0;
+    }
 
-                rootElement.appendChild(accountElement);
+    /**
+     * Ghi snapshot ứng với seq journal đã cho (ghi file tạm rồi đổi tên).
+     * Trả về true chỉ khi snapshot đã bền vững trên đĩa, để người gọi được phép xóa các segment journal cũ
+     */
+    public boolean saveSnapshot(List<Account> accounts, long seq) {
+        long started = System.nanoTime();
+        boolean saved = false;
+        try {
+            if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+                throw new IllegalStateException("Không tạo được thư mục " + snapshotDir);
+            }
+            File file = new File(snapshotDir,
+                    String.format("%s%020d%s", SNAPSHOT_PREFIX, seq, snapshotFormat.getExtension()));
+            File tempFile = new File(snapshotDir, file.getName() + ".tmp");
+            if (snapshotFormat == SnapshotFormat.BINARY) {
+                binaryFormat.write(accounts, seq, tempFile);
+            } else {
+                format.write(accounts, tempFile);
             }
+            DurableFiles.replace(tempFile.toPath(), file.toPath());
+            saved = true;
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Lỗi lưu snapshot: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            saveSnapshotStats.record(System.nanoTime() - started, saved);
+        }
+    }
 
-            // Ghi ra file
-            DOMSource source = new DOMSource(doc);
-            File file = new File(XML_FILE);
-            StreamResult result = new StreamResult(file);
+    public OperationStats getSaveAccountsStats() {
+        return saveAccountsStats;
+    }
 
-            transformer.transform(source, result);
+    public OperationStats getSaveSnapshotStats() {
+        return saveSnapshotStats;
+    }
 
-            System.out.println("✅ Lưu thành công vào file: " + file.getAbsolutePath());
+    /**
+     * Chỉ giữ lại {@code keep} snapshot mới nhất; trả về seq của snapshot cũ nhất còn giữ
+     */
+    public long pruneSnapshots(int keep) {
+        File[] snapshots = listSnapshots();
+        int remove = Math.max(0, snapshots.length - keep);
+        for (int i = 0; i < remove; i++) {
+            if (!snapshots[i].delete()) {
+                System.err.println("⚠️ Không xóa được snapshot cũ: " + snapshots[i].getName());
+            }
+        }
+        return snapshots.length > remove ? seqOf(snapshots[remove]) : 0;
+    }
 
+    /**
+     * Chuyển một file XML (ví dụ accounts.xml) sang snapshot nhị phân
+     */
+    public boolean convertToBinary(File xmlFile, File binaryFile, long seq) {
+        try {
+            List<Account> accounts = new ArrayList<>();
+            format.read(xmlFile, accounts::add);
+            binaryFormat.write(accounts, seq, binaryFile);
+            System.out.println("✅ Đã chuyển " + accounts.size() + " tài khoản sang " + binaryFile.getName());
+            return true;
         } catch (Exception e) {
-            System.err.println("❌ Lỗi lưu accounts vào XML: " + e.getMessage());
+            System.err.println("❌ Lỗi chuyển XML sang nhị phân: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Chuyển accounts.xml hiện tại thành snapshot nhị phân gốc (seq 0) trong thư mục snapshot
+     */
+    public boolean convertToBinary() {
+        if (!snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+            return false;
+        }
+        File target = new File(snapshotDir,
+                String.format("%s%020d%s", SNAPSHOT_PREFIX, 0, SnapshotFormat.BINARY.getExtension()));
+        return convertToBinary(xmlFile, target, 0);
+    }
+
+    private AccountSnapshot readSnapshot(File file) throws Exception {
+        if (file.getName().endsWith(SnapshotFormat.BINARY.getExtension())) {
+            return binaryFormat.read(file);
         }
+        List<Account> accounts = new ArrayList<>();
+        format.read(file, accounts::add);
+        return new AccountSnapshot(accounts, seqOf(file));
+    }
+
+    private File[] listSnapshots() {
+        File[] files = snapshotDir.listFiles((dir, name) -> name.startsWith(SNAPSHOT_PREFIX)
+                && (name.endsWith(SnapshotFormat.XML.getExtension())
+                || name.endsWith(SnapshotFormat.BINARY.getExtension())));
+        if (files == null) {
+            return new File[0];
+        }
+        // Seq được đệm 20 chữ số nên thứ tự tên cũng là thứ tự seq (cùng seq thì .bin đứng trước .xml)
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long seqOf(File snapshot) {
+        String name = snapshot.getName();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.lastIndexOf('.')));
     }
 
     /**
@@ -138,26 +249,6 @@ public class XMLAccountHandler {
         System.out.println("✅ Đã tạo file mặc định với 4 tài khoản");
     }
 
-    /**
-     * Helper method: Lấy text content của một element con
-     */
-    private String getElementText(Element parent, String tagName) {
-        NodeList nodeList = parent.getElementsByTagName(tagName);
-        if (nodeList.getLength() > 0) {
-            return nodeList.item(0).getTextContent();
-        }
-        return "";
-    }
-
-    /**
-     * Helper method: Thêm một child element với text content
-     */
-    private void appendChild(Document doc, Element parent, String tagName, String textContent) {
-        Element element = doc.createElement(tagName);
-        element.setTextContent(textContent);
-        parent.appendChild(element);
-    }
-
     /**
      * Lấy thông tin một tài khoản cụ thể từ XML
      * (Dùng cho debug hoặc kiểm tra nhanh)
@@ -176,7 +267,8 @@ public class XMLAccountHandler {
      * Cập nhật một tài khoản cụ thể
      * (Alternative method nếu không muốn load toàn bộ list)
      */
-    public synchronized boolean updateAccount(Account updatedAccount) {
+    public boolean updateAccount(Account updatedAccount) {
+        fileLock.lock();
         try {
             List<Account> accounts = loadAccounts();
             boolean found = false;
@@ -201,6 +293,8 @@ public class XMLAccountHandler {
             System.err.println("❌ Lỗi cập nhật tài khoản: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            fileLock.unlock();
         }
     }
 
@@ -208,17 +302,15 @@ public class XMLAccountHandler {
      * Kiểm tra file XML có tồn tại không
      */
     public boolean fileExists() {
-        File file = new File(XML_FILE);
-        return file.exists();
+        return xmlFile.exists();
     }
 
     /**
      * Xóa file XML (dùng cho testing)
      */
     public boolean deleteFile() {
-        File file = new File(XML_FILE);
-        if (file.exists()) {
-            boolean deleted = file.delete();
+        if (xmlFile.exists()) {
+            boolean deleted = xmlFile.delete();
             if (deleted) {
                 System.out.println("🗑️ Đã xóa file XML");
             }
@@ -231,7 +323,6 @@ public class XMLAccountHandler {
      * Lấy đường dẫn tuyệt đối của file XML
      */
     public String getFilePath() {
-        File file = new File(XML_FILE);
-        return file.getAbsolutePath();
+        return xmlFile.getAbsolutePath();
     }
 }
\ No newline at end of file
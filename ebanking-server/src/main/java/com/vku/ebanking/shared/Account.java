@@ -3,16 +3,16 @@ package com.vku.ebanking.shared;
 import java.io.Serializable;
 
 public class Account implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     private String accountNumber;
     private String accountName;
-    private double balance;
+    private long balance;
     private String pin;
 
     public Account() {}
 
-    public Account(String accountNumber, String accountName, double balance, String pin) {
+    public Account(String accountNumber, String accountName, long balance, String pin) {
         this.accountNumber = accountNumber;
         this.accountName = accountName;
         this.balance = balance;
@@ -35,11 +35,11 @@ public class Account implements Serializable {
         this.accountName = accountName;
     }
 
-    public double getBalance() {
+    public long getBalance() {
         return balance;
     }
 
-    public void setBalance(double balance) {
+    public void setBalance(long balance) {
         this.balance = balance;
     }
 
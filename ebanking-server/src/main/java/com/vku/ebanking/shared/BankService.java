@@ -2,12 +2,46 @@ package com.vku.ebanking.shared;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
+/**
+ * Giao diện RMI cho client: mọi thao tác trên tài khoản đi qua phiên do {@link #authenticate} cấp,
+ * tài khoản của người gọi lấy từ phiên chứ không do client khai báo
+ */
 public interface BankService extends Remote {
-    Account login(String accountNumber) throws RemoteException;
-    boolean deposit(String accountNumber, double amount) throws RemoteException;
-    boolean withdraw(String accountNumber, double amount) throws RemoteException;
-    boolean transfer(String fromAccount, String toAccount, double amount) throws RemoteException;
-    void registerCallback(String accountNumber, ClientCallback callback) throws RemoteException;
-    void unregisterCallback(String accountNumber) throws RemoteException;
+    /**
+     * Client gửi lại một thao tác chưa rõ kết quả với cùng mã yêu cầu trong tối đa chừng này;
+     * server phải nhớ mã ít nhất bằng thời gian đó ({@code ebanking.dedup.ttlMs})
+     */
+    long RESUBMIT_WINDOW_MS = 2 * 60_000;
+
+    /**
+     * Kiểm tra PIN trên server; trả về phiên mới, hoặc null nếu sai số tài khoản hoặc PIN
+     */
+    Session authenticate(String accountNumber, String pin) throws RemoteException;
+    void logout(SessionToken session) throws RemoteException;
+
+    /*
+     * Phiên không hợp lệ hoặc hết hạn → SessionExpiredException.
+     * Các thao tác có mã yêu cầu do client sinh (ví dụ UUID): gọi lại với cùng mã, kể cả khi lần trước
+     * mất phản hồi, nhận lại kết quả cũ mà không thực hiện lần nữa (trong thời gian server còn nhớ mã)
+     */
+    Account getAccount(SessionToken session) throws RemoteException;
+    boolean deposit(SessionToken session, String requestId, long amount) throws RemoteException;
+    boolean withdraw(SessionToken session, String requestId, long amount) throws RemoteException;
+    boolean transfer(SessionToken session, String requestId, String toAccount, long amount) throws RemoteException;
+
+    /**
+     * Batch chuyển khoản; mọi lệnh phải chuyển từ tài khoản của phiên
+     */
+    List<TransferResult> submitBatch(SessionToken session, String requestId, List<TransferInstruction> instructions,
+                                     BatchMode mode) throws RemoteException;
+
+    /**
+     * Lịch sử giao dịch của tài khoản, mới nhất trước. {@code cursor} = 0 để lấy trang đầu,
+     * sau đó truyền {@link HistoryPage#getNextCursor()} của trang trước
+     */
+    HistoryPage getHistory(SessionToken session, long cursor, int limit) throws RemoteException;
+    void registerCallback(SessionToken session, ClientCallback callback) throws RemoteException;
+    void unregisterCallback(SessionToken session) throws RemoteException;
 }
@@ -2,7 +2,9 @@ package com.vku.ebanking.shared;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface ClientCallback extends Remote {
     void notifyTransaction(String message) throws RemoteException;
-}
\ No newline at end of file
+    void notifyTransactions(List<TransactionEvent> events) throws RemoteException;
+}
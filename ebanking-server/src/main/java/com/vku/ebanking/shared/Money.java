@@ -0,0 +1,91 @@
+package com.vku.ebanking.shared;
+
+/**
+ * Số tiền dạng long theo đơn vị nhỏ nhất (đồng).
+ * Định dạng và parse trực tiếp trên ký tự, không qua double và không tạo đối tượng trung gian.
+ */
+public final class Money {
+    private static final char GROUP_SEPARATOR = '.';
+
+    private Money() {}
+
+    /**
+     * Parse số tiền nguyên, có thể có dấu +/- ở đầu; ném NumberFormatException nếu không hợp lệ
+     */
+    public static long parse(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        boolean negative = start < end && text.charAt(start) == '-';
+        if (start < end && (negative || text.charAt(start) == '+')) {
+            start++;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Số tiền không hợp lệ: \"" + text + "\"");
+        }
+
+        // Tích lũy ở miền âm để biểu diễn được cả Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Số tiền không hợp lệ: \"" + text + "\"");
+            }
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberFormatException("Số tiền vượt quá giới hạn: \"" + text + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parse số dư trong file cũ lưu dạng double ("5000.0", "1.0E7"); số nguyên đi thẳng qua {@link #parse}
+     */
+    public static long parseLegacy(String text) {
+        try {
+            return parse(text);
+        } catch (NumberFormatException e) {
+            return Math.round(Double.parseDouble(text));
+        }
+    }
+
+    /**
+     * Ghi số tiền kèm dấu phân cách hàng nghìn vào cuối {@code out}, không tạo String trung gian
+     */
+    public static StringBuilder appendTo(StringBuilder out, long amount) {
+        if (amount < 0) {
+            out.append('-');
+        }
+        // Làm việc với giá trị âm để không tràn số với Long.MIN_VALUE
+        long rest = amount < 0 ? amount : -amount;
+        int digits = 1;
+        for (long v = rest / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int length = digits + (digits - 1) / 3;
+        int pos = out.length() + length;
+        out.setLength(pos);
+        for (int written = 0; written < digits; written++) {
+            if (written > 0 && written % 3 == 0) {
+                out.setCharAt(--pos, GROUP_SEPARATOR);
+            }
+            out.setCharAt(--pos, (char) ('0' - rest % 10));
+            rest /= 10;
+        }
+        return out;
+    }
+
+    /**
+     * Định dạng số tiền có phân cách hàng nghìn, ví dụ 1.250.000
+     */
+    public static String format(long amount) {
+        return appendTo(new StringBuilder(26), amount).toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.vku.ebanking.shared;
+
+import java.io.Serializable;
+
+/**
+ * Kết quả đăng nhập: mã phiên và tài khoản (không kèm PIN)
+ */
+public class Session implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private SessionToken token;
+    private Account account;
+    private long ttlMs;
+
+    public Session() {}
+
+    public Session(SessionToken token, Account account, long ttlMs) {
+        this.token = token;
+        this.account = account;
+        this.ttlMs = ttlMs;
+    }
+
+    public SessionToken getToken() {
+        return token;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    /**
+     * Phiên hết hạn sau chừng này ms không có lời gọi nào
+     */
+    public long getTtlMs() {
+        return ttlMs;
+    }
+}
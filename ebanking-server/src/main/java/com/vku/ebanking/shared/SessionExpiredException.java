@@ -0,0 +1,15 @@
+package com.vku.ebanking.shared;
+
+import java.rmi.RemoteException;
+
+/**
+ * Mã phiên không tồn tại hoặc đã hết hạn; client cần đăng nhập lại.
+ * Phía client nhận được dưới dạng nguyên nhân của ServerException
+ */
+public class SessionExpiredException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    public SessionExpiredException(String message) {
+        super(message);
+    }
+}